@@ -0,0 +1,20 @@
+package com.test.storage.config;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.convert.converter.ConverterFactory;
+
+import java.util.Locale;
+
+/**
+ * Lets request parameters use lower case values of enums, like {@code total=exact}.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+class CaseInsensitiveEnumConverterFactory implements ConverterFactory<String, Enum> {
+
+    @Override
+    public <T extends Enum> Converter<String, T> getConverter(Class<T> targetType) {
+        return source -> source.isBlank()
+                ? null
+                : (T) Enum.valueOf(targetType, source.trim().toUpperCase(Locale.ROOT));
+    }
+}
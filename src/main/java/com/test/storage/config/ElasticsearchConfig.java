@@ -1,31 +1,163 @@
 package com.test.storage.config;
 
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.elasticsearch.client.Node;
+import org.elasticsearch.client.NodeSelector;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.elasticsearch.client.ClientConfiguration;
-import org.springframework.data.elasticsearch.client.RestClients;
 import org.springframework.data.elasticsearch.config.AbstractElasticsearchConfiguration;
-import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Configuration
-@EnableElasticsearchRepositories(basePackages = "com.test.storage.repository")
 public class ElasticsearchConfig extends AbstractElasticsearchConfiguration {
 
-    @Value("${elasticsearch.host}")
-    private String elasticsearchHost;
+    // comma separated host:port or scheme://host:port of seed nodes, requests are spread across them
+    @Value("${elasticsearch.hosts:${elasticsearch.host:localhost:9200}}")
+    private String[] elasticsearchHosts;
+
+    @Value("${elasticsearch.client.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${elasticsearch.client.max-connections-per-route:50}")
+    private int maxConnectionsPerRoute;
+
+    // idle connections are closed after this time unless the node asks for less
+    @Value("${elasticsearch.client.keep-alive:60s}")
+    private Duration keepAlive;
+
+    @Value("${elasticsearch.client.connect-timeout:1s}")
+    private Duration connectTimeout;
+
+    @Value("${elasticsearch.client.socket-timeout:30s}")
+    private Duration socketTimeout;
+
+    // time a request waits for a free connection of the pool
+    @Value("${elasticsearch.client.connection-request-timeout:1s}")
+    private Duration connectionRequestTimeout;
+
+    // gzip request bodies, responses are decompressed by the client
+    @Value("${elasticsearch.client.compression:true}")
+    private boolean compression;
+
+    // replace seed nodes with the nodes of the cluster, periodically and after a node fails
+    @Value("${elasticsearch.sniff.enabled:false}")
+    private boolean sniffEnabled;
+
+    @Value("${elasticsearch.sniff.interval:5m}")
+    private Duration sniffInterval;
+
+    @Value("${elasticsearch.sniff.after-failure-delay:1m}")
+    private Duration sniffAfterFailureDelay;
+
+    private final SniffOnFailureListener sniffOnFailureListener = new SniffOnFailureListener();
+
+    @Bean
+    public ElasticsearchConnectionPool elasticsearchConnectionPool() throws IOReactorException {
+        return new ElasticsearchConnectionPool(
+                maxConnections,
+                maxConnectionsPerRoute,
+                IOReactorConfig.custom()
+                        .setConnectTimeout((int) connectTimeout.toMillis())
+                        .setSoTimeout((int) socketTimeout.toMillis())
+                        .setSoKeepAlive(true)
+                        .build());
+    }
 
     @Override
     @Bean
     public RestHighLevelClient elasticsearchClient() {
-        final ClientConfiguration clientConfiguration =
-                ClientConfiguration
-                        .builder()
-                        .connectedTo(elasticsearchHost)
-                        .build();
+        ElasticsearchConnectionPool pool;
+        try {
+            pool = elasticsearchConnectionPool();
+        } catch (IOReactorException e) {
+            throw new IllegalStateException("can't create Elasticsearch connection pool", e);
+        }
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long requested = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return requested > 0 ? Math.min(requested, keepAlive.toMillis()) : keepAlive.toMillis();
+        };
+        return new RestHighLevelClient(restClientBuilder(
+                toHttpHosts(elasticsearchHosts),
+                sniffEnabled ? sniffOnFailureListener : null)
+                .setCompressionEnabled(compression)
+                .setRequestConfigCallback(requestConfig -> requestConfig
+                        .setConnectTimeout((int) connectTimeout.toMillis())
+                        .setSocketTimeout((int) socketTimeout.toMillis())
+                        .setConnectionRequestTimeout((int) connectionRequestTimeout.toMillis()))
+                .setHttpClientConfigCallback(httpClient -> httpClient
+                        .setConnectionManager(pool.getConnectionManager())
+                        .setKeepAliveStrategy(keepAliveStrategy)));
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "elasticsearch.sniff.enabled", havingValue = "true")
+    public Sniffer elasticsearchSniffer(RestHighLevelClient elasticsearchClient) {
+        return sniffer(elasticsearchClient.getLowLevelClient(), sniffOnFailureListener,
+                sniffInterval, sniffAfterFailureDelay);
+    }
+
+    /**
+     * Requests go to the nodes in turn, skipping dedicated master nodes. A node which fails is marked dead,
+     * the request is retried on another node and the dead node is retried after a growing backoff.
+     *
+     * @param failureListener notified about failed nodes, null when not sniffing
+     */
+    static RestClientBuilder restClientBuilder(HttpHost[] hosts, SniffOnFailureListener failureListener) {
+        RestClientBuilder builder = RestClient.builder(hosts).setNodeSelector(NodeSelector.SKIP_DEDICATED_MASTERS);
+        if (failureListener != null) {
+            builder.setFailureListener(failureListener);
+        }
+        return builder;
+    }
+
+    /**
+     * Discovered nodes are addressed with the scheme of the seed nodes, the cluster reports only their addresses.
+     */
+    static Sniffer sniffer(RestClient client,
+                           SniffOnFailureListener failureListener,
+                           Duration interval,
+                           Duration delayAfterFailure) {
+        HttpHost[] seeds = client.getNodes().stream().map(Node::getHost).toArray(HttpHost[]::new);
+        Sniffer sniffer = Sniffer.builder(client)
+                .setNodesSniffer(new ElasticsearchNodesSniffer(client,
+                        ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT, sniffScheme(seeds)))
+                .setSniffIntervalMillis((int) interval.toMillis())
+                .setSniffAfterFailureDelayMillis((int) delayAfterFailure.toMillis())
+                .build();
+        failureListener.setSniffer(sniffer);
+        return sniffer;
+    }
+
+    static ElasticsearchNodesSniffer.Scheme sniffScheme(HttpHost... seeds) {
+        Set<String> schemes = Arrays.stream(seeds).map(HttpHost::getSchemeName).collect(Collectors.toSet());
+        if (schemes.size() > 1) {
+            throw new IllegalArgumentException("seed nodes mix schemes " + schemes + ", sniffed nodes need one");
+        }
+        return schemes.contains("https") ? ElasticsearchNodesSniffer.Scheme.HTTPS : ElasticsearchNodesSniffer.Scheme.HTTP;
+    }
 
-        return RestClients.create(clientConfiguration).rest();
+    static HttpHost[] toHttpHosts(String... hosts) {
+        return Arrays.stream(hosts)
+                .map(String::trim)
+                .filter(host -> !host.isEmpty())
+                .map(HttpHost::create)
+                .toArray(HttpHost[]::new);
     }
 
 }
@@ -0,0 +1,35 @@
+package com.test.storage.config;
+
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Connection pool of the Elasticsearch client. The pool is closed together with the client.
+ */
+public class ElasticsearchConnectionPool {
+
+    private final PoolingNHttpClientConnectionManager connectionManager;
+
+    public ElasticsearchConnectionPool(int maxConnections, int maxConnectionsPerRoute, IOReactorConfig ioReactorConfig)
+            throws IOReactorException {
+        this.connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig));
+        connectionManager.setMaxTotal(maxConnections);
+        // a route is a single Elasticsearch node
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+    }
+
+    PoolingNHttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    /**
+     * @return connections leased by requests in flight, requests waiting for a connection,
+     * idle connections and the limit, summed over all nodes
+     */
+    public PoolStats getTotalStats() {
+        return connectionManager.getTotalStats();
+    }
+}
@@ -0,0 +1,15 @@
+package com.test.storage.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
+
+/**
+ * Elasticsearch repositories, replaced by {@link com.test.storage.repository.InMemoryStorageEngine}
+ * in the in-memory profile.
+ */
+@Configuration
+@Profile("!in-memory")
+@EnableElasticsearchRepositories(basePackages = "com.test.storage.repository")
+public class ElasticsearchRepositoriesConfig {
+}
@@ -0,0 +1,27 @@
+package com.test.storage.config;
+
+import com.test.storage.repository.FilesIndexManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+@Component
+@ConditionalOnProperty(value = "storage.index.initialize", havingValue = "true", matchIfMissing = true)
+public class FilesIndexInitializer implements ApplicationRunner {
+
+    final FilesIndexManager filesIndexManager;
+
+    @Autowired
+    public FilesIndexInitializer(FilesIndexManager filesIndexManager) {
+        this.filesIndexManager = filesIndexManager;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        filesIndexManager.createIndexIfMissing();
+    }
+}
@@ -0,0 +1,62 @@
+package com.test.storage.config;
+
+import com.test.storage.repository.FilesIndexManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically rolls over the write index of the files alias once it meets any of the rollover conditions.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "storage.index.rollover.enabled", havingValue = "true")
+public class FilesIndexRolloverScheduler {
+
+    final FilesIndexManager filesIndexManager;
+    private final long checkIntervalMillis;
+    private final ScheduledExecutorService executor;
+
+    @Autowired
+    public FilesIndexRolloverScheduler(FilesIndexManager filesIndexManager,
+                                       @Value("${storage.index.rollover.check-interval:10m}") Duration checkInterval) {
+        this.filesIndexManager = filesIndexManager;
+        this.checkIntervalMillis = checkInterval.toMillis();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-rollover");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        executor.scheduleWithFixedDelay(this::rollover, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void rollover() {
+        try {
+            var result = filesIndexManager.rollover(false, false);
+            if (result.isRolledOver()) {
+                log.info("rolled over {} to {}", result.getOldIndex(), result.getNewIndex());
+            }
+        } catch (Exception e) {
+            // next check retries
+            log.warn("index rollover failed", e);
+        }
+    }
+}
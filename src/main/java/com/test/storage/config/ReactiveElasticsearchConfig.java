@@ -0,0 +1,40 @@
+package com.test.storage.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.elasticsearch.client.ClientConfiguration;
+import org.springframework.data.elasticsearch.client.reactive.ReactiveElasticsearchClient;
+import org.springframework.data.elasticsearch.client.reactive.ReactiveRestClients;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+
+/**
+ * Non-blocking client of the reactive profile, the mapping is shared with {@link ElasticsearchConfig}.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveElasticsearchConfig {
+
+    @Value("${elasticsearch.hosts:${elasticsearch.host:localhost:9200}}")
+    private String[] elasticsearchHosts;
+
+    @Bean
+    public ReactiveElasticsearchClient reactiveElasticsearchClient() {
+        final ClientConfiguration clientConfiguration =
+                ClientConfiguration
+                        .builder()
+                        .connectedTo(elasticsearchHosts)
+                        .build();
+
+        return ReactiveRestClients.create(clientConfiguration);
+    }
+
+    @Bean
+    public ReactiveElasticsearchOperations reactiveElasticsearchTemplate(ReactiveElasticsearchClient client,
+                                                                         ElasticsearchConverter converter) {
+        return new ReactiveElasticsearchTemplate(client, converter);
+    }
+}
@@ -0,0 +1,15 @@
+package com.test.storage.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.elasticsearch.repository.config.EnableReactiveElasticsearchRepositories;
+
+/**
+ * Reactive Elasticsearch repositories, replaced by
+ * {@link com.test.storage.repository.reactive.InMemoryReactiveStorageRepository} in the in-memory profile.
+ */
+@Configuration
+@Profile("reactive & !in-memory")
+@EnableReactiveElasticsearchRepositories(basePackages = "com.test.storage.repository.reactive")
+public class ReactiveElasticsearchRepositoriesConfig {
+}
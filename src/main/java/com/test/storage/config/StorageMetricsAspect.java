@@ -0,0 +1,56 @@
+package com.test.storage.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every call of {@link com.test.storage.service.StorageService} and
+ * {@link com.test.storage.repository.StorageEngine}, tagged by method and by the exception thrown.
+ * Time of a request spent outside of both (JSON, validation) is left to {@code http.server.requests}.
+ */
+@Aspect
+@Component
+public class StorageMetricsAspect {
+
+    static final String SERVICE_TIMER = "storage.service";
+    static final String REPOSITORY_TIMER = "storage.repository";
+
+    final MeterRegistry meterRegistry;
+
+    @Autowired
+    public StorageMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.test.storage.service.StorageService.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(SERVICE_TIMER, joinPoint);
+    }
+
+    // Elasticsearch repository is a proxy implementing the interface, methods inherited from Spring Data included
+    @Around("this(com.test.storage.repository.StorageEngine)")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(REPOSITORY_TIMER, joinPoint);
+    }
+
+    private Object time(String timerName, ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(timerName)
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.test.storage.controller;
+
+import com.test.storage.config.ElasticsearchConnectionPool;
+import com.test.storage.dto.ConnectionPoolStatsDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping(value = "/admin/elasticsearch")
+public class ElasticsearchClientController {
+
+    final ElasticsearchConnectionPool connectionPool;
+
+    @Autowired
+    public ElasticsearchClientController(ElasticsearchConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    @GetMapping("/pool")
+    public ConnectionPoolStatsDTO getPoolStats() {
+        var stats = connectionPool.getTotalStats();
+        return new ConnectionPoolStatsDTO(stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax());
+    }
+}
@@ -0,0 +1,46 @@
+package com.test.storage.controller;
+
+import com.test.storage.dto.BackingIndexDTO;
+import com.test.storage.dto.IndexMigrationResponseDTO;
+import com.test.storage.dto.IndexRolloverResponseDTO;
+import com.test.storage.service.IndexManagementService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+// blocking admin operations are not exposed in the reactive profile
+@Profile("!reactive & !in-memory")
+@RequestMapping(value = "/admin/index")
+public class IndexManagementController {
+
+    final IndexManagementService indexManagementService;
+
+    @Autowired
+    public IndexManagementController(IndexManagementService indexManagementService) {
+        this.indexManagementService = indexManagementService;
+    }
+
+    @PostMapping("/_migrate")
+    public IndexMigrationResponseDTO migrate() throws IOException, InterruptedException {
+        return indexManagementService.migrate();
+    }
+
+    @GetMapping
+    public List<BackingIndexDTO> getBackingIndices() throws IOException {
+        return indexManagementService.getBackingIndices();
+    }
+
+    /**
+     * Rolls over the write index when any of the configured conditions is met, or regardless of them with force.
+     * With dryRun only reports which conditions are met.
+     */
+    @PostMapping("/_rollover")
+    public IndexRolloverResponseDTO rollover(@RequestParam(defaultValue = "false") boolean force,
+                                             @RequestParam(defaultValue = "false") boolean dryRun) throws IOException {
+        return indexManagementService.rollover(force, dryRun);
+    }
+}
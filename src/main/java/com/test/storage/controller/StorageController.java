@@ -1,61 +1,96 @@
 package com.test.storage.controller;
 
+import com.test.storage.dto.BatchTagUpdateRequestDTO;
+import com.test.storage.dto.BatchTagUpdateResponseDTO;
+import com.test.storage.dto.BulkUploadResponseDTO;
+import com.test.storage.dto.FileSearchRequestDTO;
 import com.test.storage.dto.FilteredPagedSearchResponseDTO;
+import com.test.storage.dto.RefreshMode;
 import com.test.storage.dto.ResponseWithSuccessDTO;
 import com.test.storage.dto.UploadFileRequestDTO;
 import com.test.storage.dto.UploadFileResponseDTO;
+import com.test.storage.service.BatchTagService;
 import com.test.storage.service.StorageService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
-import java.util.Optional;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Set;
 
 @RestController
+// served by ReactiveStorageController in the reactive profile
+@Profile("!reactive")
 @RequestMapping(value = "/file")
 public class StorageController {
 
     final StorageService storageService;
+    final BatchTagService batchTagService;
 
     @Autowired
-    public StorageController(StorageService storageService) {
+    public StorageController(StorageService storageService, BatchTagService batchTagService) {
         this.storageService = storageService;
+        this.batchTagService = batchTagService;
     }
 
     @PostMapping
-    public UploadFileResponseDTO uploadFile(@RequestBody @Valid UploadFileRequestDTO fileToUpload) {
-        return storageService.uploadFile(fileToUpload);
+    public UploadFileResponseDTO uploadFile(@RequestBody @Valid UploadFileRequestDTO fileToUpload,
+                                            @RequestParam(required = false) RefreshMode refresh) {
+        return storageService.uploadFile(fileToUpload, refresh);
+    }
+
+    @PostMapping(value = "/_bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BulkUploadResponseDTO bulkUploadFiles(@RequestBody List<UploadFileRequestDTO> filesToUpload,
+                                                 @RequestParam(required = false) RefreshMode refresh) {
+        return storageService.bulkUploadFiles(filesToUpload, refresh);
+    }
+
+    @PostMapping(value = "/_bulk", consumes = "application/x-ndjson")
+    public BulkUploadResponseDTO streamUploadFiles(InputStream filesToUpload,
+                                                   @RequestParam(required = false) RefreshMode refresh) throws IOException {
+        return storageService.streamUploadFiles(filesToUpload, refresh);
     }
 
     @DeleteMapping(value = "/{ID}")
-    public ResponseWithSuccessDTO deleteFileById(@PathVariable(value = "ID") String id) {
-        return storageService.deleteFileById(id);
+    public ResponseWithSuccessDTO deleteFileById(@PathVariable(value = "ID") String id,
+                                                 @RequestParam(required = false) RefreshMode refresh) {
+        return storageService.deleteFileById(id, refresh);
     }
 
     @PostMapping(value = "/{ID}/tags")
     public ResponseWithSuccessDTO assignTags(
             @PathVariable(value = "ID") String id,
-            @RequestBody Set<String> tags) {
+            @RequestBody Set<String> tags,
+            @RequestParam(required = false) RefreshMode refresh) {
 
-        return storageService.assignTagsToFileById(id, tags);
+        return storageService.assignTagsToFileById(id, tags, refresh);
     }
 
     @GetMapping
-    public FilteredPagedSearchResponseDTO filteredQuery(
-            @RequestParam(defaultValue = "0") Integer page,
-            @RequestParam(defaultValue = "10") Integer size,
-            @RequestParam Optional<Set<String>> tags,
-            @RequestParam(defaultValue = "", value = "q") String nameFilter) {
-
-        return storageService.filteredAndPagedSearch(tags, page, size, nameFilter);
+    public FilteredPagedSearchResponseDTO filteredQuery(@Valid FileSearchRequestDTO searchRequest) {
+        return storageService.filteredAndPagedSearch(searchRequest);
     }
 
     @DeleteMapping("/{ID}/tags")
     public ResponseWithSuccessDTO deleteTagsFromFile(
             @PathVariable(value = "ID") String id,
-            @RequestBody Set<String> tags) {
+            @RequestBody Set<String> tags,
+            @RequestParam(required = false) RefreshMode refresh) {
+
+        return storageService.deleteTagsFromFileById(id, tags, refresh);
+    }
+
+    @PostMapping("/_tags")
+    public BatchTagUpdateResponseDTO updateTagsOfFiles(@RequestBody @Valid BatchTagUpdateRequestDTO request) {
+        return batchTagService.updateTags(request);
+    }
 
-        return storageService.deleteTagsFromFileById(id, tags);
+    @GetMapping("/_tags/tasks/{taskId}")
+    public BatchTagUpdateResponseDTO getTagUpdateTask(@PathVariable String taskId) {
+        return batchTagService.getTask(taskId);
     }
 }
@@ -0,0 +1,75 @@
+package com.test.storage.controller.reactive;
+
+import com.test.storage.dto.FileSearchRequestDTO;
+import com.test.storage.dto.FilteredPagedSearchResponseDTO;
+import com.test.storage.dto.RefreshMode;
+import com.test.storage.dto.ResponseWithSuccessDTO;
+import com.test.storage.dto.UploadFileRequestDTO;
+import com.test.storage.dto.UploadFileResponseDTO;
+import com.test.storage.exception.custom.NotSupportedInReactiveModeException;
+import com.test.storage.service.reactive.ReactiveStorageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.util.Set;
+
+@RestController
+@Profile("reactive")
+@RequestMapping(value = "/file")
+public class ReactiveStorageController {
+
+    final ReactiveStorageService storageService;
+
+    @Autowired
+    public ReactiveStorageController(ReactiveStorageService storageService) {
+        this.storageService = storageService;
+    }
+
+    @PostMapping
+    public Mono<UploadFileResponseDTO> uploadFile(@RequestBody @Valid UploadFileRequestDTO fileToUpload,
+                                                  @RequestParam(required = false) RefreshMode refresh) {
+        return storageService.uploadFile(fileToUpload, refresh);
+    }
+
+    @PostMapping(value = "/_bulk")
+    public Mono<Object> bulkUploadFiles() {
+        return Mono.error(new NotSupportedInReactiveModeException("bulk upload"));
+    }
+
+    @DeleteMapping(value = "/{ID}")
+    public Mono<ResponseWithSuccessDTO> deleteFileById(@PathVariable(value = "ID") String id,
+                                                       @RequestParam(required = false) RefreshMode refresh) {
+        return storageService.deleteFileById(id, refresh);
+    }
+
+    @PostMapping(value = "/{ID}/tags")
+    public Mono<ResponseWithSuccessDTO> assignTags(
+            @PathVariable(value = "ID") String id,
+            @RequestBody Set<String> tags,
+            @RequestParam(required = false) RefreshMode refresh) {
+
+        return storageService.assignTagsToFileById(id, tags, refresh);
+    }
+
+    @GetMapping
+    public Mono<FilteredPagedSearchResponseDTO> filteredQuery(@Valid FileSearchRequestDTO searchRequest) {
+        return storageService.filteredAndPagedSearch(searchRequest);
+    }
+
+    @DeleteMapping("/{ID}/tags")
+    public Mono<ResponseWithSuccessDTO> deleteTagsFromFile(
+            @PathVariable(value = "ID") String id,
+            @RequestBody Set<String> tags,
+            @RequestParam(required = false) RefreshMode refresh) {
+
+        return storageService.deleteTagsFromFileById(id, tags, refresh);
+    }
+
+    @RequestMapping({"/_tags", "/_tags/**"})
+    public Mono<Object> updateTagsOfFiles() {
+        return Mono.error(new NotSupportedInReactiveModeException("batch tag update"));
+    }
+}
@@ -0,0 +1,16 @@
+package com.test.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class BackingIndexDTO {
+    private String name;
+    // index new files are written to
+    private boolean writeIndex;
+    private long documents;
+    private Instant creationDate;
+}
@@ -0,0 +1,15 @@
+package com.test.storage.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchTagItemDTO {
+    private String ID;
+    // updated, unchanged, not_found or failed
+    private String result;
+    private String error;
+}
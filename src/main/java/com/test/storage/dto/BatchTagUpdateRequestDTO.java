@@ -0,0 +1,39 @@
+package com.test.storage.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+import java.util.Set;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTagUpdateRequestDTO {
+
+    private List<@NotNull(message = "ids must not contain null") String> ids;
+
+    @Valid
+    private FileFilterDTO filter;
+
+    private Set<String> add;
+
+    private Set<String> remove;
+
+    @JsonIgnore
+    @AssertTrue(message = "exactly one of ids or filter must be provided")
+    public boolean isTargetValid() {
+        return (ids == null) != (filter == null);
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "tags to add or remove must be provided")
+    public boolean isChangeValid() {
+        return (add != null && !add.isEmpty()) || (remove != null && !remove.isEmpty());
+    }
+}
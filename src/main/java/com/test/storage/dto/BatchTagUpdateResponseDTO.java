@@ -0,0 +1,22 @@
+package com.test.storage.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchTagUpdateResponseDTO {
+    private String taskId;
+    private BatchTaskStatus status;
+    private Long processed;
+    private Long updated;
+    private Long unchanged;
+    private Long notFound;
+    private Long failed;
+    private String error;
+    private List<BatchTagItemDTO> items;
+}
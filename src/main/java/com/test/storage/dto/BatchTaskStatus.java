@@ -0,0 +1,7 @@
+package com.test.storage.dto;
+
+public enum BatchTaskStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,22 @@
+package com.test.storage.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkUploadItemDTO {
+    private Long index;
+    private String ID;
+    private String error;
+
+    public static BulkUploadItemDTO success(long index, String id) {
+        return new BulkUploadItemDTO(index, id, null);
+    }
+
+    public static BulkUploadItemDTO failure(long index, String error) {
+        return new BulkUploadItemDTO(index, null, error);
+    }
+}
@@ -0,0 +1,19 @@
+package com.test.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BulkUploadResponseDTO {
+    private Long uploaded;
+    private Long failed;
+    private List<BulkUploadItemDTO> items;
+
+    public static BulkUploadResponseDTO of(List<BulkUploadItemDTO> items) {
+        long failed = items.stream().filter(item -> item.getError() != null).count();
+        return new BulkUploadResponseDTO(items.size() - failed, failed, items);
+    }
+}
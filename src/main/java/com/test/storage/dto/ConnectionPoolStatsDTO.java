@@ -0,0 +1,16 @@
+package com.test.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ConnectionPoolStatsDTO {
+    // connections used by requests in flight
+    private int leased;
+    // requests waiting for a connection
+    private int pending;
+    // idle connections kept alive
+    private int available;
+    private int max;
+}
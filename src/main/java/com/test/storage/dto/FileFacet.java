@@ -0,0 +1,11 @@
+package com.test.storage.dto;
+
+/**
+ * Counts of matching files returned by {@code GET /file} along with the page.
+ */
+public enum FileFacet {
+    // files per tag, most frequent tags first
+    TAGS,
+    // files per size range
+    SIZE
+}
@@ -0,0 +1,16 @@
+package com.test.storage.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+// facets which were not requested are absent
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FileFacetsDTO {
+    private List<TagCountDTO> tags;
+    private List<SizeBucketDTO> sizes;
+}
@@ -0,0 +1,33 @@
+package com.test.storage.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.PositiveOrZero;
+import java.util.Set;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileFilterDTO {
+    private Set<String> tags;
+    private String q = "";
+    // any of the tags when not set
+    private TagMatch tagMatch;
+
+    // bounds of file size, inclusive
+    @PositiveOrZero(message = "min size must not be less than 0")
+    private Long minSize;
+
+    @PositiveOrZero(message = "max size must not be less than 0")
+    private Long maxSize;
+
+    @JsonIgnore
+    @AssertTrue(message = "min size must not be greater than max size")
+    public boolean isSizeRangeValid() {
+        return minSize == null || maxSize == null || minSize <= maxSize;
+    }
+}
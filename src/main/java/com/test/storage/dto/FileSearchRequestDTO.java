@@ -0,0 +1,59 @@
+package com.test.storage.dto;
+
+import com.test.storage.model.StoredFileField;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.PositiveOrZero;
+
+import java.util.Set;
+
+/**
+ * Query parameters of {@code GET /file}.
+ */
+@Data
+@NoArgsConstructor
+public class FileSearchRequestDTO {
+
+    private Integer page = 0;
+
+    private Integer size = 10;
+
+    private Set<String> tags;
+
+    // any of the tags when not set
+    private TagMatch tagMatch;
+
+    // filter by part of file name
+    private String q = "";
+
+    // bounds of file size, inclusive
+    @PositiveOrZero(message = "min size must not be less than 0")
+    private Long minSize;
+
+    @PositiveOrZero(message = "max size must not be less than 0")
+    private Long maxSize;
+
+    private FileSort sort;
+
+    // start cursor based paging instead of page numbers
+    private boolean scroll;
+
+    // continuation token returned by the previous cursor based page
+    private String cursor;
+
+    // deployment default is used when not set
+    private TotalHitsMode total;
+
+    // fields of found files to return, all when not set; fields=id returns only ids
+    private Set<StoredFileField> fields;
+
+    // counts of all matching files to return along with the page
+    private Set<FileFacet> facets;
+
+    @AssertTrue(message = "min size must not be greater than max size")
+    public boolean isSizeRangeValid() {
+        return minSize == null || maxSize == null || minSize <= maxSize;
+    }
+}
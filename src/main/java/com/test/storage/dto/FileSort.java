@@ -0,0 +1,29 @@
+package com.test.storage.dto;
+
+import com.test.storage.model.StoredFileField;
+
+/**
+ * Order of files found by {@code GET /file}, by relevance to the name filter when not set.
+ */
+public enum FileSort {
+    SIZE_ASC(StoredFileField.FILESIZE, false),
+    SIZE_DESC(StoredFileField.FILESIZE, true),
+    NAME_ASC(StoredFileField.FILENAME, false),
+    NAME_DESC(StoredFileField.FILENAME, true);
+
+    private final StoredFileField field;
+    private final boolean descending;
+
+    FileSort(StoredFileField field, boolean descending) {
+        this.field = field;
+        this.descending = descending;
+    }
+
+    public StoredFileField getField() {
+        return field;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+}
@@ -1,5 +1,6 @@
 package com.test.storage.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.test.storage.model.StoredFile;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -9,6 +10,27 @@ import java.util.List;
 @Data
 @AllArgsConstructor
 public class FilteredPagedSearchResponseDTO {
+    // absent when not counted
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Long total;
-    private List<StoredFile> page;
+    // files of a projected search are ProjectedFileDTO
+    private List<? extends StoredFile> page;
+    // token of the next page in cursor based paging, absent on the last page
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String cursor;
+    // "eq" when total is exact, "gte" when it is a lower bound
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String totalRelation;
+    // absent when no facets were requested
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private FileFacetsDTO facets;
+
+    public FilteredPagedSearchResponseDTO(Long total, List<? extends StoredFile> page) {
+        this(total, page, null, null, null);
+    }
+
+    public FilteredPagedSearchResponseDTO(Long total, List<? extends StoredFile> page, String cursor,
+                                          String totalRelation) {
+        this(total, page, cursor, totalRelation, null);
+    }
 }
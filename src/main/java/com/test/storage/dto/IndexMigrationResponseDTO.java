@@ -0,0 +1,15 @@
+package com.test.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class IndexMigrationResponseDTO {
+    private List<String> previousIndices;
+    private String newIndex;
+    private Long sourceDocuments;
+    private Long migratedDocuments;
+}
@@ -0,0 +1,16 @@
+package com.test.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class IndexRolloverResponseDTO {
+    private String oldIndex;
+    private String newIndex;
+    private boolean rolledOver;
+    private boolean dryRun;
+    private Map<String, Boolean> conditions;
+}
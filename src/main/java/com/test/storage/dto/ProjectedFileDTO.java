@@ -0,0 +1,22 @@
+package com.test.storage.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.test.storage.model.StoredFile;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+// file of a page limited by fields=, the fields which were not requested are left out instead of being null
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProjectedFileDTO extends StoredFile {
+
+    public ProjectedFileDTO(StoredFile file) {
+        super(file.getId(), file.getFileName(), file.getFileSize(), file.getTags());
+    }
+
+    public static List<ProjectedFileDTO> fromAll(List<StoredFile> files) {
+        return files.stream()
+                .map(ProjectedFileDTO::new)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,13 @@
+package com.test.storage.dto;
+
+/**
+ * When a write of files becomes visible to searches.
+ */
+public enum RefreshMode {
+    // visible after the next periodic refresh of the index, cheapest for bulk loads
+    NONE,
+    // request waits for the next periodic refresh of the index
+    WAIT_FOR,
+    // index is refreshed right after the write, which creates a small segment every time
+    IMMEDIATE
+}
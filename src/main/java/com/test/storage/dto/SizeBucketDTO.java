@@ -0,0 +1,16 @@
+package com.test.storage.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SizeBucketDTO {
+    // inclusive, absent for the first bucket
+    private Long from;
+    // exclusive, absent for the last bucket
+    private Long to;
+    private long count;
+}
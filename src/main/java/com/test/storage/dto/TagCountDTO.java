@@ -0,0 +1,11 @@
+package com.test.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TagCountDTO {
+    private String tag;
+    private long count;
+}
@@ -0,0 +1,11 @@
+package com.test.storage.dto;
+
+/**
+ * How tags of a file filter are matched.
+ */
+public enum TagMatch {
+    // file has at least one of the tags
+    ANY,
+    // file has every tag
+    ALL
+}
@@ -0,0 +1,12 @@
+package com.test.storage.dto;
+
+/**
+ * How precisely {@code GET /file} counts matching files.
+ */
+public enum TotalHitsMode {
+    // total is not counted at all
+    NONE,
+    // total is counted exactly up to a threshold and reported as a lower bound above it
+    ESTIMATE,
+    EXACT
+}
@@ -0,0 +1,13 @@
+package com.test.storage.exception.custom;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class CursorPagingNotSupportedException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "cursor based paging is not supported in reactive mode, use page numbers";
+    }
+}
@@ -0,0 +1,13 @@
+package com.test.storage.exception.custom;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class FacetsNotSupportedException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "facets are not supported in reactive mode";
+    }
+}
@@ -0,0 +1,18 @@
+package com.test.storage.exception.custom;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class NotSupportedInReactiveModeException extends RuntimeException {
+    private final String feature;
+
+    public NotSupportedInReactiveModeException(String feature) {
+        this.feature = feature;
+    }
+
+    @Override
+    public String getMessage() {
+        return String.format("%s is not supported in reactive mode, use the default mode", feature);
+    }
+}
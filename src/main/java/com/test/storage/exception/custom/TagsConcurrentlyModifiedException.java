@@ -0,0 +1,22 @@
+package com.test.storage.exception.custom;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Set;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class TagsConcurrentlyModifiedException extends RuntimeException {
+    private final String id;
+    private final Set<String> tags;
+
+    public TagsConcurrentlyModifiedException(String id, Set<String> tags) {
+        this.id = id;
+        this.tags = tags;
+    }
+
+    @Override
+    public String getMessage() {
+        return String.format("tags of file with id: %s kept changing while removing %s, retry later", id, tags);
+    }
+}
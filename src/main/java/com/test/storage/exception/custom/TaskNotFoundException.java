@@ -0,0 +1,18 @@
+package com.test.storage.exception.custom;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class TaskNotFoundException extends RuntimeException {
+    private final String id;
+
+    public TaskNotFoundException(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public String getMessage() {
+        return "task not found, id: " + id;
+    }
+}
@@ -0,0 +1,13 @@
+package com.test.storage.exception.custom;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class WriteQueueFullException extends RuntimeException {
+
+    @Override
+    public String getMessage() {
+        return "too many pending writes, retry later";
+    }
+}
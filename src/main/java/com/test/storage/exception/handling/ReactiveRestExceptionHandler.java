@@ -0,0 +1,74 @@
+package com.test.storage.exception.handling;
+
+import com.test.storage.exception.custom.CursorPagingNotSupportedException;
+import com.test.storage.exception.custom.FacetsNotSupportedException;
+import com.test.storage.exception.custom.FileNotFoundException;
+import com.test.storage.exception.custom.NotSupportedInReactiveModeException;
+import com.test.storage.exception.custom.TagNotFoundOnFileException;
+import com.test.storage.exception.custom.TagsConcurrentlyModifiedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.util.stream.Collectors;
+
+/**
+ * Error responses of the reactive profile, same as of {@link RestExceptionHandler}.
+ */
+@RestControllerAdvice
+@Profile("reactive")
+public class ReactiveRestExceptionHandler {
+
+    final MeterRegistry meterRegistry;
+
+    @Autowired
+    public ReactiveRestExceptionHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    private ResponseEntity<Object> responseEntity(Exception exception, String error, HttpStatus status) {
+        meterRegistry.counter(RestExceptionHandler.ERRORS_METER,
+                "exception", exception.getClass().getSimpleName(),
+                "status", String.valueOf(status.value())).increment();
+        return new ResponseEntity<>(new ApiErrorDTO(error), status);
+    }
+
+    @ExceptionHandler(FileNotFoundException.class)
+    public ResponseEntity<Object> handleNotFound(Exception ex) {
+        return responseEntity(ex, ex.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler({TagNotFoundOnFileException.class, CursorPagingNotSupportedException.class,
+            FacetsNotSupportedException.class, NotSupportedInReactiveModeException.class})
+    public ResponseEntity<Object> handleBadRequest(Exception ex) {
+        return responseEntity(ex, ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(TagsConcurrentlyModifiedException.class)
+    public ResponseEntity<Object> handleConflict(Exception ex) {
+        return responseEntity(ex, ex.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    // invalid body and query parameters
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<Object> handleBindException(WebExchangeBindException ex) {
+        String textOfError = ex
+                .getAllErrors()
+                .stream()
+                .map(DefaultMessageSourceResolvable::getDefaultMessage)
+                .collect(Collectors.joining(", "));
+        return responseEntity(ex, textOfError, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity<Object> handleInputException(ServerWebInputException ex) {
+        return responseEntity(ex, ex.getReason(), HttpStatus.BAD_REQUEST);
+    }
+}
@@ -1,12 +1,20 @@
 package com.test.storage.exception.handling;
 
+import com.test.storage.exception.custom.CursorExpiredException;
 import com.test.storage.exception.custom.FileNotFoundException;
 import com.test.storage.exception.custom.TagNotFoundOnFileException;
+import com.test.storage.exception.custom.TagsConcurrentlyModifiedException;
+import com.test.storage.exception.custom.TaskNotFoundException;
+import com.test.storage.exception.custom.WriteQueueFullException;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.TypeMismatchException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BindException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -16,22 +24,50 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExcep
 import java.util.stream.Collectors;
 
 @RestControllerAdvice
+@Profile("!reactive")
 public class RestExceptionHandler extends ResponseEntityExceptionHandler {
 
+    // storage.errors counter per exception type and response status
+    static final String ERRORS_METER = "storage.errors";
+
+    final MeterRegistry meterRegistry;
+
+    @Autowired
+    public RestExceptionHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     private ResponseEntity<Object> responseEntity(Exception exception, HttpStatus status) {
+        countError(exception, status);
         return new ResponseEntity<>(new ApiErrorDTO(exception.getMessage()), status);
     }
 
-    @ExceptionHandler(FileNotFoundException.class)
-    public ResponseEntity<Object> handleNotFound(FileNotFoundException ex) {
+    private void countError(Exception exception, HttpStatus status) {
+        meterRegistry.counter(ERRORS_METER,
+                "exception", exception.getClass().getSimpleName(),
+                "status", String.valueOf(status.value())).increment();
+    }
+
+    @ExceptionHandler({FileNotFoundException.class, TaskNotFoundException.class})
+    public ResponseEntity<Object> handleNotFound(Exception ex) {
         return responseEntity(ex, HttpStatus.NOT_FOUND);
     }
 
-    @ExceptionHandler(TagNotFoundOnFileException.class)
+    @ExceptionHandler({TagNotFoundOnFileException.class, CursorExpiredException.class})
     public ResponseEntity<Object> handleBadRequest(Exception ex) {
         return responseEntity(ex, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(TagsConcurrentlyModifiedException.class)
+    public ResponseEntity<Object> handleConflict(Exception ex) {
+        return responseEntity(ex, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(WriteQueueFullException.class)
+    public ResponseEntity<Object> handleTooManyRequests(Exception ex) {
+        return responseEntity(ex, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(
             MethodArgumentNotValidException exception,
@@ -48,11 +84,42 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
         if (textOfError.isEmpty()) {
             textOfError = exception.getMessage();
         }
+        countError(exception, status);
+        return new ResponseEntity<>(new ApiErrorDTO(textOfError), headers, status);
+    }
+
+    @Override
+    protected ResponseEntity<Object> handleBindException(
+            BindException exception,
+            HttpHeaders headers,
+            HttpStatus status,
+            WebRequest request) {
+
+        String textOfError = exception
+                .getAllErrors()
+                .stream()
+                .map(DefaultMessageSourceResolvable::getDefaultMessage)
+                .collect(Collectors.joining(", "));
+        countError(exception, status);
         return new ResponseEntity<>(new ApiErrorDTO(textOfError), headers, status);
     }
 
     @Override
     protected ResponseEntity<Object> handleTypeMismatch(TypeMismatchException ex, HttpHeaders headers, HttpStatus status, WebRequest request) {
+        countError(ex, status);
         return new ResponseEntity<>(new ApiErrorDTO(ex.getMessage()), headers, status);
     }
+
+    // rest of the Spring MVC exceptions keep their default responses
+    @Override
+    protected ResponseEntity<Object> handleExceptionInternal(
+            Exception ex,
+            Object body,
+            HttpHeaders headers,
+            HttpStatus status,
+            WebRequest request) {
+
+        countError(ex, status);
+        return super.handleExceptionInternal(ex, body, headers, status, request);
+    }
 }
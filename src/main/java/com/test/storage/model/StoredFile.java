@@ -8,6 +8,8 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.Mapping;
+import org.springframework.data.elasticsearch.annotations.Setting;
 
 import java.util.Set;
 
@@ -15,7 +17,10 @@ import java.util.Set;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@Document(indexName = "files")
+// "files" is an alias, backing indices are created by FilesIndexManager
+@Document(indexName = "files", createIndex = false)
+@Setting(settingPath = "/elasticsearch/files-settings.json")
+@Mapping(mappingPath = "/elasticsearch/files-mapping.json")
 public class StoredFile {
 
     @Id
@@ -27,7 +32,7 @@ public class StoredFile {
     @Field(type = FieldType.Long, name = "filesize")
     private Long fileSize;
 
-    @Field(type = FieldType.Auto)
+    @Field(type = FieldType.Keyword, normalizer = "tag")
     private Set<String> tags;
 
 }
@@ -0,0 +1,26 @@
+package com.test.storage.model;
+
+/**
+ * Fields of {@link StoredFile} that can be requested from searches,
+ * names match the JSON representation of the file case-insensitively.
+ */
+public enum StoredFileField {
+    // always returned, requesting only id skips the document source
+    ID(null),
+    FILENAME("filename"),
+    FILESIZE("filesize"),
+    TAGS("tags");
+
+    private final String sourceField;
+
+    StoredFileField(String sourceField) {
+        this.sourceField = sourceField;
+    }
+
+    /**
+     * @return name of the field in the document source, null for id which is not a part of it
+     */
+    public String getSourceField() {
+        return sourceField;
+    }
+}
@@ -0,0 +1,15 @@
+package com.test.storage.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@AllArgsConstructor
+public class BackingIndex {
+    private final String name;
+    private final boolean writeIndex;
+    private final long documents;
+    private final Instant creationDate;
+}
@@ -0,0 +1,16 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFile;
+
+/**
+ * Buffers files and writes them to the storage in bulk requests.
+ * Result of every added file is reported to the listener the session was opened with,
+ * {@link #close()} flushes the remaining files and waits for all pending requests.
+ */
+public interface BulkIndexSession extends AutoCloseable {
+
+    void add(long ordinal, StoredFile file);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,27 @@
+package com.test.storage.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BulkItemResult {
+    // position of the item in the submitted sequence
+    private final long ordinal;
+    private final String id;
+    private final String error;
+    // HTTP status of the failure, like 404 for a missing file or 429 for a rejected one, 0 on success
+    private final int status;
+
+    public static BulkItemResult success(long ordinal, String id) {
+        return new BulkItemResult(ordinal, id, null, 0);
+    }
+
+    public static BulkItemResult failure(long ordinal, int status, String error) {
+        return new BulkItemResult(ordinal, null, error, status);
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+}
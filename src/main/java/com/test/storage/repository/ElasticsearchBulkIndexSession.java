@@ -0,0 +1,109 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFile;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+class ElasticsearchBulkIndexSession implements BulkIndexSession {
+
+    private static final long CLOSE_TIMEOUT_MINUTES = 10;
+
+    private final String indexName;
+    private final ElasticsearchConverter converter;
+    private final BulkProcessor bulkProcessor;
+    // requests are matched back to ordinals by identity when bulk response arrives
+    private final Map<DocWriteRequest<?>, Long> ordinals = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    ElasticsearchBulkIndexSession(RestHighLevelClient client,
+                                  ElasticsearchConverter converter,
+                                  String indexName,
+                                  int maxActions,
+                                  long maxSizeInBytes,
+                                  int concurrentRequests,
+                                  RefreshPolicy refresh,
+                                  Consumer<BulkItemResult> listener) {
+        this.indexName = indexName;
+        this.converter = converter;
+        this.bulkProcessor = BulkProcessor
+                .builder((request, bulkListener) -> client.bulkAsync(
+                                request.setRefreshPolicy(refresh), RequestOptions.DEFAULT, bulkListener),
+                        new ResultReportingListener(listener))
+                .setBulkActions(maxActions)
+                .setBulkSize(new ByteSizeValue(maxSizeInBytes))
+                .setConcurrentRequests(concurrentRequests)
+                .build();
+    }
+
+    @Override
+    public void add(long ordinal, StoredFile file) {
+        Document source = Document.create();
+        converter.write(file, source);
+        // id is generated here rather than by Elasticsearch so it is copied to the sorted id field
+        String id = file.getId() == null ? UUID.randomUUID().toString() : file.getId();
+        source.put(FileSearchQueries.ID_FIELD, id);
+        IndexRequest request = new IndexRequest(indexName).id(id).source(source);
+        ordinals.put(request, ordinal);
+        bulkProcessor.add(request);
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (!bulkProcessor.awaitClose(CLOSE_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("bulk requests were not completed in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for bulk requests", e);
+        }
+    }
+
+    private class ResultReportingListener implements BulkProcessor.Listener {
+
+        private final Consumer<BulkItemResult> listener;
+
+        ResultReportingListener(Consumer<BulkItemResult> listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            for (BulkItemResponse item : response.getItems()) {
+                long ordinal = ordinals.remove(request.requests().get(item.getItemId()));
+                listener.accept(item.isFailed()
+                        ? BulkItemResult.failure(ordinal, item.status().getStatus(), item.getFailureMessage())
+                        : BulkItemResult.success(ordinal, item.getId()));
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            for (DocWriteRequest<?> itemRequest : request.requests()) {
+                listener.accept(BulkItemResult.failure(ordinals.remove(itemRequest),
+                        ExceptionsHelper.status(failure).getStatus(), failure.getMessage()));
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.test.storage.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts of files matching a search, computed by aggregations of the same search request.
+ */
+@Getter
+@AllArgsConstructor
+public class FileFacets {
+    // files per tag, ordered from the most frequent tag; null when not requested
+    private final Map<String, Long> tags;
+    // null when not requested
+    private final List<SizeBucket> sizes;
+
+    @Getter
+    @AllArgsConstructor
+    public static class SizeBucket {
+        // null when unbounded
+        private final Long from;
+        private final Long to;
+        private final long count;
+    }
+}
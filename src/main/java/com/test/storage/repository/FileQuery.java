@@ -0,0 +1,33 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFileField;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * Filter of files shared by searches, scrolls and updates by filter,
+ * and fields of found files returned by searches.
+ */
+@Getter
+@Builder
+public class FileQuery {
+    private final Set<String> tags;
+    // file must have every tag rather than any of them
+    private final boolean allTags;
+    // part of file name
+    private final String nameFilter;
+    // inclusive bounds of file size, unbounded when null
+    private final Long minSize;
+    private final Long maxSize;
+    // FILENAME or FILESIZE, files are ordered by relevance when null
+    private final StoredFileField sortField;
+    private final boolean sortDescending;
+    // all fields when null
+    private final Set<StoredFileField> fields;
+    // count matching files per tag along with the search
+    private final boolean tagsFacet;
+    // count matching files per size range along with the search
+    private final boolean sizeFacet;
+}
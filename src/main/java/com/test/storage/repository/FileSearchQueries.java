@@ -0,0 +1,179 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFileField;
+import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.range.Range;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Translates {@link FileQuery} to Elasticsearch queries.
+ */
+public final class FileSearchQueries {
+
+    static final String NAME_NGRAM_FIELD = "filename.ngram";
+    // length of grams in filename.ngram subfield, see files-settings.json
+    static final int NAME_GRAM_LENGTH = 3;
+    static final String SORTED_NAME_FIELD = "filename.keyword";
+    // copy of the document id with doc values, sorting on _id would load it to fielddata on the heap
+    static final String ID_FIELD = "id";
+
+    public static final int TRACK_TOTAL_HITS_DISABLED = -1;
+    public static final int TRACK_TOTAL_HITS_ACCURATE = Integer.MAX_VALUE;
+
+    static final String TAGS_FACET = "tags";
+    static final String SIZE_FACET = "sizes";
+    // bounds between file size ranges: 1 KB, 1 MB, 100 MB and 1 GB
+    static final long[] SIZE_FACET_BOUNDS = {1L << 10, 1L << 20, 100L << 20, 1L << 30};
+
+    private FileSearchQueries() {
+
+    }
+
+    /**
+     * Tags are exact matches on the keyword field and size is a range on the long field, both in filter context,
+     * so they are not scored and Elasticsearch can cache them; only the name filter contributes to the score.
+     *
+     * @param nameNgramMapped whether every searched index maps the {@code filename.ngram} subfield, the name filter
+     *                        is a wildcard query otherwise, see {@link FilesIndexManager#isNameNgramMapped()}
+     */
+    public static QueryBuilder filter(FileQuery fileQuery, boolean nameNgramMapped) {
+        BoolQueryBuilder query = QueryBuilders.boolQuery();
+        var tags = fileQuery.getTags();
+        if (tags != null && !tags.isEmpty()) {
+            if (fileQuery.isAllTags()) {
+                tags.forEach(tag -> query.filter(QueryBuilders.termQuery("tags", tag)));
+            } else {
+                query.filter(QueryBuilders.termsQuery("tags", tags));
+            }
+        }
+        if (fileQuery.getMinSize() != null || fileQuery.getMaxSize() != null) {
+            query.filter(QueryBuilders.rangeQuery("filesize").gte(fileQuery.getMinSize()).lte(fileQuery.getMaxSize()));
+        }
+        var nameFilter = fileQuery.getNameFilter();
+        if (nameFilter != null && !nameFilter.isEmpty()) {
+            query.must(nameContaining(nameFilter, nameNgramMapped));
+        }
+        return query.hasClauses() ? query : QueryBuilders.matchAllQuery();
+    }
+
+    /**
+     * Limits the document source of found files to the fields of the query.
+     */
+    public static void applyFields(SearchSourceBuilder source, FileQuery query) {
+        if (query.getFields() == null) {
+            return;
+        }
+        String[] includes = query.getFields().stream()
+                .map(StoredFileField::getSourceField)
+                .filter(Objects::nonNull)
+                .toArray(String[]::new);
+        if (includes.length == 0) {
+            source.fetchSource(false);
+        } else {
+            source.fetchSource(includes, null);
+        }
+    }
+
+    /**
+     * Orders found files by the sort field of the query, files are left ordered by score when it is not set.
+     * File names are sorted on the {@code filename.keyword} subfield, as the analyzed field can't be sorted on.
+     * Files with the same value are then ordered by name and id, otherwise their order may differ between
+     * requests (and shard copies) and a file may show up on two pages or on none. Id is sorted on the {@code id}
+     * keyword field, which files indexed before it was mapped get on migration of the index.
+     */
+    public static void applySort(SearchSourceBuilder source, FileQuery query) {
+        if (query.getSortField() == null) {
+            return;
+        }
+        String field = query.getSortField() == StoredFileField.FILENAME
+                ? SORTED_NAME_FIELD
+                : query.getSortField().getSourceField();
+        source.sort(SortBuilders.fieldSort(field).order(query.isSortDescending() ? SortOrder.DESC : SortOrder.ASC));
+        if (!field.equals(SORTED_NAME_FIELD)) {
+            source.sort(SortBuilders.fieldSort(SORTED_NAME_FIELD));
+        }
+        source.sort(SortBuilders.fieldSort(ID_FIELD).unmappedType("keyword"));
+    }
+
+    /**
+     * Adds aggregations of the facets of the query to the search, so they are computed in the same request.
+     *
+     * @param tagCount number of the most frequent tags to count
+     */
+    public static void applyFacets(SearchSourceBuilder source, FileQuery query, int tagCount) {
+        if (query.isTagsFacet()) {
+            source.aggregation(AggregationBuilders.terms(TAGS_FACET).field("tags").size(tagCount));
+        }
+        if (query.isSizeFacet()) {
+            RangeAggregationBuilder sizes = AggregationBuilders.range(SIZE_FACET).field("filesize")
+                    .addUnboundedTo(SIZE_FACET_BOUNDS[0]);
+            for (int i = 1; i < SIZE_FACET_BOUNDS.length; i++) {
+                sizes.addRange(SIZE_FACET_BOUNDS[i - 1], SIZE_FACET_BOUNDS[i]);
+            }
+            source.aggregation(sizes.addUnboundedFrom(SIZE_FACET_BOUNDS[SIZE_FACET_BOUNDS.length - 1]));
+        }
+    }
+
+    /**
+     * @return null when the response has none of the facets
+     */
+    public static FileFacets readFacets(Aggregations aggregations) {
+        if (aggregations == null) {
+            return null;
+        }
+        Terms tagsAggregation = aggregations.get(TAGS_FACET);
+        Range sizesAggregation = aggregations.get(SIZE_FACET);
+        if (tagsAggregation == null && sizesAggregation == null) {
+            return null;
+        }
+        Map<String, Long> tags = null;
+        if (tagsAggregation != null) {
+            tags = new LinkedHashMap<>();
+            for (Terms.Bucket bucket : tagsAggregation.getBuckets()) {
+                tags.put(bucket.getKeyAsString(), bucket.getDocCount());
+            }
+        }
+        List<FileFacets.SizeBucket> sizes = sizesAggregation == null ? null : sizesAggregation.getBuckets().stream()
+                .map(bucket -> new FileFacets.SizeBucket(
+                        toBound(bucket.getFrom()),
+                        toBound(bucket.getTo()),
+                        bucket.getDocCount()))
+                .collect(Collectors.toList());
+        return new FileFacets(tags, sizes);
+    }
+
+    // unbounded ends of ranges are infinite
+    private static Long toBound(Object bound) {
+        double value = ((Number) bound).doubleValue();
+        return Double.isInfinite(value) ? null : (long) value;
+    }
+
+    private static QueryBuilder nameContaining(String nameFilter, boolean ngramMapped) {
+        if (ngramMapped && nameFilter.length() >= NAME_GRAM_LENGTH) {
+            // grams of the filter at consecutive positions, so the name contains the filter rather than
+            // each of its grams somewhere
+            return QueryBuilders.matchPhraseQuery(NAME_NGRAM_FIELD, nameFilter);
+        }
+        // filter shorter than a gram can't be matched on the n-gram subfield, neither can files of an index
+        // created before the subfield was mapped
+        return QueryBuilders
+                .queryStringQuery("*" + QueryParserUtil.escape(nameFilter) + "*")
+                .field("filename")
+                .analyzeWildcard(true);
+    }
+}
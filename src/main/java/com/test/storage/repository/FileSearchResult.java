@@ -0,0 +1,31 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFile;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class FileSearchResult {
+    // null when total hits were not tracked
+    private final Long total;
+    // false when total is a lower bound
+    private final boolean totalExact;
+    private final List<StoredFile> files;
+    // continuation of cursor based paging, null when there are no more pages
+    private final String cursor;
+    // null when no facets were requested
+    private final FileFacets facets;
+    // true when files carry only the fields of a projection, the others are null
+    private final boolean projected;
+
+    public FileSearchResult(Long total, boolean totalExact, List<StoredFile> files, String cursor) {
+        this(total, totalExact, files, cursor, null);
+    }
+
+    public FileSearchResult(Long total, boolean totalExact, List<StoredFile> files, String cursor, FileFacets facets) {
+        this(total, totalExact, files, cursor, facets, false);
+    }
+}
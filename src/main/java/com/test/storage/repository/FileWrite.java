@@ -0,0 +1,42 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFile;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * Single change of a file sent in a bulk write.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class FileWrite {
+
+    public enum Type {
+        INDEX,
+        DELETE,
+        UPDATE_TAGS
+    }
+
+    private final Type type;
+    private final String id;
+    // document of INDEX write
+    private final StoredFile file;
+    private final Set<String> tagsToAdd;
+    // removal of missing tags is ignored
+    private final Set<String> tagsToRemove;
+
+    public static FileWrite index(StoredFile file) {
+        return new FileWrite(Type.INDEX, file.getId(), file, null, null);
+    }
+
+    public static FileWrite delete(String id) {
+        return new FileWrite(Type.DELETE, id, null, null, null);
+    }
+
+    public static FileWrite updateTags(String id, Set<String> tagsToAdd, Set<String> tagsToRemove) {
+        return new FileWrite(Type.UPDATE_TAGS, id, null, tagsToAdd, tagsToRemove);
+    }
+}
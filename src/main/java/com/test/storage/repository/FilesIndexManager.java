@@ -0,0 +1,355 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFile;
+import org.elasticsearch.action.admin.indices.alias.Alias;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.core.CountRequest;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetFieldMappingsRequest;
+import org.elasticsearch.client.indices.GetFieldMappingsResponse.FieldMappingMetadata;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.client.indices.GetIndexResponse;
+import org.elasticsearch.client.indices.rollover.RolloverRequest;
+import org.elasticsearch.client.indices.rollover.RolloverResponse;
+import org.elasticsearch.client.tasks.TaskSubmissionResponse;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.reindex.ReindexRequest;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manages backing indices of the files alias. Every backing index is named {@code <alias>-<generation>}
+ * and created with the settings and mapping from {@code resources/elasticsearch}.
+ * New files are written to the write index of the alias, searches go to all backing indices.
+ */
+@Component
+public class FilesIndexManager {
+
+    static final String SETTINGS_PATH = "/elasticsearch/files-settings.json";
+    static final String MAPPING_PATH = "/elasticsearch/files-mapping.json";
+
+    private static final long TASK_POLL_INTERVAL_MILLIS = 1000;
+    private static final String COPY_ID_SCRIPT = "ctx._source." + FileSearchQueries.ID_FIELD + " = ctx._id";
+
+    private final RestHighLevelClient client;
+    private final String alias;
+
+    // conditions of the rollover, a non-positive value disables the condition
+    @Value("${storage.index.rollover.max-age:30d}")
+    private Duration rolloverMaxAge = Duration.ofDays(30);
+
+    @Value("${storage.index.rollover.max-docs:10000000}")
+    private long rolloverMaxDocs = 10_000_000;
+
+    @Value("${storage.index.rollover.max-size:50GB}")
+    private DataSize rolloverMaxSize = DataSize.ofGigabytes(50);
+
+    // backing indices are listed again after this instance changes them, changes made by other instances
+    // are picked up after the ttl or when a file is not found in the listed indices; mappings of backing indices
+    // are checked again after the same ttl
+    @Value("${storage.index.backing-indices-ttl:30s}")
+    private Duration backingIndicesTtl = Duration.ofSeconds(30);
+
+    private volatile ListedIndices backingIndices;
+    private volatile CheckedMapping nameNgramMapping;
+
+    @Autowired
+    public FilesIndexManager(RestHighLevelClient client, ElasticsearchOperations operations) {
+        this.client = client;
+        this.alias = operations.getIndexCoordinatesFor(StoredFile.class).getIndexName();
+    }
+
+    /**
+     * Creates the first backing index with the alias, unless the alias or an index with its name exists.
+     *
+     * @return whether the index was created
+     */
+    public boolean createIndexIfMissing() throws IOException {
+        if (client.indices().exists(new GetIndexRequest(alias), RequestOptions.DEFAULT)) {
+            return false;
+        }
+        client.indices().create(
+                newIndexRequest(backingIndexName(1)).alias(new Alias(alias).writeIndex(true)),
+                RequestOptions.DEFAULT);
+        forgetIndices();
+        return true;
+    }
+
+    /**
+     * Copies all files to a new backing index created with the current settings and mapping,
+     * then atomically points the alias to it and deletes previous indices.
+     * An index created before the alias was introduced (named like the alias) is migrated the same way.
+     * Files written while reindexing is running may be missed, so writes should be stopped during migration.
+     * When reindexing fails or does not copy every file, the new index is deleted and the alias is left as it was.
+     */
+    public IndexMigrationResult migrate() throws IOException, InterruptedException {
+        List<String> previousIndices = refreshBackingIndices();
+        boolean aliasExists = !previousIndices.isEmpty();
+        if (!aliasExists) {
+            if (!client.indices().exists(new GetIndexRequest(alias), RequestOptions.DEFAULT)) {
+                throw new IllegalStateException("index " + alias + " does not exist");
+            }
+            previousIndices = List.of(alias);
+        }
+        String newIndex = backingIndexName(nextGeneration(previousIndices));
+        client.indices().create(newIndexRequest(newIndex), RequestOptions.DEFAULT);
+
+        long sourceDocuments;
+        long migratedDocuments;
+        try {
+            ReindexRequest reindexRequest = new ReindexRequest()
+                    .setSourceIndices(alias)
+                    .setDestIndex(newIndex)
+                    // files indexed before the id field was mapped get it, see FileSearchQueries.applySort
+                    .setScript(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, COPY_ID_SCRIPT, Map.of()))
+                    .setRefresh(true);
+            TaskSubmissionResponse task = client.submitReindexTask(reindexRequest, RequestOptions.DEFAULT);
+            awaitReindexTask(task.getTask());
+
+            sourceDocuments = count(alias);
+            migratedDocuments = count(newIndex);
+            if (migratedDocuments != sourceDocuments) {
+                throw new IllegalStateException(String.format("%d of %d files were reindexed to %s",
+                        migratedDocuments, sourceDocuments, newIndex));
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            // previous indices are deleted together with the alias change only, they still hold every file
+            deleteIndexAfterFailure(newIndex, e);
+            throw e;
+        }
+        IndicesAliasesRequest aliasesRequest = new IndicesAliasesRequest();
+        previousIndices.forEach(index -> aliasesRequest.addAliasAction(AliasActions.removeIndex().index(index)));
+        aliasesRequest.addAliasAction(AliasActions.add().index(newIndex).alias(alias).writeIndex(true));
+        client.indices().updateAliases(aliasesRequest, RequestOptions.DEFAULT);
+        forgetIndices();
+        return new IndexMigrationResult(previousIndices, newIndex, sourceDocuments, migratedDocuments);
+    }
+
+    /**
+     * Points the write index of the alias to a new backing index when any of the configured conditions
+     * is met by the current write index. Previous backing indices stay in the alias and keep their files.
+     *
+     * @param force  roll over regardless of the conditions
+     * @param dryRun only check the conditions
+     */
+    public IndexRolloverResult rollover(boolean force, boolean dryRun) throws IOException {
+        // name of the new index is derived from the current write index by incrementing its generation
+        RolloverRequest request = new RolloverRequest(alias, null).dryRun(dryRun);
+        if (!force) {
+            if (!rolloverMaxAge.isNegative() && !rolloverMaxAge.isZero()) {
+                request.addMaxIndexAgeCondition(TimeValue.timeValueMillis(rolloverMaxAge.toMillis()));
+            }
+            if (rolloverMaxDocs > 0) {
+                request.addMaxIndexDocsCondition(rolloverMaxDocs);
+            }
+            if (rolloverMaxSize.toBytes() > 0) {
+                request.addMaxIndexSizeCondition(new ByteSizeValue(rolloverMaxSize.toBytes()));
+            }
+            if (request.getConditions().isEmpty()) {
+                throw new IllegalStateException("no rollover conditions are configured");
+            }
+        }
+        request.getCreateIndexRequest()
+                .settings(readResource(SETTINGS_PATH), XContentType.JSON)
+                .mapping(readResource(MAPPING_PATH), XContentType.JSON);
+        RolloverResponse response = client.indices().rollover(request, RequestOptions.DEFAULT);
+        if (response.isRolledOver()) {
+            forgetIndices();
+        }
+        return new IndexRolloverResult(
+                response.getOldIndex(),
+                response.getNewIndex(),
+                response.isRolledOver(),
+                response.isDryRun(),
+                response.getConditionStatus());
+    }
+
+    /**
+     * @return backing indices of the alias ordered by name, which is the order they were created in
+     */
+    public List<BackingIndex> describeBackingIndices() throws IOException {
+        GetIndexResponse response = client.indices().get(new GetIndexRequest(alias), RequestOptions.DEFAULT);
+        List<BackingIndex> indices = new ArrayList<>();
+        for (String index : response.getIndices()) {
+            boolean writeIndex = response.getAliases().getOrDefault(index, List.of()).stream()
+                    .anyMatch(aliasMetadata -> alias.equals(aliasMetadata.alias())
+                            && Boolean.TRUE.equals(aliasMetadata.writeIndex()));
+            String creationDate = response.getSetting(index, "index.creation_date");
+            indices.add(new BackingIndex(
+                    index,
+                    writeIndex,
+                    count(index),
+                    creationDate == null ? null : Instant.ofEpochMilli(Long.parseLong(creationDate))));
+        }
+        indices.sort((first, second) -> first.getName().compareTo(second.getName()));
+        return indices;
+    }
+
+    /**
+     * @return backing indices of the alias as listed within the ttl, empty when there is no alias
+     */
+    public List<String> getBackingIndices() throws IOException {
+        ListedIndices listed = backingIndices;
+        if (listed != null && System.nanoTime() - listed.listedAtNanos < backingIndicesTtl.toNanos()) {
+            return listed.indices;
+        }
+        return refreshBackingIndices();
+    }
+
+    /**
+     * Lists backing indices of the alias, bypassing the indices listed before.
+     */
+    public List<String> refreshBackingIndices() throws IOException {
+        List<String> indices = List.copyOf(client.indices()
+                .getAlias(new GetAliasesRequest(alias), RequestOptions.DEFAULT)
+                .getAliases()
+                .keySet());
+        backingIndices = new ListedIndices(indices, System.nanoTime());
+        return indices;
+    }
+
+    /**
+     * Checks, at most once per ttl of the backing indices, whether every backing index maps the
+     * {@code filename.ngram} subfield. An index created before the subfield was introduced, like the files index
+     * of a deployment predating the alias, lacks it until {@link #migrate() migrated}, and searches on it
+     * fall back to a wildcard query meanwhile.
+     */
+    public boolean isNameNgramMapped() throws IOException {
+        CheckedMapping checked = nameNgramMapping;
+        if (checked != null && System.nanoTime() - checked.checkedAtNanos < backingIndicesTtl.toNanos()) {
+            return checked.mapped;
+        }
+        Map<String, Map<String, FieldMappingMetadata>> mappings = client.indices().getFieldMapping(
+                new GetFieldMappingsRequest().indices(alias).fields(FileSearchQueries.NAME_NGRAM_FIELD),
+                RequestOptions.DEFAULT).mappings();
+        // the alias resolves to its backing indices, or to the index named like it
+        boolean mapped = !mappings.isEmpty() && mappings.values().stream()
+                .allMatch(fields -> fields.containsKey(FileSearchQueries.NAME_NGRAM_FIELD));
+        nameNgramMapping = new CheckedMapping(mapped, System.nanoTime());
+        return mapped;
+    }
+
+    String backingIndexName(int generation) {
+        return String.format("%s-%06d", alias, generation);
+    }
+
+    private int nextGeneration(List<String> indices) {
+        int generation = 0;
+        for (String index : indices) {
+            String suffix = index.substring(index.lastIndexOf('-') + 1);
+            if (index.startsWith(alias + "-") && suffix.chars().allMatch(Character::isDigit)) {
+                generation = Math.max(generation, Integer.parseInt(suffix));
+            }
+        }
+        return generation + 1;
+    }
+
+    // backing indices changed by this instance are listed and checked again on next use
+    private void forgetIndices() {
+        backingIndices = null;
+        nameNgramMapping = null;
+    }
+
+    private CreateIndexRequest newIndexRequest(String name) throws IOException {
+        return new CreateIndexRequest(name)
+                .settings(readResource(SETTINGS_PATH), XContentType.JSON)
+                .mapping(readResource(MAPPING_PATH), XContentType.JSON);
+    }
+
+    private long count(String index) throws IOException {
+        return client.count(new CountRequest(index), RequestOptions.DEFAULT).getCount();
+    }
+
+    /**
+     * Waits until the task completes and fails unless every document was reindexed. Task is read with
+     * the low level client, {@code GetTaskResponse} of the high level one has neither the error nor the response.
+     */
+    @SuppressWarnings("unchecked")
+    private void awaitReindexTask(String taskId) throws IOException, InterruptedException {
+        Request request = new Request("GET", "/_tasks/" + taskId);
+        while (true) {
+            Map<String, Object> task;
+            try {
+                task = XContentHelper.convertToMap(XContentType.JSON.xContent(),
+                        client.getLowLevelClient().performRequest(request).getEntity().getContent(), false);
+            } catch (ResponseException e) {
+                if (e.getResponse().getStatusLine().getStatusCode() == 404) {
+                    throw new IllegalStateException("reindex task " + taskId + " not found", e);
+                }
+                throw e;
+            }
+            if (Boolean.TRUE.equals(task.get("completed"))) {
+                if (task.get("error") != null) {
+                    throw new IllegalStateException("reindex task " + taskId + " failed: " + task.get("error"));
+                }
+                var response = (Map<String, Object>) task.get("response");
+                var failures = response == null ? null : (List<Object>) response.get("failures");
+                if (failures != null && !failures.isEmpty()) {
+                    throw new IllegalStateException("reindex task " + taskId + " failed to copy "
+                            + failures.size() + " files, first failure: " + failures.get(0));
+                }
+                return;
+            }
+            Thread.sleep(TASK_POLL_INTERVAL_MILLIS);
+        }
+    }
+
+    private void deleteIndexAfterFailure(String index, Exception failure) {
+        try {
+            client.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+        } catch (IOException | RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private static final class ListedIndices {
+        private final List<String> indices;
+        private final long listedAtNanos;
+
+        private ListedIndices(List<String> indices, long listedAtNanos) {
+            this.indices = indices;
+            this.listedAtNanos = listedAtNanos;
+        }
+    }
+
+    private static final class CheckedMapping {
+        private final boolean mapped;
+        private final long checkedAtNanos;
+
+        private CheckedMapping(boolean mapped, long checkedAtNanos) {
+            this.mapped = mapped;
+            this.checkedAtNanos = checkedAtNanos;
+        }
+    }
+
+    private static String readResource(String path) throws IOException {
+        try (InputStream inputStream = new ClassPathResource(path).getInputStream()) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package com.test.storage.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.test.storage.model.StoredFile;
+import com.test.storage.model.StoredFileField;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps files in memory, for local runs, tests and small deployments without Elasticsearch.
+ * <p>
+ * Tags and file names are indexed like in the mapping: lower case tags in an inverted index, and lower case
+ * trigrams of names narrowing down files containing the name filter, which is then checked on every candidate.
+ * Matching files are ordered by the sort field or, instead of relevance to the name filter, by the time
+ * they were first written. Files are visible to searches as soon as they are written, refresh policies are ignored.
+ */
+@Repository
+@Profile("in-memory")
+public class InMemoryStorageEngine implements StorageEngine {
+
+    // names longer than that are not sorted on, like with ignore_above of filename.keyword
+    static final int SORTED_NAME_MAX_LENGTH = 256;
+
+    private final Map<String, Entry> files = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> idsByTag = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> idsByNameGram = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Cache<String, ScrollContext> scrolls;
+
+    @Value("${storage.search.facets.tag-count:20}")
+    private int facetTagCount = 20;
+
+    @Autowired
+    public InMemoryStorageEngine(@Value("${elasticsearch.scroll.keep-alive:1m}") Duration scrollKeepAlive) {
+        this.scrolls = Caffeine.newBuilder()
+                .expireAfterAccess(scrollKeepAlive)
+                .build();
+    }
+
+    @Override
+    public Optional<StoredFile> findById(String id) {
+        return Optional.ofNullable(files.get(id)).map(entry -> entry.toStoredFile(null));
+    }
+
+    @Override
+    public String index(StoredFile file, RefreshPolicy refresh) {
+        String id = file.getId() == null ? UUID.randomUUID().toString() : file.getId();
+        files.compute(id, (key, previous) -> {
+            var entry = new Entry(id, file.getFileName(), file.getFileSize(), file.getTags(),
+                    previous == null ? sequence.incrementAndGet() : previous.sequence);
+            reindex(id, previous, entry);
+            return entry;
+        });
+        return id;
+    }
+
+    @Override
+    public void deleteById(String id, RefreshPolicy refresh) {
+        files.computeIfPresent(id, (key, entry) -> {
+            reindex(id, entry, null);
+            return null;
+        });
+    }
+
+    @Override
+    public BulkIndexSession openBulkIndexSession(int concurrentRequests,
+                                                 RefreshPolicy refresh,
+                                                 Consumer<BulkItemResult> listener) {
+        return new BulkIndexSession() {
+            @Override
+            public void add(long ordinal, StoredFile file) {
+                listener.accept(BulkItemResult.success(ordinal, index(file, refresh)));
+            }
+
+            @Override
+            public void close() {
+
+            }
+        };
+    }
+
+    @Override
+    public UpdateOutcome addTags(String id, Set<String> tags, RefreshPolicy refresh) {
+        return updateTags(id, current -> {
+            var updated = new LinkedHashSet<>(current);
+            return updated.addAll(tags) ? updated : null;
+        });
+    }
+
+    @Override
+    public UpdateOutcome removeTags(String id, Set<String> tags, RefreshPolicy refresh) {
+        return updateTags(id, current -> {
+            if (tags.isEmpty() || !current.containsAll(tags)) {
+                return null;
+            }
+            var updated = new LinkedHashSet<>(current);
+            updated.removeAll(tags);
+            return updated;
+        });
+    }
+
+    @Override
+    public List<TagUpdateItemResult> bulkUpdateTags(List<String> ids, Set<String> tagsToAdd, Set<String> tagsToRemove) {
+        return ids.stream()
+                .map(id -> new TagUpdateItemResult(id, updateTags(id, tagsToAdd, tagsToRemove), null))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<BulkItemResult> bulkWrite(List<FileWrite> writes) {
+        List<BulkItemResult> results = new ArrayList<>(writes.size());
+        for (int i = 0; i < writes.size(); i++) {
+            FileWrite write = writes.get(i);
+            switch (write.getType()) {
+                case INDEX:
+                    results.add(BulkItemResult.success(i, index(write.getFile(), null)));
+                    break;
+                case DELETE:
+                    deleteById(write.getId(), null);
+                    results.add(BulkItemResult.success(i, write.getId()));
+                    break;
+                case UPDATE_TAGS:
+                    // same as the failure of a partial update of a missing document
+                    results.add(updateTags(write.getId(), write.getTagsToAdd(), write.getTagsToRemove()) == UpdateOutcome.NOT_FOUND
+                            ? BulkItemResult.failure(i, 404, "[" + write.getId() + "]: document missing")
+                            : BulkItemResult.success(i, write.getId()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown write type: " + write.getType());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public FileSearchResult search(FileQuery query, Pageable pageable, int trackTotalHitsUpTo) {
+        List<Entry> matching = find(query);
+        List<StoredFile> page = sortedPage(matching, comparator(query), (int) pageable.getOffset(), pageable.getPageSize())
+                .stream()
+                .map(entry -> entry.toStoredFile(query.getFields()))
+                .collect(Collectors.toList());
+        if (trackTotalHitsUpTo == FileSearchQueries.TRACK_TOTAL_HITS_DISABLED) {
+            return new FileSearchResult(null, true, page, null, facets(matching, query), query.getFields() != null);
+        }
+        // counted up to the limit like by Elasticsearch, which reports the limit as a lower bound above it
+        boolean totalExact = matching.size() <= trackTotalHitsUpTo;
+        long total = totalExact ? matching.size() : trackTotalHitsUpTo;
+        return new FileSearchResult(total, totalExact, page, null, facets(matching, query),
+                query.getFields() != null);
+    }
+
+    @Override
+    public void scrollIds(FileQuery query, int batchSize, Consumer<List<String>> batchConsumer) {
+        List<Entry> matching = find(query);
+        for (int from = 0; from < matching.size(); from += batchSize) {
+            batchConsumer.accept(matching.subList(from, Math.min(from + batchSize, matching.size())).stream()
+                    .map(entry -> entry.id)
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    @Override
+    public FileSearchResult startScroll(FileQuery query, int size) {
+        List<Entry> matching = find(query);
+        matching.sort(comparator(query));
+        // matching files are kept as they were when the scroll started, like in a scroll context
+        var context = new ScrollContext(matching, query.getFields(), size);
+        String cursor = UUID.randomUUID().toString();
+        scrolls.put(cursor, context);
+        return nextScrollPage(cursor, context, facets(matching, query));
+    }
+
+    @Override
+    public Optional<FileSearchResult> continueScroll(String cursor) {
+        return Optional.ofNullable(scrolls.getIfPresent(cursor))
+                .map(context -> nextScrollPage(cursor, context, null));
+    }
+
+    private FileSearchResult nextScrollPage(String cursor, ScrollContext context, FileFacets facets) {
+        int from = context.position.getAndAdd(context.size);
+        int to = Math.min(from + context.size, context.files.size());
+        List<StoredFile> page = from >= to ? List.of() : context.files.subList(from, to).stream()
+                .map(entry -> entry.toStoredFile(context.fields))
+                .collect(Collectors.toList());
+        if (to >= context.files.size()) {
+            scrolls.invalidate(cursor);
+            cursor = null;
+        }
+        return new FileSearchResult((long) context.files.size(), true, page, cursor, facets, context.fields != null);
+    }
+
+    private UpdateOutcome updateTags(String id, Set<String> tagsToAdd, Set<String> tagsToRemove) {
+        return updateTags(id, current -> {
+            var updated = new LinkedHashSet<>(current);
+            boolean changed = updated.addAll(tagsToAdd);
+            changed |= updated.removeAll(tagsToRemove);
+            return changed ? updated : null;
+        });
+    }
+
+    /**
+     * @param update returns new tags of the file, or null to leave the file unchanged
+     */
+    private UpdateOutcome updateTags(String id, UnaryOperator<Set<String>> update) {
+        var outcome = new AtomicReference<>(UpdateOutcome.NOT_FOUND);
+        files.computeIfPresent(id, (key, entry) -> {
+            Set<String> tags = update.apply(entry.tags);
+            if (tags == null) {
+                outcome.set(UpdateOutcome.NOOP);
+                return entry;
+            }
+            outcome.set(UpdateOutcome.UPDATED);
+            var updated = new Entry(id, entry.fileName, entry.fileSize, tags, entry.sequence);
+            reindex(id, entry, updated);
+            return updated;
+        });
+        return outcome.get();
+    }
+
+    // called while the file is locked by compute of the files map, so changes of the same file don't interleave
+    private void reindex(String id, Entry previous, Entry next) {
+        Set<String> previousTags = previous == null ? Set.of() : previous.normalizedTags;
+        Set<String> nextTags = next == null ? Set.of() : next.normalizedTags;
+        updatePostings(idsByTag, id, previousTags, nextTags);
+        Set<String> previousGrams = previous == null ? Set.of() : grams(previous.normalizedName);
+        Set<String> nextGrams = next == null ? Set.of() : grams(next.normalizedName);
+        updatePostings(idsByNameGram, id, previousGrams, nextGrams);
+    }
+
+    private static void updatePostings(Map<String, Set<String>> index, String id, Set<String> previous, Set<String> next) {
+        for (String key : previous) {
+            if (!next.contains(key)) {
+                index.computeIfPresent(key, (k, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+        for (String key : next) {
+            if (!previous.contains(key)) {
+                index.compute(key, (k, ids) -> {
+                    Set<String> updated = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                    updated.add(id);
+                    return updated;
+                });
+            }
+        }
+    }
+
+    private List<Entry> find(FileQuery query) {
+        Collection<String> candidates = candidateIds(query);
+        Collection<Entry> entries = candidates == null
+                ? files.values()
+                : candidates.stream().map(files::get).filter(Objects::nonNull).collect(Collectors.toList());
+        // candidates are checked against the files, which could have changed after they were looked up
+        return entries.stream()
+                .filter(entry -> entry.matches(query))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * @return ids of files possibly matching the query by the indices, null when any file can match
+     */
+    private Collection<String> candidateIds(FileQuery query) {
+        List<Set<String>> required = new ArrayList<>();
+        var tags = query.getTags();
+        if (tags != null && !tags.isEmpty()) {
+            if (query.isAllTags()) {
+                for (String tag : normalize(tags)) {
+                    required.add(idsByTag.getOrDefault(tag, Set.of()));
+                }
+            } else {
+                Set<String> anyTag = new HashSet<>();
+                for (String tag : normalize(tags)) {
+                    anyTag.addAll(idsByTag.getOrDefault(tag, Set.of()));
+                }
+                required.add(anyTag);
+            }
+        }
+        var nameFilter = query.getNameFilter();
+        if (nameFilter != null && nameFilter.length() >= FileSearchQueries.NAME_GRAM_LENGTH) {
+            for (String gram : grams(nameFilter.toLowerCase(Locale.ROOT))) {
+                required.add(idsByNameGram.getOrDefault(gram, Set.of()));
+            }
+        }
+        if (required.isEmpty()) {
+            return null;
+        }
+        required.sort(Comparator.comparingInt(Set::size));
+        List<Set<String>> rest = required.subList(1, required.size());
+        return required.get(0).stream()
+                .filter(id -> rest.stream().allMatch(ids -> ids.contains(id)))
+                .collect(Collectors.toList());
+    }
+
+    private FileFacets facets(List<Entry> matching, FileQuery query) {
+        if (!query.isTagsFacet() && !query.isSizeFacet()) {
+            return null;
+        }
+        Map<String, Long> tags = null;
+        if (query.isTagsFacet()) {
+            Map<String, Long> counts = new HashMap<>();
+            for (Entry entry : matching) {
+                entry.normalizedTags.forEach(tag -> counts.merge(tag, 1L, Long::sum));
+            }
+            // most frequent first, then alphabetically like terms aggregation
+            tags = counts.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .limit(facetTagCount)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+        }
+        List<FileFacets.SizeBucket> sizes = null;
+        if (query.isSizeFacet()) {
+            long[] bounds = FileSearchQueries.SIZE_FACET_BOUNDS;
+            long[] counts = new long[bounds.length + 1];
+            for (Entry entry : matching) {
+                if (entry.fileSize != null) {
+                    int bucket = 0;
+                    while (bucket < bounds.length && entry.fileSize >= bounds[bucket]) {
+                        bucket++;
+                    }
+                    counts[bucket]++;
+                }
+            }
+            sizes = new ArrayList<>(counts.length);
+            for (int i = 0; i < counts.length; i++) {
+                sizes.add(new FileFacets.SizeBucket(
+                        i == 0 ? null : bounds[i - 1],
+                        i == bounds.length ? null : bounds[i],
+                        counts[i]));
+            }
+        }
+        return new FileFacets(tags, sizes);
+    }
+
+    private static Comparator<Entry> comparator(FileQuery query) {
+        Comparator<Entry> bySequence = Comparator.comparingLong(entry -> entry.sequence);
+        if (query.getSortField() == null) {
+            return bySequence;
+        }
+        Comparator<Entry> byField;
+        if (query.getSortField() == StoredFileField.FILENAME) {
+            byField = Comparator.comparing(Entry::sortedName, nullsLast(query.isSortDescending()));
+        } else {
+            byField = Comparator.comparing((Entry entry) -> entry.fileSize, nullsLast(query.isSortDescending()));
+        }
+        return byField.thenComparing(bySequence);
+    }
+
+    // files missing the sort field come last in both orders
+    private static <T extends Comparable<? super T>> Comparator<T> nullsLast(boolean descending) {
+        return Comparator.nullsLast(descending ? Comparator.<T>reverseOrder() : Comparator.<T>naturalOrder());
+    }
+
+    /**
+     * Sorts only the files up to the end of the page when it is a small part of them.
+     */
+    static List<Entry> sortedPage(List<Entry> matching, Comparator<Entry> comparator, int from, int size) {
+        int end = (int) Math.min(matching.size(), (long) from + size);
+        if (from >= end) {
+            return List.of();
+        }
+        if (end > matching.size() / 4) {
+            matching.sort(comparator);
+            return matching.subList(from, end);
+        }
+        // the last of the first files seen so far is on top, it is replaced by any file ordered before it
+        PriorityQueue<Entry> first = new PriorityQueue<>(end, comparator.reversed());
+        for (Entry entry : matching) {
+            if (first.size() < end) {
+                first.add(entry);
+            } else if (comparator.compare(entry, first.peek()) < 0) {
+                first.poll();
+                first.add(entry);
+            }
+        }
+        List<Entry> sorted = new ArrayList<>(first);
+        sorted.sort(comparator);
+        return sorted.subList(from, end);
+    }
+
+    private static Set<String> normalize(Set<String> tags) {
+        return tags.stream().map(tag -> tag.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+    }
+
+    private static Set<String> grams(String normalizedName) {
+        int gramLength = FileSearchQueries.NAME_GRAM_LENGTH;
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + gramLength <= normalizedName.length(); i++) {
+            grams.add(normalizedName.substring(i, i + gramLength));
+        }
+        return grams;
+    }
+
+    /**
+     * Stored file, never modified once it is in the map.
+     */
+    static final class Entry {
+        private final String id;
+        private final String fileName;
+        private final Long fileSize;
+        private final Set<String> tags;
+        private final long sequence;
+        private final String normalizedName;
+        private final Set<String> normalizedTags;
+
+        Entry(String id, String fileName, Long fileSize, Set<String> tags, long sequence) {
+            this.id = id;
+            this.fileName = fileName;
+            this.fileSize = fileSize;
+            this.tags = tags == null ? Set.of() : Collections.unmodifiableSet(new LinkedHashSet<>(tags));
+            this.sequence = sequence;
+            this.normalizedName = fileName == null ? "" : fileName.toLowerCase(Locale.ROOT);
+            this.normalizedTags = normalize(this.tags);
+        }
+
+        boolean matches(FileQuery query) {
+            var tags = query.getTags();
+            if (tags != null && !tags.isEmpty()) {
+                var queryTags = normalize(tags);
+                boolean tagsMatch = query.isAllTags()
+                        ? normalizedTags.containsAll(queryTags)
+                        : queryTags.stream().anyMatch(normalizedTags::contains);
+                if (!tagsMatch) {
+                    return false;
+                }
+            }
+            var nameFilter = query.getNameFilter();
+            if (nameFilter != null && !nameFilter.isEmpty()
+                    && !normalizedName.contains(nameFilter.toLowerCase(Locale.ROOT))) {
+                return false;
+            }
+            if (query.getMinSize() != null && (fileSize == null || fileSize < query.getMinSize())) {
+                return false;
+            }
+            return query.getMaxSize() == null || (fileSize != null && fileSize <= query.getMaxSize());
+        }
+
+        String sortedName() {
+            return fileName == null || fileName.length() > SORTED_NAME_MAX_LENGTH ? null : fileName;
+        }
+
+        /**
+         * @param fields fields to set besides id, all when null
+         */
+        StoredFile toStoredFile(Set<StoredFileField> fields) {
+            var file = StoredFile.builder().id(id);
+            if (fields == null || fields.contains(StoredFileField.FILENAME)) {
+                file.fileName(fileName);
+            }
+            if (fields == null || fields.contains(StoredFileField.FILESIZE)) {
+                file.fileSize(fileSize);
+            }
+            if (fields == null || fields.contains(StoredFileField.TAGS)) {
+                file.tags(new LinkedHashSet<>(tags));
+            }
+            return file.build();
+        }
+    }
+
+    private static final class ScrollContext {
+        private final List<Entry> files;
+        private final Set<StoredFileField> fields;
+        private final int size;
+        private final AtomicInteger position = new AtomicInteger();
+
+        ScrollContext(List<Entry> files, Set<StoredFileField> fields, int size) {
+            this.files = files;
+            this.fields = fields;
+            this.size = size;
+        }
+    }
+}
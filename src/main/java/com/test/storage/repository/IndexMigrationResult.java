@@ -0,0 +1,15 @@
+package com.test.storage.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class IndexMigrationResult {
+    private final List<String> previousIndices;
+    private final String newIndex;
+    private final long sourceDocuments;
+    private final long migratedDocuments;
+}
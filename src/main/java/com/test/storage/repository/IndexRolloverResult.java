@@ -0,0 +1,17 @@
+package com.test.storage.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+public class IndexRolloverResult {
+    private final String oldIndex;
+    private final String newIndex;
+    private final boolean rolledOver;
+    private final boolean dryRun;
+    // whether each condition is met, keyed by the condition as Elasticsearch reports it, e.g. [max_docs: 1000]
+    private final Map<String, Boolean> conditions;
+}
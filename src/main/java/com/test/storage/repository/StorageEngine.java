@@ -0,0 +1,88 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFile;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Storage of files the services work with, Elasticsearch ({@link StorageRepository}) by default
+ * or {@link InMemoryStorageEngine} in the in-memory profile.
+ * Refresh policies tell when a write becomes visible to searches, writes are visible immediately in memory.
+ */
+public interface StorageEngine {
+
+    Optional<StoredFile> findById(String id);
+
+    /**
+     * Adds the file or replaces the file with the same id, replaces {@code save} of the repository
+     * which refreshes the index after every write.
+     *
+     * @return id of the file, generated when the file has none
+     */
+    String index(StoredFile file, RefreshPolicy refresh);
+
+    void deleteById(String id, RefreshPolicy refresh);
+
+    /**
+     * @param concurrentRequests number of bulk requests allowed to be in flight while new files are added,
+     *                           0 executes every bulk request synchronously
+     * @param refresh            refresh policy of every bulk request
+     * @param listener           receives result of every file added to the session
+     */
+    BulkIndexSession openBulkIndexSession(int concurrentRequests,
+                                          RefreshPolicy refresh,
+                                          Consumer<BulkItemResult> listener);
+
+    /**
+     * Adds tags in a single partial update executed on the Elasticsearch side.
+     *
+     * @return {@link UpdateOutcome#NOOP} when file already has all the tags
+     */
+    UpdateOutcome addTags(String id, Set<String> tags, RefreshPolicy refresh);
+
+    /**
+     * Removes tags in a single partial update executed on the Elasticsearch side.
+     *
+     * @return {@link UpdateOutcome#NOOP} without changing the file when some of the tags are not assigned to it
+     */
+    UpdateOutcome removeTags(String id, Set<String> tags, RefreshPolicy refresh);
+
+    /**
+     * Adds and removes tags of every file in one bulk request of partial updates,
+     * tags to remove which are not assigned to a file are ignored.
+     */
+    List<TagUpdateItemResult> bulkUpdateTags(List<String> ids, Set<String> tagsToAdd, Set<String> tagsToRemove);
+
+    /**
+     * Sends all writes in one bulk request, a file should be written at most once.
+     *
+     * @return result of every write, its ordinal is the position of the write in the list
+     */
+    List<BulkItemResult> bulkWrite(List<FileWrite> writes);
+
+    /**
+     * @param trackTotalHitsUpTo count matching files exactly up to this number,
+     *                           {@link FileSearchQueries#TRACK_TOTAL_HITS_DISABLED} to skip counting
+     */
+    FileSearchResult search(FileQuery query, Pageable pageable, int trackTotalHitsUpTo);
+
+    /**
+     * Scrolls through ids of matching files and passes them in batches.
+     */
+    void scrollIds(FileQuery query, int batchSize, Consumer<List<String>> batchConsumer);
+
+    /**
+     * Opens a scroll context over matching files, so pages deep in the result are as cheap as the first one.
+     */
+    FileSearchResult startScroll(FileQuery query, int size);
+
+    /**
+     * @return empty when the cursor is expired or not valid
+     */
+    Optional<FileSearchResult> continueScroll(String cursor);
+}
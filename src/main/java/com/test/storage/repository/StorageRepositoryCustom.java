@@ -0,0 +1,55 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFile;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Methods of {@link StorageRepository} implemented by {@link StorageRepositoryCustomImpl}, documented in
+ * {@link StorageEngine}. They are declared here rather than inherited from it, the implementation is a bean
+ * of its own and would otherwise be a second {@link StorageEngine} besides the repository.
+ */
+public interface StorageRepositoryCustom {
+
+    /**
+     * Finds the file in any backing index of the files alias, replacing the get by id
+     * which works only while the alias points to a single index.
+     */
+    Optional<StoredFile> findById(String id);
+
+    /**
+     * Deletes the file from the backing index holding it without waiting for a refresh.
+     */
+    void deleteById(String id);
+
+    void delete(StoredFile file);
+
+    String index(StoredFile file, RefreshPolicy refresh);
+
+    void deleteById(String id, RefreshPolicy refresh);
+
+    BulkIndexSession openBulkIndexSession(int concurrentRequests,
+                                          RefreshPolicy refresh,
+                                          Consumer<BulkItemResult> listener);
+
+    UpdateOutcome addTags(String id, Set<String> tags, RefreshPolicy refresh);
+
+    UpdateOutcome removeTags(String id, Set<String> tags, RefreshPolicy refresh);
+
+    List<TagUpdateItemResult> bulkUpdateTags(List<String> ids, Set<String> tagsToAdd, Set<String> tagsToRemove);
+
+    List<BulkItemResult> bulkWrite(List<FileWrite> writes);
+
+    FileSearchResult search(FileQuery query, Pageable pageable, int trackTotalHitsUpTo);
+
+    void scrollIds(FileQuery query, int batchSize, Consumer<List<String>> batchConsumer);
+
+    FileSearchResult startScroll(FileQuery query, int size);
+
+    Optional<FileSearchResult> continueScroll(String cursor);
+}
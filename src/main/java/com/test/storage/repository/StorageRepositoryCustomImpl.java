@@ -0,0 +1,574 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFile;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Works with files through the files alias. Writes of documents by id go to the write index of the alias,
+ * so a document of a rolled over backing index is not found there; such writes are retried on the index
+ * holding the document. Reads by id look the document up in all backing indices.
+ */
+public class StorageRepositoryCustomImpl implements StorageRepositoryCustom {
+
+    // between the page size and the scroll id in a cursor, scroll ids are base64
+    private static final String CURSOR_SEPARATOR = ":";
+    // follows the page size in a cursor of a projected scroll
+    private static final String PROJECTED_CURSOR_FLAG = "p";
+
+    private final RestHighLevelClient client;
+    private final ElasticsearchOperations operations;
+    private final FilesIndexManager filesIndexManager;
+    private final String indexName;
+
+    @Value("${elasticsearch.bulk.max-actions:1000}")
+    private int bulkMaxActions;
+
+    @Value("${elasticsearch.bulk.max-size:5MB}")
+    private DataSize bulkMaxSize;
+
+    @Value("${elasticsearch.update.retry-on-conflict:3}")
+    private int updateRetryOnConflict;
+
+    @Value("${elasticsearch.scroll.keep-alive:1m}")
+    private Duration scrollKeepAlive;
+
+    @Value("${storage.search.facets.tag-count:20}")
+    private int facetTagCount;
+
+    @Autowired
+    public StorageRepositoryCustomImpl(RestHighLevelClient client,
+                                       ElasticsearchOperations operations,
+                                       FilesIndexManager filesIndexManager) {
+        this.client = client;
+        this.operations = operations;
+        this.filesIndexManager = filesIndexManager;
+        this.indexName = operations.getIndexCoordinatesFor(StoredFile.class).getIndexName();
+    }
+
+    @Override
+    public BulkIndexSession openBulkIndexSession(int concurrentRequests,
+                                                 RefreshPolicy refresh,
+                                                 Consumer<BulkItemResult> listener) {
+        return new ElasticsearchBulkIndexSession(
+                client,
+                operations.getElasticsearchConverter(),
+                indexName,
+                bulkMaxActions,
+                bulkMaxSize.toBytes(),
+                concurrentRequests,
+                refresh,
+                listener);
+    }
+
+    @Override
+    public Optional<StoredFile> findById(String id) {
+        try {
+            return Optional.ofNullable(getFromBackingIndices(List.of(id), true).get(id))
+                    .map(response -> {
+                        StoredFile file = operations.getElasticsearchConverter()
+                                .read(StoredFile.class, Document.from(response.getSourceAsMap()));
+                        file.setId(response.getId());
+                        return file;
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void delete(StoredFile file) {
+        deleteById(file.getId());
+    }
+
+    @Override
+    public void deleteById(String id) {
+        deleteById(id, RefreshPolicy.NONE);
+    }
+
+    @Override
+    public String index(StoredFile file, RefreshPolicy refresh) {
+        Document source = Document.create();
+        operations.getElasticsearchConverter().write(file, source);
+        // id is generated here rather than by Elasticsearch so it is copied to the sorted id field
+        String id = file.getId() == null ? UUID.randomUUID().toString() : file.getId();
+        source.put(FileSearchQueries.ID_FIELD, id);
+        IndexRequest request = new IndexRequest(indexName)
+                .id(id)
+                .source(source)
+                .setRefreshPolicy(refresh);
+        try {
+            return client.index(request, RequestOptions.DEFAULT).getId();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void deleteById(String id, RefreshPolicy refresh) {
+        try {
+            DeleteResponse response = client.delete(
+                    new DeleteRequest(indexName, id).setRefreshPolicy(refresh), RequestOptions.DEFAULT);
+            if (response.getResult() == DocWriteResponse.Result.NOT_FOUND) {
+                Optional<String> index = findHoldingIndex(id);
+                if (index.isPresent()) {
+                    client.delete(new DeleteRequest(index.get(), id).setRefreshPolicy(refresh), RequestOptions.DEFAULT);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public UpdateOutcome addTags(String id, Set<String> tags, RefreshPolicy refresh) {
+        return updateByScript(id, TagScripts.ADD_TAGS, tags, refresh);
+    }
+
+    @Override
+    public UpdateOutcome removeTags(String id, Set<String> tags, RefreshPolicy refresh) {
+        return updateByScript(id, TagScripts.REMOVE_TAGS, tags, refresh);
+    }
+
+    private UpdateOutcome updateByScript(String id, String script, Set<String> tags, RefreshPolicy refresh) {
+        Map<String, Object> params = Map.of("tags", new ArrayList<>(tags));
+        UpdateRequest request = new UpdateRequest(indexName, id)
+                .script(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, script, params))
+                // script is re-executed on the latest version of the document on concurrent modification
+                .retryOnConflict(updateRetryOnConflict)
+                .fetchSource(false)
+                .setRefreshPolicy(refresh);
+        try {
+            return toUpdateOutcome(client.update(request, RequestOptions.DEFAULT));
+        } catch (ElasticsearchStatusException e) {
+            if (e.status() != RestStatus.NOT_FOUND) {
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Optional<String> index = findHoldingIndex(id);
+            if (index.isEmpty()) {
+                return UpdateOutcome.NOT_FOUND;
+            }
+            return toUpdateOutcome(client.update(request.index(index.get()), RequestOptions.DEFAULT));
+        } catch (ElasticsearchStatusException e) {
+            if (e.status() == RestStatus.NOT_FOUND) {
+                return UpdateOutcome.NOT_FOUND;
+            }
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static UpdateOutcome toUpdateOutcome(UpdateResponse response) {
+        return response.getResult() == DocWriteResponse.Result.NOOP ? UpdateOutcome.NOOP : UpdateOutcome.UPDATED;
+    }
+
+    @Override
+    public FileSearchResult search(FileQuery query, Pageable pageable, int trackTotalHitsUpTo) {
+        SearchSourceBuilder source = new SearchSourceBuilder()
+                .query(filter(query))
+                .from((int) pageable.getOffset())
+                .size(pageable.getPageSize());
+        FileSearchQueries.applySort(source, query);
+        FileSearchQueries.applyFields(source, query);
+        FileSearchQueries.applyFacets(source, query, facetTagCount);
+        if (trackTotalHitsUpTo == FileSearchQueries.TRACK_TOTAL_HITS_DISABLED) {
+            source.trackTotalHits(false);
+        } else {
+            source.trackTotalHitsUpTo(trackTotalHitsUpTo);
+        }
+        try {
+            SearchResponse response = client.search(new SearchRequest(indexName).source(source), RequestOptions.DEFAULT);
+            return toSearchResult(response, null, query.getFields() != null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public FileSearchResult startScroll(FileQuery query, int size) {
+        SearchSourceBuilder source = new SearchSourceBuilder()
+                .query(filter(query))
+                .size(size)
+                .trackTotalHits(true);
+        FileSearchQueries.applySort(source, query);
+        if (query.getSortField() == null) {
+            // the cheapest order of scrolling, sorted scrolls have tie-breakers of their own
+            source.sort("_doc");
+        }
+        // source filtering is kept by the following scroll requests, facets are returned with the first page only
+        FileSearchQueries.applyFields(source, query);
+        FileSearchQueries.applyFacets(source, query, facetTagCount);
+        SearchRequest request = new SearchRequest(indexName)
+                .scroll(scrollKeepAliveTime())
+                .source(source);
+        try {
+            return toScrollPage(client.search(request, RequestOptions.DEFAULT), size, query.getFields() != null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Optional<FileSearchResult> continueScroll(String cursor) {
+        int separator = cursor.indexOf(CURSOR_SEPARATOR);
+        String pageSize = cursor.substring(0, Math.max(separator, 0));
+        boolean projected = pageSize.endsWith(PROJECTED_CURSOR_FLAG);
+        int size;
+        try {
+            size = Integer.parseInt(projected
+                    ? pageSize.substring(0, pageSize.length() - PROJECTED_CURSOR_FLAG.length())
+                    : pageSize);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+        if (size <= 0) {
+            return Optional.empty();
+        }
+        try {
+            SearchResponse response = client.scroll(
+                    new SearchScrollRequest(cursor.substring(separator + 1)).scroll(scrollKeepAliveTime()),
+                    RequestOptions.DEFAULT);
+            return Optional.of(toScrollPage(response, size, projected));
+        } catch (ElasticsearchStatusException e) {
+            if (e.status() == RestStatus.NOT_FOUND || e.status() == RestStatus.BAD_REQUEST) {
+                return Optional.empty();
+            }
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<TagUpdateItemResult> bulkUpdateTags(List<String> ids, Set<String> tagsToAdd, Set<String> tagsToRemove) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Object> params = Map.of(
+                "add", new ArrayList<>(tagsToAdd),
+                "remove", new ArrayList<>(tagsToRemove));
+        Script script = new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, TagScripts.UPDATE_TAGS, params);
+        List<DocWriteRequest<?>> requests = ids.stream()
+                .map(id -> new UpdateRequest(indexName, id)
+                        .script(script)
+                        .retryOnConflict(updateRetryOnConflict))
+                .collect(Collectors.toList());
+        try {
+            return Arrays.stream(bulk(requests))
+                    .map(StorageRepositoryCustomImpl::toTagUpdateItemResult)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<BulkItemResult> bulkWrite(List<FileWrite> writes) {
+        if (writes.isEmpty()) {
+            return List.of();
+        }
+        ElasticsearchConverter converter = operations.getElasticsearchConverter();
+        List<DocWriteRequest<?>> requests = new ArrayList<>(writes.size());
+        for (FileWrite write : writes) {
+            switch (write.getType()) {
+                case INDEX:
+                    Document source = Document.create();
+                    converter.write(write.getFile(), source);
+                    source.put(FileSearchQueries.ID_FIELD, write.getId());
+                    requests.add(new IndexRequest(indexName).id(write.getId()).source(source));
+                    break;
+                case DELETE:
+                    requests.add(new DeleteRequest(indexName, write.getId()));
+                    break;
+                case UPDATE_TAGS:
+                    Map<String, Object> params = Map.of(
+                            "add", new ArrayList<>(write.getTagsToAdd()),
+                            "remove", new ArrayList<>(write.getTagsToRemove()));
+                    requests.add(new UpdateRequest(indexName, write.getId())
+                            .script(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, TagScripts.UPDATE_TAGS, params))
+                            .retryOnConflict(updateRetryOnConflict));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown write type: " + write.getType());
+            }
+        }
+        try {
+            return Arrays.stream(bulk(requests))
+                    .map(item -> item.isFailed()
+                            ? BulkItemResult.failure(
+                                    item.getItemId(), item.status().getStatus(), item.getFailureMessage())
+                            : BulkItemResult.success(item.getItemId(), item.getId()))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void scrollIds(FileQuery query, int batchSize, Consumer<List<String>> batchConsumer) {
+        TimeValue keepAlive = scrollKeepAliveTime();
+        SearchRequest request = new SearchRequest(indexName)
+                .scroll(keepAlive)
+                .source(new SearchSourceBuilder()
+                        .query(filter(query))
+                        .fetchSource(false)
+                        .size(batchSize)
+                        .sort("_doc"));
+        String scrollId = null;
+        try {
+            SearchResponse response = client.search(request, RequestOptions.DEFAULT);
+            scrollId = response.getScrollId();
+            while (response.getHits().getHits().length > 0) {
+                batchConsumer.accept(Arrays.stream(response.getHits().getHits())
+                        .map(SearchHit::getId)
+                        .collect(Collectors.toList()));
+                response = client.scroll(new SearchScrollRequest(scrollId).scroll(keepAlive), RequestOptions.DEFAULT);
+                scrollId = response.getScrollId();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            clearScroll(scrollId);
+        }
+    }
+
+    /**
+     * Sends the requests in one bulk request, then retries updates and deletes of documents not found
+     * in the write index on the backing indices holding them.
+     *
+     * @return response of every request, in the order of the requests
+     */
+    private BulkItemResponse[] bulk(List<DocWriteRequest<?>> requests) throws IOException {
+        BulkItemResponse[] items = client.bulk(new BulkRequest().add(requests), RequestOptions.DEFAULT).getItems();
+
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < items.length; i++) {
+            if (!(requests.get(i) instanceof IndexRequest) && isNotFound(items[i])) {
+                missing.add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            return items;
+        }
+        Map<String, GetResponse> holders = getFromBackingIndices(
+                missing.stream().map(i -> requests.get(i).id()).collect(Collectors.toSet()), false);
+        BulkRequest retry = new BulkRequest();
+        List<Integer> retried = new ArrayList<>();
+        for (int i : missing) {
+            GetResponse holder = holders.get(requests.get(i).id());
+            if (holder != null) {
+                DocWriteRequest<?> retryRequest = requests.get(i);
+                retryRequest.index(holder.getIndex());
+                retry.add(retryRequest);
+                retried.add(i);
+            }
+        }
+        if (retried.isEmpty()) {
+            return items;
+        }
+        BulkItemResponse[] retryItems = client.bulk(retry, RequestOptions.DEFAULT).getItems();
+        for (int j = 0; j < retryItems.length; j++) {
+            // item ids of the retry are its own positions, they are replaced by positions of the original requests
+            int i = retried.get(j);
+            BulkItemResponse item = retryItems[j];
+            items[i] = item.isFailed()
+                    ? new BulkItemResponse(i, item.getOpType(), item.getFailure())
+                    : new BulkItemResponse(i, item.getOpType(), (DocWriteResponse) item.getResponse());
+        }
+        return items;
+    }
+
+    private static boolean isNotFound(BulkItemResponse item) {
+        return item.isFailed()
+                ? item.status() == RestStatus.NOT_FOUND
+                : item.getResponse().getResult() == DocWriteResponse.Result.NOT_FOUND;
+    }
+
+    private Optional<String> findHoldingIndex(String id) throws IOException {
+        return Optional.ofNullable(getFromBackingIndices(List.of(id), false).get(id)).map(GetResponse::getIndex);
+    }
+
+    /**
+     * Gets documents from every backing index in one multi get request. Unlike a search it sees documents
+     * not refreshed yet, so a file is found right after it is written.
+     * Backing indices listed earlier are used; when some documents are not found in them, the indices are
+     * listed again and the documents looked up in the ones rolled over or migrated to since.
+     *
+     * @return found documents by id
+     */
+    private Map<String, GetResponse> getFromBackingIndices(Collection<String> ids, boolean fetchSource)
+            throws IOException {
+        List<String> indices = orAlias(filesIndexManager.getBackingIndices());
+        Map<String, GetResponse> found = multiGet(ids, indices, fetchSource);
+        if (found.size() < ids.size()) {
+            List<String> newIndices = new ArrayList<>(orAlias(filesIndexManager.refreshBackingIndices()));
+            newIndices.removeAll(indices);
+            if (!newIndices.isEmpty()) {
+                List<String> missing = ids.stream().filter(id -> !found.containsKey(id)).collect(Collectors.toList());
+                found.putAll(multiGet(missing, newIndices, fetchSource));
+            }
+        }
+        return found;
+    }
+
+    // index created before the alias was introduced
+    private List<String> orAlias(List<String> backingIndices) {
+        return backingIndices.isEmpty() ? List.of(indexName) : backingIndices;
+    }
+
+    private Map<String, GetResponse> multiGet(Collection<String> ids, List<String> indices, boolean fetchSource)
+            throws IOException {
+        FetchSourceContext fetchSourceContext = fetchSource
+                ? FetchSourceContext.FETCH_SOURCE
+                : FetchSourceContext.DO_NOT_FETCH_SOURCE;
+        MultiGetRequest request = new MultiGetRequest();
+        for (String id : ids) {
+            for (String index : indices) {
+                request.add(new MultiGetRequest.Item(index, id).fetchSourceContext(fetchSourceContext));
+            }
+        }
+        Map<String, GetResponse> found = new HashMap<>();
+        for (MultiGetItemResponse item : client.mget(request, RequestOptions.DEFAULT).getResponses()) {
+            // failed items are from indices deleted by a concurrent migration
+            if (!item.isFailed() && item.getResponse().isExists()) {
+                found.putIfAbsent(item.getId(), item.getResponse());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Cursor of the next page is the scroll id prefixed with the page size, so a short page following it
+     * is known to be the last one too, and with whether the scroll is projected.
+     *
+     * @param size      requested page size, shorter page means the scroll is exhausted
+     * @param projected whether the scroll fetches only the fields of a projection
+     */
+    private FileSearchResult toScrollPage(SearchResponse response, int size, boolean projected) {
+        String scrollId = response.getScrollId();
+        int hits = response.getHits().getHits().length;
+        if (hits == 0 || hits < size) {
+            clearScroll(scrollId);
+            return toSearchResult(response, null, projected);
+        }
+        String pageSize = projected ? size + PROJECTED_CURSOR_FLAG : String.valueOf(size);
+        return toSearchResult(response, pageSize + CURSOR_SEPARATOR + scrollId, projected);
+    }
+
+    private List<StoredFile> toStoredFiles(SearchResponse response) {
+        ElasticsearchConverter converter = operations.getElasticsearchConverter();
+        return Arrays.stream(response.getHits().getHits())
+                .map(hit -> {
+                    if (!hit.hasSource()) {
+                        return StoredFile.builder().id(hit.getId()).build();
+                    }
+                    StoredFile file = converter.read(StoredFile.class, Document.from(hit.getSourceAsMap()));
+                    file.setId(hit.getId());
+                    return file;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private FileSearchResult toSearchResult(SearchResponse response, String cursor, boolean projected) {
+        TotalHits totalHits = response.getHits().getTotalHits();
+        return new FileSearchResult(
+                totalHits == null ? null : totalHits.value,
+                totalHits == null || totalHits.relation == TotalHits.Relation.EQUAL_TO,
+                toStoredFiles(response),
+                cursor,
+                FileSearchQueries.readFacets(response.getAggregations()),
+                projected);
+    }
+
+    private QueryBuilder filter(FileQuery query) {
+        try {
+            return FileSearchQueries.filter(query, filesIndexManager.isNameNgramMapped());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private TimeValue scrollKeepAliveTime() {
+        return TimeValue.timeValueMillis(scrollKeepAlive.toMillis());
+    }
+
+    private void clearScroll(String scrollId) {
+        if (scrollId == null) {
+            return;
+        }
+        ClearScrollRequest request = new ClearScrollRequest();
+        request.addScrollId(scrollId);
+        try {
+            client.clearScroll(request, RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            // context expires on its own after keep alive
+        }
+    }
+
+    private static TagUpdateItemResult toTagUpdateItemResult(BulkItemResponse item) {
+        if (item.isFailed()) {
+            return item.status() == RestStatus.NOT_FOUND
+                    ? new TagUpdateItemResult(item.getId(), UpdateOutcome.NOT_FOUND, null)
+                    : new TagUpdateItemResult(item.getId(), null, item.getFailureMessage());
+        }
+        DocWriteResponse response = item.getResponse();
+        return new TagUpdateItemResult(item.getId(),
+                response.getResult() == DocWriteResponse.Result.NOOP ? UpdateOutcome.NOOP : UpdateOutcome.UPDATED,
+                null);
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.test.storage.repository;
+
+/**
+ * Painless scripts of partial tag updates, tags are passed in script params.
+ */
+public final class TagScripts {
+
+    public static final String ADD_TAGS =
+            "if (ctx._source.tags == null) { ctx._source.tags = new ArrayList(); } "
+                    + "boolean changed = false; "
+                    + "for (def tag : params.tags) { "
+                    + "  if (!ctx._source.tags.contains(tag)) { ctx._source.tags.add(tag); changed = true; } "
+                    + "} "
+                    + "if (!changed) { ctx.op = 'noop'; }";
+
+    public static final String REMOVE_TAGS =
+            "if (params.tags.isEmpty() || ctx._source.tags == null || !ctx._source.tags.containsAll(params.tags)) { "
+                    + "  ctx.op = 'noop'; "
+                    + "} else { "
+                    + "  ctx._source.tags.removeAll(params.tags); "
+                    + "}";
+
+    public static final String UPDATE_TAGS =
+            "if (ctx._source.tags == null) { ctx._source.tags = new ArrayList(); } "
+                    + "boolean changed = false; "
+                    + "for (def tag : params.add) { "
+                    + "  if (!ctx._source.tags.contains(tag)) { ctx._source.tags.add(tag); changed = true; } "
+                    + "} "
+                    + "if (ctx._source.tags.removeAll(params.remove)) { changed = true; } "
+                    + "if (!changed) { ctx.op = 'noop'; }";
+
+    private TagScripts() {
+    }
+}
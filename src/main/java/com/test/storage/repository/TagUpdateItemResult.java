@@ -0,0 +1,17 @@
+package com.test.storage.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class TagUpdateItemResult {
+    private final String id;
+    private final UpdateOutcome outcome;
+    // set only when update failed for another reason than missing file
+    private final String error;
+
+    public boolean isFailed() {
+        return error != null;
+    }
+}
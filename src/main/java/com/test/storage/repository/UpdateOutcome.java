@@ -0,0 +1,8 @@
+package com.test.storage.repository;
+
+public enum UpdateOutcome {
+    UPDATED,
+    // document exists but script decided not to change it
+    NOOP,
+    NOT_FOUND
+}
@@ -0,0 +1,180 @@
+package com.test.storage.repository.reactive;
+
+import com.test.storage.model.StoredFile;
+import com.test.storage.repository.FileQuery;
+import com.test.storage.repository.FileSearchResult;
+import com.test.storage.repository.InMemoryStorageEngine;
+import com.test.storage.repository.UpdateOutcome;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Serves the reactive profile from {@link InMemoryStorageEngine}, so the WebFlux API runs without Elasticsearch
+ * like the servlet one does in the in-memory profile. The engine does no I/O and is called on the subscribing thread.
+ */
+@Repository
+@Profile("reactive & in-memory")
+public class InMemoryReactiveStorageRepository implements ReactiveStorageRepository {
+
+    private static final int ID_BATCH_SIZE = 1000;
+
+    private final InMemoryStorageEngine engine;
+
+    @Autowired
+    public InMemoryReactiveStorageRepository(InMemoryStorageEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public <S extends StoredFile> Mono<S> save(S file) {
+        return Mono.fromCallable(() -> {
+            file.setId(engine.index(file, RefreshPolicy.NONE));
+            return file;
+        });
+    }
+
+    @Override
+    public <S extends StoredFile> Flux<S> saveAll(Iterable<S> files) {
+        return Flux.fromIterable(files).concatMap(this::save);
+    }
+
+    @Override
+    public <S extends StoredFile> Flux<S> saveAll(Publisher<S> files) {
+        return Flux.from(files).concatMap(this::save);
+    }
+
+    @Override
+    public Mono<StoredFile> findById(String id) {
+        return Mono.fromCallable(() -> engine.findById(id)).flatMap(Mono::justOrEmpty);
+    }
+
+    @Override
+    public Mono<StoredFile> findById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(String id) {
+        return findById(id).hasElement();
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::existsById);
+    }
+
+    @Override
+    public Flux<StoredFile> findAll() {
+        return Flux.defer(() -> Flux.fromIterable(allIds())).concatMap(this::findById);
+    }
+
+    @Override
+    public Flux<StoredFile> findAll(Sort sort) {
+        return Flux.defer(() -> findAll().collectSortedList(comparator(sort)).flatMapIterable(files -> files));
+    }
+
+    @Override
+    public Flux<StoredFile> findAllById(Iterable<String> ids) {
+        return Flux.fromIterable(ids).concatMap(this::findById);
+    }
+
+    @Override
+    public Flux<StoredFile> findAllById(Publisher<String> ids) {
+        return Flux.from(ids).concatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return Mono.fromCallable(() -> (long) allIds().size());
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return Mono.fromRunnable(() -> engine.deleteById(id, RefreshPolicy.NONE));
+    }
+
+    @Override
+    public Mono<Void> deleteById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::deleteById);
+    }
+
+    @Override
+    public Mono<Void> delete(StoredFile file) {
+        return deleteById(file.getId());
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Iterable<? extends StoredFile> files) {
+        return Flux.fromIterable(files).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Publisher<? extends StoredFile> files) {
+        return Flux.from(files).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return Flux.defer(() -> Flux.fromIterable(allIds())).concatMap(this::deleteById).then();
+    }
+
+    @Override
+    public Mono<UpdateOutcome> addTags(String id, Set<String> tags) {
+        return Mono.fromCallable(() -> engine.addTags(id, tags, RefreshPolicy.NONE));
+    }
+
+    @Override
+    public Mono<UpdateOutcome> removeTags(String id, Set<String> tags) {
+        return Mono.fromCallable(() -> engine.removeTags(id, tags, RefreshPolicy.NONE));
+    }
+
+    @Override
+    public Mono<FileSearchResult> search(FileQuery query, Pageable pageable, int trackTotalHitsUpTo) {
+        return Mono.fromCallable(() -> engine.search(query, pageable, trackTotalHitsUpTo));
+    }
+
+    // sorted by the properties of StoredFile like the Elasticsearch repository, ties stay in the order of upload
+    private static Comparator<StoredFile> comparator(Sort sort) {
+        Comparator<StoredFile> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            comparator = comparator.thenComparing(comparator(order));
+        }
+        return comparator;
+    }
+
+    private static Comparator<StoredFile> comparator(Sort.Order order) {
+        switch (order.getProperty()) {
+            case "id":
+                return Comparator.comparing(StoredFile::getId, nullsLast(order.isDescending()));
+            case "fileName":
+                return Comparator.comparing(StoredFile::getFileName, nullsLast(order.isDescending()));
+            case "fileSize":
+                return Comparator.comparing(StoredFile::getFileSize, nullsLast(order.isDescending()));
+            default:
+                throw new IllegalArgumentException("files cannot be sorted by " + order.getProperty());
+        }
+    }
+
+    // files missing the sort property come last in both orders
+    private static <T extends Comparable<? super T>> Comparator<T> nullsLast(boolean descending) {
+        return Comparator.nullsLast(descending ? Comparator.<T>reverseOrder() : Comparator.<T>naturalOrder());
+    }
+
+    private List<String> allIds() {
+        List<String> ids = new ArrayList<>();
+        engine.scrollIds(FileQuery.builder().build(), ID_BATCH_SIZE, ids::addAll);
+        return ids;
+    }
+}
@@ -0,0 +1,8 @@
+package com.test.storage.repository.reactive;
+
+import com.test.storage.model.StoredFile;
+import org.springframework.data.elasticsearch.repository.ReactiveElasticsearchRepository;
+
+public interface ReactiveStorageRepository
+        extends ReactiveElasticsearchRepository<StoredFile, String>, ReactiveStorageRepositoryCustom {
+}
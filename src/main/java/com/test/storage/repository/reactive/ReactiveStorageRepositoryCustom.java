@@ -0,0 +1,48 @@
+package com.test.storage.repository.reactive;
+
+import com.test.storage.model.StoredFile;
+import com.test.storage.repository.FileQuery;
+import com.test.storage.repository.FileSearchQueries;
+import com.test.storage.repository.FileSearchResult;
+import com.test.storage.repository.UpdateOutcome;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+/**
+ * Non-blocking counterpart of {@link com.test.storage.repository.StorageRepositoryCustom}.
+ */
+public interface ReactiveStorageRepositoryCustom {
+
+    /**
+     * Finds the file in any backing index of the files alias.
+     */
+    Mono<StoredFile> findById(String id);
+
+    /**
+     * Deletes the file from the backing index holding it.
+     */
+    Mono<Void> deleteById(String id);
+
+    Mono<Void> delete(StoredFile file);
+
+    /**
+     * Adds tags to the file in a scripted partial update executed on the Elasticsearch side.
+     */
+    Mono<UpdateOutcome> addTags(String id, Set<String> tags);
+
+    /**
+     * Removes tags from the file in a scripted partial update executed on the Elasticsearch side.
+     *
+     * @return {@link UpdateOutcome#NOOP} without changing the file when some of the tags are not assigned to it
+     */
+    Mono<UpdateOutcome> removeTags(String id, Set<String> tags);
+
+    /**
+     * Total is counted by a separate count request, so it is always exact when tracked.
+     *
+     * @param trackTotalHitsUpTo {@link FileSearchQueries#TRACK_TOTAL_HITS_DISABLED} to skip counting
+     */
+    Mono<FileSearchResult> search(FileQuery query, Pageable pageable, int trackTotalHitsUpTo);
+}
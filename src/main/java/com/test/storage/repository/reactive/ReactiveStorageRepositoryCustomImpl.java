@@ -0,0 +1,187 @@
+package com.test.storage.repository.reactive;
+
+import com.test.storage.model.StoredFile;
+import com.test.storage.repository.FileQuery;
+import com.test.storage.repository.FileSearchQueries;
+import com.test.storage.repository.FileSearchResult;
+import com.test.storage.repository.FilesIndexManager;
+import com.test.storage.repository.TagScripts;
+import com.test.storage.repository.UpdateOutcome;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.index.get.GetResult;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.client.reactive.ReactiveElasticsearchClient;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Looks files up by id with a realtime multi get over all backing indices of the files alias,
+ * like {@link com.test.storage.repository.StorageRepositoryCustomImpl} does, so a file is found right after upload.
+ * Backing indices are listed by {@link FilesIndexManager} on a thread allowed to block and listed again
+ * when a file is not found in them. Whether they map the n-grams of file names is checked on such a thread too.
+ */
+public class ReactiveStorageRepositoryCustomImpl implements ReactiveStorageRepositoryCustom {
+
+    private final ReactiveElasticsearchClient client;
+    private final FilesIndexManager filesIndexManager;
+    private final ElasticsearchConverter converter;
+    private final String indexName;
+
+    @Value("${elasticsearch.update.retry-on-conflict:3}")
+    private int updateRetryOnConflict;
+
+    @Autowired
+    public ReactiveStorageRepositoryCustomImpl(ReactiveElasticsearchClient client,
+                                               FilesIndexManager filesIndexManager,
+                                               ReactiveElasticsearchOperations operations) {
+        this.client = client;
+        this.filesIndexManager = filesIndexManager;
+        this.converter = operations.getElasticsearchConverter();
+        this.indexName = operations.getIndexCoordinatesFor(StoredFile.class).getIndexName();
+    }
+
+    @Override
+    public Mono<StoredFile> findById(String id) {
+        return getFromBackingIndices(id, true).map(this::toStoredFile);
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return getFromBackingIndices(id, false)
+                .flatMap(result -> client.delete(new DeleteRequest(result.getIndex(), id)))
+                .then();
+    }
+
+    @Override
+    public Mono<Void> delete(StoredFile file) {
+        return deleteById(file.getId());
+    }
+
+    @Override
+    public Mono<UpdateOutcome> addTags(String id, Set<String> tags) {
+        return updateByScript(id, TagScripts.ADD_TAGS, tags);
+    }
+
+    @Override
+    public Mono<UpdateOutcome> removeTags(String id, Set<String> tags) {
+        return updateByScript(id, TagScripts.REMOVE_TAGS, tags);
+    }
+
+    private Mono<UpdateOutcome> updateByScript(String id, String script, Set<String> tags) {
+        Map<String, Object> params = Map.of("tags", new ArrayList<>(tags));
+        UpdateRequest request = new UpdateRequest(indexName, id)
+                .script(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, script, params))
+                .retryOnConflict(updateRetryOnConflict)
+                .fetchSource(false);
+        // update through the alias goes to its write index, files of rolled over indices are updated in place
+        return update(request)
+                .switchIfEmpty(Mono.defer(() -> getFromBackingIndices(id, false)
+                        .flatMap(result -> update(request.index(result.getIndex())))))
+                .defaultIfEmpty(UpdateOutcome.NOT_FOUND);
+    }
+
+    // empty when the file is not found
+    private Mono<UpdateOutcome> update(UpdateRequest request) {
+        return client.update(request)
+                .map(response -> response.getResult() == DocWriteResponse.Result.NOOP
+                        ? UpdateOutcome.NOOP
+                        : UpdateOutcome.UPDATED)
+                .onErrorResume(ElasticsearchStatusException.class, e -> e.status() == RestStatus.NOT_FOUND
+                        ? Mono.empty()
+                        : Mono.error(e));
+    }
+
+    private Mono<GetResult> getFromBackingIndices(String id, boolean fetchSource) {
+        return backingIndices(false).flatMap(indices -> multiGet(id, indices, fetchSource)
+                // the alias may have been rolled over or migrated by another instance since its indices were listed
+                .switchIfEmpty(Mono.defer(() -> backingIndices(true).flatMap(listed -> {
+                    List<String> newIndices = new ArrayList<>(listed);
+                    newIndices.removeAll(indices);
+                    return newIndices.isEmpty() ? Mono.empty() : multiGet(id, newIndices, fetchSource);
+                }))));
+    }
+
+    private Mono<List<String>> backingIndices(boolean refresh) {
+        return Mono.fromCallable(() -> {
+            List<String> indices = refresh
+                    ? filesIndexManager.refreshBackingIndices()
+                    : filesIndexManager.getBackingIndices();
+            return indices.isEmpty() ? List.of(indexName) : indices;
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // failed items, e.g. of an index deleted by a concurrent migration, and missing files are left out by the client
+    private Mono<GetResult> multiGet(String id, List<String> indices, boolean fetchSource) {
+        MultiGetRequest request = new MultiGetRequest();
+        FetchSourceContext fetchSourceContext = fetchSource
+                ? FetchSourceContext.FETCH_SOURCE
+                : FetchSourceContext.DO_NOT_FETCH_SOURCE;
+        indices.forEach(index -> request.add(new MultiGetRequest.Item(index, id).fetchSourceContext(fetchSourceContext)));
+        return client.multiGet(request).next();
+    }
+
+    @Override
+    public Mono<FileSearchResult> search(FileQuery query, Pageable pageable, int trackTotalHitsUpTo) {
+        return Mono.fromCallable(filesIndexManager::isNameNgramMapped)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(nameNgramMapped -> search(FileSearchQueries.filter(query, nameNgramMapped), query, pageable,
+                        trackTotalHitsUpTo));
+    }
+
+    private Mono<FileSearchResult> search(QueryBuilder filter, FileQuery query, Pageable pageable,
+                                          int trackTotalHitsUpTo) {
+        SearchSourceBuilder source = new SearchSourceBuilder()
+                .query(filter)
+                .from((int) pageable.getOffset())
+                .size(pageable.getPageSize());
+        FileSearchQueries.applySort(source, query);
+        FileSearchQueries.applyFields(source, query);
+        var files = client.search(new SearchRequest(indexName).source(source))
+                .map(this::toStoredFile)
+                .collectList();
+        Mono<Optional<Long>> total = trackTotalHitsUpTo == FileSearchQueries.TRACK_TOTAL_HITS_DISABLED
+                ? Mono.just(Optional.empty())
+                : client.count(new SearchRequest(indexName).source(new SearchSourceBuilder().query(filter)))
+                .map(Optional::of);
+        return Mono.zip(total, files, (count, page) ->
+                new FileSearchResult(count.orElse(null), true, page, null, null, query.getFields() != null));
+    }
+
+    private StoredFile toStoredFile(SearchHit hit) {
+        if (!hit.hasSource()) {
+            return StoredFile.builder().id(hit.getId()).build();
+        }
+        StoredFile file = converter.read(StoredFile.class, Document.from(hit.getSourceAsMap()));
+        file.setId(hit.getId());
+        return file;
+    }
+
+    private StoredFile toStoredFile(GetResult result) {
+        StoredFile file = converter.read(StoredFile.class, Document.from(result.sourceAsMap()));
+        file.setId(result.getId());
+        return file;
+    }
+}
@@ -0,0 +1,155 @@
+package com.test.storage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.test.storage.dto.BatchTagUpdateRequestDTO;
+import com.test.storage.dto.BatchTagUpdateResponseDTO;
+import com.test.storage.dto.TagMatch;
+import com.test.storage.exception.custom.TaskNotFoundException;
+import com.test.storage.repository.FileQuery;
+import com.test.storage.repository.StorageEngine;
+import com.test.storage.repository.TagUpdateItemResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Adds and removes tags of many files at once. Small lists of ids are updated synchronously,
+ * larger lists and filters are updated by a background task which can be polled by its id.
+ */
+@Service
+public class BatchTagService {
+
+    final StorageEngine storageEngine;
+    final StoredFileCache fileCache;
+    final SearchResultCache searchCache;
+    private final Cache<String, BatchTagTask> tasks;
+    private final ExecutorService executor;
+
+    @Value("${storage.tags.batch.sync-threshold:1000}")
+    private int syncThreshold = 1000;
+
+    @Value("${storage.tags.batch.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    @Value("${storage.tags.batch.max-reported-items:1000}")
+    private int maxReportedItems = 1000;
+
+    @Autowired
+    public BatchTagService(StorageEngine storageEngine,
+                           StoredFileCache fileCache,
+                           SearchResultCache searchCache,
+                           @Value("${storage.tags.batch.workers:2}") int workers,
+                           @Value("${storage.tags.batch.task-retention:1h}") Duration taskRetention) {
+        this.storageEngine = storageEngine;
+        this.fileCache = fileCache;
+        this.searchCache = searchCache;
+        this.executor = Executors.newFixedThreadPool(workers);
+        this.tasks = Caffeine.newBuilder().expireAfter(new TaskExpiry(taskRetention)).build();
+    }
+
+    public BatchTagUpdateResponseDTO updateTags(BatchTagUpdateRequestDTO request) {
+        Set<String> tagsToAdd = Optional.ofNullable(request.getAdd()).orElse(Set.of());
+        Set<String> tagsToRemove = Optional.ofNullable(request.getRemove()).orElse(Set.of());
+        var ids = request.getIds();
+
+        if (ids != null && ids.size() <= syncThreshold) {
+            var task = new BatchTagTask(null, true, Integer.MAX_VALUE);
+            task.record(bulkUpdateTags(ids, tagsToAdd, tagsToRemove));
+            task.complete();
+            return task.toResponse();
+        }
+
+        var task = new BatchTagTask(UUID.randomUUID().toString(), false, maxReportedItems);
+        tasks.put(task.getId(), task);
+        executor.execute(() -> {
+            try {
+                if (ids != null) {
+                    for (int from = 0; from < ids.size(); from += chunkSize) {
+                        updateChunk(task, ids.subList(from, Math.min(from + chunkSize, ids.size())),
+                                tagsToAdd, tagsToRemove);
+                    }
+                } else {
+                    var query = FileQuery.builder()
+                            .tags(request.getFilter().getTags())
+                            .allTags(request.getFilter().getTagMatch() == TagMatch.ALL)
+                            .nameFilter(request.getFilter().getQ())
+                            .minSize(request.getFilter().getMinSize())
+                            .maxSize(request.getFilter().getMaxSize())
+                            .build();
+                    storageEngine.scrollIds(query, chunkSize,
+                            chunk -> updateChunk(task, chunk, tagsToAdd, tagsToRemove));
+                }
+                task.complete();
+            } catch (RuntimeException e) {
+                task.fail(e.getMessage());
+            } finally {
+                // written again to be kept for the retention period from now on
+                tasks.put(task.getId(), task);
+            }
+        });
+        return task.toResponse();
+    }
+
+    public BatchTagUpdateResponseDTO getTask(String taskId) {
+        return Optional.ofNullable(tasks.getIfPresent(taskId))
+                .map(BatchTagTask::toResponse)
+                .orElseThrow(() -> new TaskNotFoundException(taskId));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void updateChunk(BatchTagTask task, List<String> ids, Set<String> tagsToAdd, Set<String> tagsToRemove) {
+        task.record(bulkUpdateTags(ids, tagsToAdd, tagsToRemove));
+    }
+
+    /**
+     * Running tasks never expire however long they take, finished ones are kept for the retention period
+     * after they are written to the cache on completion.
+     */
+    private static final class TaskExpiry implements Expiry<String, BatchTagTask> {
+
+        private final long retentionNanos;
+
+        TaskExpiry(Duration retention) {
+            this.retentionNanos = retention.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String id, BatchTagTask task, long currentTime) {
+            return task.isRunning() ? Long.MAX_VALUE : retentionNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String id, BatchTagTask task, long currentTime, long currentDuration) {
+            return task.isRunning() ? Long.MAX_VALUE : retentionNanos;
+        }
+
+        @Override
+        public long expireAfterRead(String id, BatchTagTask task, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private List<TagUpdateItemResult> bulkUpdateTags(List<String> ids, Set<String> tagsToAdd, Set<String> tagsToRemove) {
+        try {
+            return storageEngine.bulkUpdateTags(ids, tagsToAdd, tagsToRemove);
+        } finally {
+            fileCache.invalidateAll(ids);
+            searchCache.invalidate();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.test.storage.service;
+
+import com.test.storage.dto.BatchTagItemDTO;
+import com.test.storage.dto.BatchTagUpdateResponseDTO;
+import com.test.storage.dto.BatchTaskStatus;
+import com.test.storage.repository.TagUpdateItemResult;
+import com.test.storage.repository.UpdateOutcome;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Progress of a batch tag update, results are recorded from a single worker thread
+ * while status may be read from request threads.
+ */
+class BatchTagTask {
+
+    private final String id;
+    // when false only files which were not updated are listed in items
+    private final boolean reportAllItems;
+    private final int maxReportedItems;
+
+    private BatchTaskStatus status = BatchTaskStatus.RUNNING;
+    private long processed;
+    private long updated;
+    private long unchanged;
+    private long notFound;
+    private long failed;
+    private String error;
+    private final List<BatchTagItemDTO> items = new ArrayList<>();
+
+    BatchTagTask(String id, boolean reportAllItems, int maxReportedItems) {
+        this.id = id;
+        this.reportAllItems = reportAllItems;
+        this.maxReportedItems = maxReportedItems;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    synchronized void record(List<TagUpdateItemResult> results) {
+        for (TagUpdateItemResult result : results) {
+            processed++;
+            String outcome;
+            if (result.isFailed()) {
+                failed++;
+                outcome = "failed";
+            } else if (result.getOutcome() == UpdateOutcome.NOT_FOUND) {
+                notFound++;
+                outcome = "not_found";
+            } else if (result.getOutcome() == UpdateOutcome.NOOP) {
+                unchanged++;
+                outcome = "unchanged";
+            } else {
+                updated++;
+                outcome = "updated";
+            }
+            boolean report = reportAllItems || result.isFailed() || result.getOutcome() == UpdateOutcome.NOT_FOUND;
+            if (report && items.size() < maxReportedItems) {
+                items.add(new BatchTagItemDTO(result.getId(), outcome, result.getError()));
+            }
+        }
+    }
+
+    synchronized boolean isRunning() {
+        return status == BatchTaskStatus.RUNNING;
+    }
+
+    synchronized void complete() {
+        status = BatchTaskStatus.COMPLETED;
+    }
+
+    synchronized void fail(String error) {
+        this.status = BatchTaskStatus.FAILED;
+        this.error = error;
+    }
+
+    synchronized BatchTagUpdateResponseDTO toResponse() {
+        return new BatchTagUpdateResponseDTO(id, status, processed, updated, unchanged, notFound, failed, error,
+                new ArrayList<>(items));
+    }
+}
@@ -0,0 +1,52 @@
+package com.test.storage.service;
+
+import com.test.storage.dto.BackingIndexDTO;
+import com.test.storage.dto.IndexMigrationResponseDTO;
+import com.test.storage.dto.IndexRolloverResponseDTO;
+import com.test.storage.repository.FilesIndexManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+public class IndexManagementService {
+
+    final FilesIndexManager filesIndexManager;
+
+    @Autowired
+    public IndexManagementService(FilesIndexManager filesIndexManager) {
+        this.filesIndexManager = filesIndexManager;
+    }
+
+    public IndexMigrationResponseDTO migrate() throws IOException, InterruptedException {
+        var result = filesIndexManager.migrate();
+        return new IndexMigrationResponseDTO(
+                result.getPreviousIndices(),
+                result.getNewIndex(),
+                result.getSourceDocuments(),
+                result.getMigratedDocuments());
+    }
+
+    public IndexRolloverResponseDTO rollover(boolean force, boolean dryRun) throws IOException {
+        var result = filesIndexManager.rollover(force, dryRun);
+        return new IndexRolloverResponseDTO(
+                result.getOldIndex(),
+                result.getNewIndex(),
+                result.isRolledOver(),
+                result.isDryRun(),
+                result.getConditions());
+    }
+
+    public List<BackingIndexDTO> getBackingIndices() throws IOException {
+        return filesIndexManager.describeBackingIndices().stream()
+                .map(index -> new BackingIndexDTO(
+                        index.getName(),
+                        index.isWriteIndex(),
+                        index.getDocuments(),
+                        index.getCreationDate()))
+                .collect(Collectors.toList());
+    }
+}
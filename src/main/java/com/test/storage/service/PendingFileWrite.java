@@ -0,0 +1,112 @@
+package com.test.storage.service;
+
+import com.test.storage.model.StoredFile;
+import com.test.storage.repository.FileWrite;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Changes of one file accepted since the last flush, coalesced into a single write.
+ */
+class PendingFileWrite {
+
+    private final String id;
+    // new document of the file when it is uploaded
+    private StoredFile file;
+    private boolean deleted;
+    private final Set<String> tagsToAdd = new LinkedHashSet<>();
+    private final Set<String> tagsToRemove = new LinkedHashSet<>();
+    // failed flushes of the write
+    private int attempts;
+    private long notBeforeNanos;
+
+    PendingFileWrite(String id) {
+        this.id = id;
+    }
+
+    void index(StoredFile file) {
+        this.file = file;
+        this.deleted = false;
+        tagsToAdd.clear();
+        tagsToRemove.clear();
+    }
+
+    void delete() {
+        file = null;
+        deleted = true;
+        tagsToAdd.clear();
+        tagsToRemove.clear();
+    }
+
+    void addTags(Set<String> tags) {
+        if (deleted) {
+            return;
+        }
+        if (file != null) {
+            if (file.getTags() == null) {
+                file.setTags(new LinkedHashSet<>());
+            }
+            file.getTags().addAll(tags);
+            return;
+        }
+        tagsToRemove.removeAll(tags);
+        tagsToAdd.addAll(tags);
+    }
+
+    void removeTags(Set<String> tags) {
+        if (deleted) {
+            return;
+        }
+        if (file != null) {
+            if (file.getTags() != null) {
+                file.getTags().removeAll(tags);
+            }
+            return;
+        }
+        tagsToAdd.removeAll(tags);
+        tagsToRemove.addAll(tags);
+    }
+
+    /**
+     * Applies changes accepted after this write was taken for a flush which failed.
+     *
+     * @return write of both changes, the newer one alone when it replaces or deletes the file
+     */
+    PendingFileWrite followedBy(PendingFileWrite newer) {
+        if (newer.file != null || newer.deleted) {
+            return newer;
+        }
+        addTags(newer.tagsToAdd);
+        removeTags(newer.tagsToRemove);
+        return this;
+    }
+
+    void scheduleRetry(long notBeforeNanos) {
+        attempts++;
+        this.notBeforeNanos = notBeforeNanos;
+    }
+
+    FileWrite toFileWrite() {
+        if (deleted) {
+            return FileWrite.delete(id);
+        }
+        if (file != null) {
+            return FileWrite.index(file);
+        }
+        return FileWrite.updateTags(id, tagsToAdd, tagsToRemove);
+    }
+
+    String getId() {
+        return id;
+    }
+
+    int getAttempts() {
+        return attempts;
+    }
+
+    // System.nanoTime() the write can be retried at, set once it fails
+    long getNotBeforeNanos() {
+        return notBeforeNanos;
+    }
+}
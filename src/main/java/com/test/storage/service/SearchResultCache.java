@@ -0,0 +1,180 @@
+package com.test.storage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.test.storage.dto.FileFacet;
+import com.test.storage.dto.FileSort;
+import com.test.storage.dto.FileSearchRequestDTO;
+import com.test.storage.dto.FilteredPagedSearchResponseDTO;
+import com.test.storage.dto.TagMatch;
+import com.test.storage.dto.TotalHitsMode;
+import com.test.storage.model.StoredFile;
+import com.test.storage.model.StoredFileField;
+import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of page number searches. Every change of files made through the services starts a new generation,
+ * results of previous generations are never served again and are left to eviction.
+ * Writes become visible to searches only after index refresh, so a result cached right after a write
+ * may miss it until the ttl passes.
+ * Cached responses are shared between requests and must not be modified.
+ */
+@Component
+public class SearchResultCache {
+
+    // rough size of the response with its list
+    private static final int RESPONSE_OVERHEAD_BYTES = 96;
+    // rough size of a tag count or a size bucket of the facets
+    private static final int FACET_ENTRY_OVERHEAD_BYTES = 64;
+
+    private final boolean enabled;
+    private final AtomicLong generation = new AtomicLong();
+    private final Cache<SearchKey, FilteredPagedSearchResponseDTO> results;
+
+    public SearchResultCache(boolean enabled, Duration ttl, DataSize maxMemory) {
+        this(enabled, ttl, maxMemory, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public SearchResultCache(@Value("${storage.search-cache.enabled:false}") boolean enabled,
+                             @Value("${storage.search-cache.ttl:5s}") Duration ttl,
+                             @Value("${storage.search-cache.max-memory:32MB}") DataSize maxMemory,
+                             MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.results = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((SearchKey key, FilteredPagedSearchResponseDTO response) -> estimateBytes(response))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, results, "searchResults");
+        Gauge.builder("cache.weighted.size", this, SearchResultCache::getWeightedSizeBytes)
+                .description("Estimated memory taken by cached search responses")
+                .tag("cache", "searchResults")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param totalHitsMode mode the search is done with, after the default is applied
+     */
+    public FilteredPagedSearchResponseDTO get(FileSearchRequestDTO request,
+                                              TotalHitsMode totalHitsMode,
+                                              Supplier<FilteredPagedSearchResponseDTO> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        // result of a search overlapping a write is put into the generation before the write
+        return results.get(toKey(request, totalHitsMode, generation.get()), key -> search.get());
+    }
+
+    /**
+     * Must be called after a change of files is done.
+     */
+    public void invalidate() {
+        if (enabled) {
+            generation.incrementAndGet();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public CacheStats getCacheStats() {
+        return results.stats();
+    }
+
+    public long getSize() {
+        return results.estimatedSize();
+    }
+
+    /**
+     * @return estimated memory taken by cached responses
+     */
+    public long getWeightedSizeBytes() {
+        return results.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+
+    // runs pending evictions, which are done asynchronously otherwise
+    void cleanUp() {
+        results.cleanUp();
+    }
+
+    private static SearchKey toKey(FileSearchRequestDTO request, TotalHitsMode totalHitsMode, long generation) {
+        // copied sets are compared regardless of the order of their elements
+        return new SearchKey(
+                generation,
+                request.getTags() == null ? Set.of() : Set.copyOf(request.getTags()),
+                request.getTagMatch() == TagMatch.ALL,
+                request.getQ() == null ? "" : request.getQ(),
+                request.getMinSize(),
+                request.getMaxSize(),
+                request.getSort(),
+                request.getPage(),
+                request.getSize(),
+                totalHitsMode,
+                request.getFields() == null || request.getFields().isEmpty() ? null : Set.copyOf(request.getFields()),
+                request.getFacets() == null ? Set.of() : Set.copyOf(request.getFacets()));
+    }
+
+    private static int estimateBytes(FilteredPagedSearchResponseDTO response) {
+        long bytes = RESPONSE_OVERHEAD_BYTES;
+        if (response.getPage() != null) {
+            for (StoredFile file : response.getPage()) {
+                bytes += StoredFileCache.estimateBytes(file);
+            }
+        }
+        var facets = response.getFacets();
+        if (facets != null) {
+            if (facets.getTags() != null) {
+                for (var tag : facets.getTags()) {
+                    bytes += FACET_ENTRY_OVERHEAD_BYTES + 2L * tag.getTag().length();
+                }
+            }
+            if (facets.getSizes() != null) {
+                bytes += (long) FACET_ENTRY_OVERHEAD_BYTES * facets.getSizes().size();
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class SearchKey {
+        private final long generation;
+        private final Set<String> tags;
+        private final boolean allTags;
+        private final String nameFilter;
+        private final Long minSize;
+        private final Long maxSize;
+        private final FileSort sort;
+        private final Integer page;
+        private final Integer size;
+        private final TotalHitsMode totalHitsMode;
+        private final Set<StoredFileField> fields;
+        private final Set<FileFacet> facets;
+    }
+}
@@ -1,81 +1,351 @@
 package com.test.storage.service;
 
-import com.test.storage.dto.FilteredPagedSearchResponseDTO;
-import com.test.storage.dto.ResponseWithSuccessDTO;
-import com.test.storage.dto.UploadFileRequestDTO;
-import com.test.storage.dto.UploadFileResponseDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.test.storage.dto.*;
+import com.test.storage.exception.custom.CursorExpiredException;
 import com.test.storage.exception.custom.FileNotFoundException;
 import com.test.storage.exception.custom.TagNotFoundOnFileException;
+import com.test.storage.exception.custom.TagsConcurrentlyModifiedException;
 import com.test.storage.model.StoredFile;
-import com.test.storage.repository.StorageRepository;
-import com.test.storage.util.FileTypeUtil;
+import com.test.storage.repository.BulkItemResult;
+import com.test.storage.repository.FileFacets;
+import com.test.storage.repository.FileQuery;
+import com.test.storage.repository.FileSearchQueries;
+import com.test.storage.repository.FileSearchResult;
+import com.test.storage.repository.StorageEngine;
+import com.test.storage.repository.UpdateOutcome;
+import com.test.storage.util.FileTypeDetector;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
-import java.util.LinkedHashSet;
-import java.util.Optional;
-import java.util.Set;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Service
 public class StorageService {
 
-    final StorageRepository storageRepository;
+    // removals of tags assigned concurrently are retried this many times
+    private static final int REMOVE_TAGS_ATTEMPTS = 3;
+
+    final StorageEngine storageEngine;
+    final Validator validator;
+    final ObjectReader uploadFileRequestReader;
+    final FileTypeDetector fileTypeDetector;
+    final StoredFileCache fileCache;
+    final SearchResultCache searchCache;
+    final WriteBehindQueue writeBehindQueue;
+
+    // bulk requests allowed in flight before reading of the stream is suspended
+    @Value("${storage.bulk.stream.max-in-flight:2}")
+    private int streamMaxInFlightRequests = 2;
+
+    @Value("${storage.bulk.stream.max-reported-errors:1000}")
+    private int streamMaxReportedErrors = 1000;
+
+    // used by writes which do not specify their refresh mode
+    @Value("${storage.write.refresh:wait_for}")
+    private RefreshMode defaultRefreshMode = RefreshMode.WAIT_FOR;
+
+    @Value("${storage.search.total-hits:exact}")
+    private TotalHitsMode defaultTotalHitsMode = TotalHitsMode.EXACT;
+
+    // files are counted exactly up to this number in estimate mode
+    @Value("${storage.search.total-hits-threshold:10000}")
+    private int totalHitsThreshold = 10000;
 
     @Autowired
-    public StorageService(StorageRepository storageRepository) {
-        this.storageRepository = storageRepository;
+    public StorageService(StorageEngine storageEngine,
+                          Validator validator,
+                          ObjectMapper objectMapper,
+                          FileTypeDetector fileTypeDetector,
+                          StoredFileCache fileCache,
+                          SearchResultCache searchCache,
+                          WriteBehindQueue writeBehindQueue) {
+        this.storageEngine = storageEngine;
+        this.validator = validator;
+        this.uploadFileRequestReader = objectMapper.readerFor(UploadFileRequestDTO.class);
+        this.fileTypeDetector = fileTypeDetector;
+        this.fileCache = fileCache;
+        this.searchCache = searchCache;
+        this.writeBehindQueue = writeBehindQueue;
+    }
+
+    /**
+     * Refresh mode of this and other write methods is ignored with write-behind enabled,
+     * the change is not even sent to Elasticsearch when the method returns.
+     *
+     * @param refresh when the file becomes visible to searches, null for the configured default
+     */
+    public UploadFileResponseDTO uploadFile(UploadFileRequestDTO fileToUpload, RefreshMode refresh) {
+        if (writeBehindQueue.isEnabled()) {
+            // id is generated here since the file is indexed later
+            var file = toStoredFile(fileToUpload);
+            file.setId(UUID.randomUUID().toString());
+            writeBehindQueue.index(file);
+            return new UploadFileResponseDTO(file.getId());
+        }
+        String id = storageEngine.index(toStoredFile(fileToUpload), toRefreshPolicy(refresh));
+        searchCache.invalidate();
+        return new UploadFileResponseDTO(id);
+    }
+
+    public BulkUploadResponseDTO bulkUploadFiles(List<UploadFileRequestDTO> filesToUpload, RefreshMode refresh) {
+        var items = new BulkUploadItemDTO[filesToUpload.size()];
+        // single synchronous session, every bulk request is sent from this thread
+        try (var session = storageEngine.openBulkIndexSession(0, toRefreshPolicy(refresh), result -> {
+            searchCache.invalidate();
+            items[(int) result.getOrdinal()] = toBulkUploadItem(result);
+        })) {
+            for (int i = 0; i < filesToUpload.size(); i++) {
+                var fileToUpload = filesToUpload.get(i);
+                var error = validate(fileToUpload);
+                if (error.isPresent()) {
+                    items[i] = BulkUploadItemDTO.failure(i, error.get());
+                } else {
+                    session.add(i, toStoredFile(fileToUpload));
+                }
+            }
+        }
+        return BulkUploadResponseDTO.of(Arrays.asList(items));
+    }
+
+    /**
+     * Uploads files from newline delimited JSON without buffering the whole stream.
+     * Only failed items are returned (up to the configured limit), successful ones are just counted.
+     */
+    public BulkUploadResponseDTO streamUploadFiles(InputStream ndjson, RefreshMode refresh) throws IOException {
+        var uploaded = new AtomicLong();
+        var failed = new AtomicLong();
+        var errors = Collections.synchronizedList(new ArrayList<BulkUploadItemDTO>());
+        var reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        var refreshPolicy = toRefreshPolicy(refresh);
+        try (var session = storageEngine.openBulkIndexSession(streamMaxInFlightRequests, refreshPolicy, result -> {
+            searchCache.invalidate();
+            if (result.isFailed()) {
+                reportStreamError(failed, errors, toBulkUploadItem(result));
+            } else {
+                uploaded.incrementAndGet();
+            }
+        })) {
+            String line;
+            for (long lineNumber = 0; (line = reader.readLine()) != null; lineNumber++) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    UploadFileRequestDTO fileToUpload = uploadFileRequestReader.readValue(line);
+                    var error = validate(fileToUpload);
+                    if (error.isPresent()) {
+                        reportStreamError(failed, errors, BulkUploadItemDTO.failure(lineNumber, error.get()));
+                    } else {
+                        // blocks while too many bulk requests are in flight
+                        session.add(lineNumber, toStoredFile(fileToUpload));
+                    }
+                } catch (JsonProcessingException e) {
+                    reportStreamError(failed, errors,
+                            BulkUploadItemDTO.failure(lineNumber, "malformed json: " + e.getOriginalMessage()));
+                }
+            }
+        }
+        return new BulkUploadResponseDTO(uploaded.get(), failed.get(), new ArrayList<>(errors));
+    }
+
+    public ResponseWithSuccessDTO deleteFileById(String id, RefreshMode refresh) {
+        if (writeBehindQueue.isEnabled()) {
+            writeBehindQueue.delete(id);
+            return ResponseWithSuccessDTO.getSuccessResponse();
+        }
+        findFileById(id);
+        try {
+            storageEngine.deleteById(id, toRefreshPolicy(refresh));
+        } finally {
+            fileCache.invalidate(id);
+            searchCache.invalidate();
+        }
+        return ResponseWithSuccessDTO.getSuccessResponse();
+    }
+
+    public ResponseWithSuccessDTO assignTagsToFileById(String id, Set<String> tags, RefreshMode refresh) {
+        if (writeBehindQueue.isEnabled()) {
+            writeBehindQueue.addTags(id, tags);
+            return ResponseWithSuccessDTO.getSuccessResponse();
+        }
+        var outcome = storageEngine.addTags(id, tags, toRefreshPolicy(refresh));
+        if (outcome != UpdateOutcome.NOOP) {
+            fileCache.invalidate(id);
+            searchCache.invalidate();
+        }
+        if (outcome == UpdateOutcome.NOT_FOUND) {
+            throw new FileNotFoundException(id);
+        }
+        return ResponseWithSuccessDTO.getSuccessResponse();
     }
 
-    public UploadFileResponseDTO uploadFile(UploadFileRequestDTO fileToUpload) {
+    public FilteredPagedSearchResponseDTO filteredAndPagedSearch(FileSearchRequestDTO request) {
+        if (request.getCursor() != null) {
+            return toSearchResponse(storageEngine
+                    .continueScroll(request.getCursor())
+                    .orElseThrow(CursorExpiredException::new));
+        }
+        var query = FileQuery.builder()
+                .tags(request.getTags())
+                .allTags(request.getTagMatch() == TagMatch.ALL)
+                .nameFilter(request.getQ())
+                .minSize(request.getMinSize())
+                .maxSize(request.getMaxSize())
+                .sortField(request.getSort() == null ? null : request.getSort().getField())
+                .sortDescending(request.getSort() != null && request.getSort().isDescending())
+                .fields(request.getFields() == null || request.getFields().isEmpty() ? null : request.getFields())
+                .tagsFacet(request.getFacets() != null && request.getFacets().contains(FileFacet.TAGS))
+                .sizeFacet(request.getFacets() != null && request.getFacets().contains(FileFacet.SIZE))
+                .build();
+        if (request.isScroll()) {
+            return toSearchResponse(storageEngine.startScroll(query, request.getSize()));
+        }
+        var totalHitsMode = request.getTotal() == null ? defaultTotalHitsMode : request.getTotal();
+        return searchCache.get(request, totalHitsMode, () -> toSearchResponse(storageEngine.search(
+                query,
+                PageRequest.of(request.getPage(), request.getSize()),
+                trackTotalHitsUpTo(totalHitsMode))));
+    }
+
+    /**
+     * With write-behind enabled tags missing on the file and missing files are not reported.
+     */
+    public ResponseWithSuccessDTO deleteTagsFromFileById(String id, Set<String> tags, RefreshMode refresh) {
+        if (writeBehindQueue.isEnabled()) {
+            writeBehindQueue.removeTags(id, tags);
+            return ResponseWithSuccessDTO.getSuccessResponse();
+        }
+        for (int attempt = 1; attempt <= REMOVE_TAGS_ATTEMPTS; attempt++) {
+            var outcome = storageEngine.removeTags(id, tags, toRefreshPolicy(refresh));
+            if (outcome != UpdateOutcome.NOOP) {
+                fileCache.invalidate(id);
+                searchCache.invalidate();
+            }
+            if (outcome == UpdateOutcome.NOT_FOUND) {
+                throw new FileNotFoundException(id);
+            }
+            if (outcome == UpdateOutcome.UPDATED || tags.isEmpty()) {
+                return ResponseWithSuccessDTO.getSuccessResponse();
+            }
+            // file is left untouched when some of the tags are missing, read it only to report them
+            var missingTags = missingTags(findFileById(id), tags);
+            if (missingTags.isEmpty()) {
+                // cached file is stale, or the tags were assigned after the removal
+                fileCache.invalidate(id);
+                missingTags = missingTags(storageEngine.findById(id).orElseThrow(() -> new FileNotFoundException(id)), tags);
+            }
+            if (!missingTags.isEmpty()) {
+                throw new TagNotFoundOnFileException(id, missingTags);
+            }
+        }
+        throw new TagsConcurrentlyModifiedException(id, tags);
+    }
+
+    private static Set<String> missingTags(StoredFile file, Set<String> tags) {
+        var missingTags = new LinkedHashSet<>(tags);
+        if (file.getTags() != null) {
+            missingTags.removeAll(file.getTags());
+        }
+        return missingTags;
+    }
+
+    private StoredFile findFileById(String id) {
+        return fileCache.get(id, storageEngine::findById).orElseThrow(() -> new FileNotFoundException(id));
+    }
+
+    private StoredFile toStoredFile(UploadFileRequestDTO fileToUpload) {
         Set<String> tags = new LinkedHashSet<>();
-        FileTypeUtil.getTypeOfFileByName(fileToUpload.getName()).map(tags::add);
-        StoredFile storedFile = storageRepository.save(StoredFile.builder()
+        fileTypeDetector.getTypeOfFileByName(fileToUpload.getName()).map(tags::add);
+        return StoredFile.builder()
                 .fileSize(fileToUpload.getSize())
                 .fileName(fileToUpload.getName())
                 .tags(tags)
-                .build());
-        return new UploadFileResponseDTO(storedFile.getId());
+                .build();
     }
 
-
-    public ResponseWithSuccessDTO deleteFileById(String id) {
-        var file = storageRepository.findById(id).orElseThrow(() -> new FileNotFoundException(id));
-        storageRepository.delete(file);
-        return ResponseWithSuccessDTO.getSuccessResponse();
+    private Optional<String> validate(UploadFileRequestDTO fileToUpload) {
+        if (fileToUpload == null) {
+            return Optional.of("file must not be null");
+        }
+        Set<ConstraintViolation<UploadFileRequestDTO>> violations = validator.validate(fileToUpload);
+        if (violations.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(violations
+                .stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", ")));
     }
 
-    public ResponseWithSuccessDTO assignTagsToFileById(String id, Set<String> tags) {
-        var storedFile = storageRepository.findById(id).orElseThrow(() -> new FileNotFoundException(id));
-        storedFile.getTags().addAll(tags);
-        storageRepository.save(storedFile);
-        return ResponseWithSuccessDTO.getSuccessResponse();
+    private void reportStreamError(AtomicLong failed, List<BulkUploadItemDTO> errors, BulkUploadItemDTO error) {
+        if (failed.incrementAndGet() <= streamMaxReportedErrors) {
+            errors.add(error);
+        }
     }
 
-    public FilteredPagedSearchResponseDTO filteredAndPagedSearch(
-            Optional<Set<String>> tags,
-            Integer page,
-            Integer size,
-            String nameFilter) {
+    private RefreshPolicy toRefreshPolicy(RefreshMode refresh) {
+        switch (refresh == null ? defaultRefreshMode : refresh) {
+            case NONE:
+                return RefreshPolicy.NONE;
+            case IMMEDIATE:
+                return RefreshPolicy.IMMEDIATE;
+            default:
+                return RefreshPolicy.WAIT_UNTIL;
+        }
+    }
 
-        // can`t avoid empty tags set
-        var filesPage = tags
-                .map(tag -> storageRepository
-                        .findAllByTagsAndFileNameContaining(tag, nameFilter, PageRequest.of(page, size)))
-                .orElse(storageRepository.findAllByFileNameContaining(nameFilter, PageRequest.of(page, size)));
+    private int trackTotalHitsUpTo(TotalHitsMode mode) {
+        switch (mode) {
+            case NONE:
+                return FileSearchQueries.TRACK_TOTAL_HITS_DISABLED;
+            case ESTIMATE:
+                return totalHitsThreshold;
+            default:
+                return FileSearchQueries.TRACK_TOTAL_HITS_ACCURATE;
+        }
+    }
 
-        return new FilteredPagedSearchResponseDTO(filesPage.getTotalElements(), filesPage.getContent());
+    private static FilteredPagedSearchResponseDTO toSearchResponse(FileSearchResult result) {
+        String totalRelation = result.getTotal() == null ? null : result.isTotalExact() ? "eq" : "gte";
+        List<? extends StoredFile> page = result.isProjected()
+                ? ProjectedFileDTO.fromAll(result.getFiles())
+                : result.getFiles();
+        return new FilteredPagedSearchResponseDTO(result.getTotal(), page, result.getCursor(), totalRelation,
+                toFacets(result.getFacets()));
     }
 
-    public ResponseWithSuccessDTO deleteTagsFromFileById(String id, Set<String> tags) {
-        var file = storageRepository.findById(id).orElseThrow(() -> new FileNotFoundException(id));
-        var fileTags = file.getTags();
-        if (!fileTags.containsAll(tags)) {
-            tags.removeAll(fileTags);
-            throw new TagNotFoundOnFileException(id, tags);
+    private static FileFacetsDTO toFacets(FileFacets facets) {
+        if (facets == null) {
+            return null;
         }
-        fileTags.removeAll(tags);
-        storageRepository.save(file);
-        return ResponseWithSuccessDTO.getSuccessResponse();
+        List<TagCountDTO> tags = facets.getTags() == null ? null : facets.getTags().entrySet().stream()
+                .map(entry -> new TagCountDTO(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+        List<SizeBucketDTO> sizes = facets.getSizes() == null ? null : facets.getSizes().stream()
+                .map(bucket -> new SizeBucketDTO(bucket.getFrom(), bucket.getTo(), bucket.getCount()))
+                .collect(Collectors.toList());
+        return new FileFacetsDTO(tags, sizes);
+    }
+
+    private static BulkUploadItemDTO toBulkUploadItem(BulkItemResult result) {
+        return result.isFailed()
+                ? BulkUploadItemDTO.failure(result.getOrdinal(), result.getError())
+                : BulkUploadItemDTO.success(result.getOrdinal(), result.getId());
     }
 }
@@ -0,0 +1,134 @@
+package com.test.storage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.test.storage.model.StoredFile;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of files by id, bounded by estimated memory footprint and expiring after a ttl.
+ * Services invalidate a file after every change of it, so a file changed through them is never
+ * served from the cache afterwards. Changes made past the services are visible after the ttl.
+ */
+@Component
+public class StoredFileCache {
+
+    // rough size of StoredFile with its boxed size and empty strings
+    private static final int FILE_OVERHEAD_BYTES = 128;
+    // rough size of a set entry with an empty string
+    private static final int TAG_OVERHEAD_BYTES = 80;
+
+    private final boolean enabled;
+    private final Cache<String, StoredFile> filesById;
+
+    public StoredFileCache(boolean enabled, Duration ttl, DataSize maxMemory) {
+        this(enabled, ttl, maxMemory, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public StoredFileCache(@Value("${storage.file-cache.enabled:true}") boolean enabled,
+                           @Value("${storage.file-cache.ttl:30s}") Duration ttl,
+                           @Value("${storage.file-cache.max-memory:16MB}") DataSize maxMemory,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.filesById = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((String id, StoredFile file) -> estimateBytes(file))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, filesById, "storedFiles");
+        Gauge.builder("cache.weighted.size", this, StoredFileCache::getWeightedSizeBytes)
+                .description("Estimated memory taken by cached files")
+                .tag("cache", "storedFiles")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param loader reads the file when it is not cached, absent files are not cached
+     */
+    public Optional<StoredFile> get(String id, Function<String, Optional<StoredFile>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        // cached instance is shared, callers get their own copy
+        return Optional.ofNullable(filesById.get(id, key -> loader.apply(key).map(StoredFileCache::copy).orElse(null)))
+                .map(StoredFileCache::copy);
+    }
+
+    /**
+     * Must be called after the change of the file is done. Waits for a concurrent load of the file,
+     * so a value read before the change is not left in the cache.
+     */
+    public void invalidate(String id) {
+        if (enabled) {
+            filesById.invalidate(id);
+        }
+    }
+
+    public void invalidateAll(Iterable<String> ids) {
+        if (enabled) {
+            filesById.invalidateAll(ids);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CacheStats getCacheStats() {
+        return filesById.stats();
+    }
+
+    public long getSize() {
+        return filesById.estimatedSize();
+    }
+
+    /**
+     * @return estimated memory taken by cached files
+     */
+    public long getWeightedSizeBytes() {
+        return filesById.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+
+    // runs pending evictions, which are done asynchronously otherwise
+    void cleanUp() {
+        filesById.cleanUp();
+    }
+
+    static int estimateBytes(StoredFile file) {
+        long bytes = FILE_OVERHEAD_BYTES + 2L * length(file.getId()) + 2L * length(file.getFileName());
+        if (file.getTags() != null) {
+            for (String tag : file.getTags()) {
+                bytes += TAG_OVERHEAD_BYTES + 2L * length(tag);
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static StoredFile copy(StoredFile file) {
+        return new StoredFile(file.getId(), file.getFileName(), file.getFileSize(),
+                file.getTags() == null ? null : new HashSet<>(file.getTags()));
+    }
+}
@@ -0,0 +1,342 @@
+package com.test.storage.service;
+
+import com.test.storage.exception.custom.WriteQueueFullException;
+import com.test.storage.model.StoredFile;
+import com.test.storage.repository.BulkItemResult;
+import com.test.storage.repository.FileWrite;
+import com.test.storage.repository.StorageEngine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.rest.RestStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Accepts changes of files without waiting for Elasticsearch. Changes are coalesced per file
+ * and sent in bulk requests by a background writer, one bulk request at a time,
+ * so changes of a file are applied in the order they were accepted.
+ * A change is rejected when the configured number of files already have pending changes.
+ * Writes which fail transiently (rejected with 429, failed with 5xx or by an I/O error) are put back to the queue,
+ * merged with later changes of the file, and retried with exponential backoff; such a write is dropped only after
+ * the configured number of retries. Other failures, like tags of a missing file or a mapping error,
+ * would fail again and are dropped at once.
+ */
+@Component
+public class WriteBehindQueue {
+
+    final StorageEngine storageEngine;
+    final StoredFileCache fileCache;
+    final SearchResultCache searchCache;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final int maxRetries;
+    private final long retryBackoffNanos;
+
+    private final Object lock = new Object();
+    // guarded by lock, in order of the first change since the last flush
+    private final LinkedHashMap<String, PendingFileWrite> pending = new LinkedHashMap<>();
+    private volatile boolean running;
+    private Thread writer;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedWrites = new AtomicLong();
+    private final AtomicLong retriedWrites = new AtomicLong();
+    // dropped after all retries or at once when they would fail again
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private volatile String lastError;
+    private final Timer flushTimer;
+
+    public WriteBehindQueue(StorageEngine storageEngine,
+                            StoredFileCache fileCache,
+                            SearchResultCache searchCache,
+                            boolean enabled,
+                            int capacity,
+                            int batchSize,
+                            Duration flushInterval,
+                            int maxRetries,
+                            Duration retryBackoff) {
+        this(storageEngine, fileCache, searchCache, enabled, capacity, batchSize, flushInterval, maxRetries,
+                retryBackoff, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public WriteBehindQueue(StorageEngine storageEngine,
+                            StoredFileCache fileCache,
+                            SearchResultCache searchCache,
+                            @Value("${storage.write-behind.enabled:false}") boolean enabled,
+                            @Value("${storage.write-behind.capacity:10000}") int capacity,
+                            @Value("${storage.write-behind.batch-size:500}") int batchSize,
+                            @Value("${storage.write-behind.flush-interval:200ms}") Duration flushInterval,
+                            @Value("${storage.write-behind.max-retries:5}") int maxRetries,
+                            @Value("${storage.write-behind.retry-backoff:200ms}") Duration retryBackoff,
+                            MeterRegistry meterRegistry) {
+        this.storageEngine = storageEngine;
+        this.fileCache = fileCache;
+        this.searchCache = searchCache;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = Math.max(flushInterval.toMillis(), 1);
+        this.maxRetries = maxRetries;
+        this.retryBackoffNanos = retryBackoff.toNanos();
+        Gauge.builder("storage.write.queue", this, WriteBehindQueue::getQueueDepth)
+                .description("Files with changes waiting for the write-behind writer")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("storage.write.flush")
+                .description("Bulk requests sent by the write-behind writer")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        writesCounter(meterRegistry, "flushed", flushedWrites);
+        writesCounter(meterRegistry, "retried", retriedWrites);
+        writesCounter(meterRegistry, "failed", failedWrites);
+    }
+
+    private static void writesCounter(MeterRegistry meterRegistry, String outcome, AtomicLong count) {
+        FunctionCounter.builder("storage.write.writes", count, AtomicLong::get)
+                .description("Changes of files written by the write-behind writer, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops accepting changes and flushes all pending ones.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        writer.join();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void index(StoredFile file) {
+        submit(file.getId(), write -> write.index(file));
+    }
+
+    public void delete(String id) {
+        submit(id, PendingFileWrite::delete);
+    }
+
+    public void addTags(String id, Set<String> tags) {
+        submit(id, write -> write.addTags(tags));
+    }
+
+    public void removeTags(String id, Set<String> tags) {
+        submit(id, write -> write.removeTags(tags));
+    }
+
+    /**
+     * @return number of files with pending changes
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    public long getFlushedWrites() {
+        return flushedWrites.get();
+    }
+
+    public long getRetriedWrites() {
+        return retriedWrites.get();
+    }
+
+    public long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    public Duration getTotalFlushTime() {
+        return Duration.ofNanos(totalFlushNanos.get());
+    }
+
+    public Duration getLastFlushTime() {
+        return Duration.ofNanos(lastFlushNanos.get());
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    private void submit(String id, Consumer<PendingFileWrite> change) {
+        synchronized (lock) {
+            if (!running) {
+                throw new IllegalStateException("write-behind queue is not running");
+            }
+            PendingFileWrite write = pending.get(id);
+            if (write == null) {
+                if (pending.size() >= capacity) {
+                    throw new WriteQueueFullException();
+                }
+                write = new PendingFileWrite(id);
+                pending.put(id, write);
+            }
+            change.accept(write);
+            if (pending.size() >= batchSize) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            // pending writes, if any, are waiting for their retry
+            boolean nothingDue = false;
+            while (true) {
+                List<PendingFileWrite> batch;
+                synchronized (lock) {
+                    if (nothingDue) {
+                        await(Math.min(flushIntervalMillis, millisUntilNextRetry()));
+                    } else if (running && pending.size() < batchSize) {
+                        await(flushIntervalMillis);
+                    }
+                    if (!running && pending.isEmpty()) {
+                        return;
+                    }
+                    batch = takeBatch(System.nanoTime());
+                }
+                nothingDue = batch.isEmpty();
+                if (!nothingDue) {
+                    flush(batch);
+                }
+            }
+        } finally {
+            // changes are rejected rather than left in the queue when the writer dies of an error
+            synchronized (lock) {
+                running = false;
+            }
+        }
+    }
+
+    private void await(long millis) {
+        try {
+            lock.wait(Math.max(millis, 1));
+        } catch (InterruptedException e) {
+            running = false;
+        }
+    }
+
+    private long millisUntilNextRetry() {
+        long now = System.nanoTime();
+        long millis = flushIntervalMillis;
+        for (PendingFileWrite write : pending.values()) {
+            long untilDue = write.getAttempts() == 0 ? 0 : write.getNotBeforeNanos() - now;
+            millis = Math.min(millis, TimeUnit.NANOSECONDS.toMillis(Math.max(untilDue, 0)) + 1);
+        }
+        return millis;
+    }
+
+    private List<PendingFileWrite> takeBatch(long now) {
+        List<PendingFileWrite> batch = new ArrayList<>(Math.min(pending.size(), batchSize));
+        Iterator<Map.Entry<String, PendingFileWrite>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            PendingFileWrite write = iterator.next().getValue();
+            if (write.getAttempts() == 0 || write.getNotBeforeNanos() - now <= 0) {
+                batch.add(write);
+                iterator.remove();
+            }
+        }
+        return batch;
+    }
+
+    private void flush(List<PendingFileWrite> batch) {
+        List<FileWrite> writes = batch.stream().map(PendingFileWrite::toFileWrite).collect(Collectors.toList());
+        long start = System.nanoTime();
+        long succeeded = 0;
+        try {
+            for (BulkItemResult result : storageEngine.bulkWrite(writes)) {
+                if (result.isFailed()) {
+                    PendingFileWrite write = batch.get((int) result.getOrdinal());
+                    retryOrDrop(write, result.getError(), isTransient(result.getStatus()));
+                } else {
+                    succeeded++;
+                }
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(write -> retryOrDrop(write, e.getMessage(), isTransient(e)));
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            flushes.incrementAndGet();
+            flushedWrites.addAndGet(succeeded);
+            totalFlushNanos.addAndGet(elapsed);
+            lastFlushNanos.set(elapsed);
+            flushTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            fileCache.invalidateAll(batch.stream().map(PendingFileWrite::getId).collect(Collectors.toList()));
+            searchCache.invalidate();
+        }
+    }
+
+    private static boolean isTransient(int status) {
+        return status == RestStatus.TOO_MANY_REQUESTS.getStatus() || status >= 500;
+    }
+
+    // I/O errors of the client are wrapped by the repository, HTTP errors come with their status
+    private static boolean isTransient(RuntimeException e) {
+        if (e instanceof UncheckedIOException) {
+            return true;
+        }
+        return e instanceof ElasticsearchException && isTransient(((ElasticsearchException) e).status().getStatus());
+    }
+
+    private void retryOrDrop(PendingFileWrite write, String error, boolean transientFailure) {
+        lastError = error;
+        if (!transientFailure || write.getAttempts() >= maxRetries) {
+            failedWrites.incrementAndGet();
+            return;
+        }
+        retriedWrites.incrementAndGet();
+        write.scheduleRetry(System.nanoTime() + (retryBackoffNanos << Math.min(write.getAttempts(), 20)));
+        synchronized (lock) {
+            // later changes of the file were accepted while the write was in flight, they are applied after it
+            pending.merge(write.getId(), write, (newer, failed) -> failed.followedBy(newer));
+        }
+    }
+}
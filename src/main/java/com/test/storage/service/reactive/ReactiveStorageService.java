@@ -0,0 +1,162 @@
+package com.test.storage.service.reactive;
+
+import com.test.storage.dto.FileSearchRequestDTO;
+import com.test.storage.dto.FilteredPagedSearchResponseDTO;
+import com.test.storage.dto.ProjectedFileDTO;
+import com.test.storage.dto.RefreshMode;
+import com.test.storage.dto.ResponseWithSuccessDTO;
+import com.test.storage.dto.TagMatch;
+import com.test.storage.dto.TotalHitsMode;
+import com.test.storage.dto.UploadFileRequestDTO;
+import com.test.storage.dto.UploadFileResponseDTO;
+import com.test.storage.exception.custom.CursorPagingNotSupportedException;
+import com.test.storage.exception.custom.FacetsNotSupportedException;
+import com.test.storage.exception.custom.FileNotFoundException;
+import com.test.storage.exception.custom.NotSupportedInReactiveModeException;
+import com.test.storage.exception.custom.TagNotFoundOnFileException;
+import com.test.storage.exception.custom.TagsConcurrentlyModifiedException;
+import com.test.storage.model.StoredFile;
+import com.test.storage.repository.FileQuery;
+import com.test.storage.repository.FileSearchQueries;
+import com.test.storage.repository.UpdateOutcome;
+import com.test.storage.repository.reactive.ReactiveStorageRepository;
+import com.test.storage.util.FileTypeDetector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Non-blocking counterpart of {@link com.test.storage.service.StorageService} for single file operations
+ * and page number searches. Parameters of the default mode it does not support are rejected rather than ignored:
+ * {@code refresh} of writes, cursor paging, facets and {@code total=estimate}.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveStorageService {
+
+    private static final int REMOVE_TAGS_ATTEMPTS = 3;
+
+    final ReactiveStorageRepository storageRepository;
+    final FileTypeDetector fileTypeDetector;
+
+    @Value("${storage.search.total-hits:exact}")
+    private TotalHitsMode defaultTotalHitsMode = TotalHitsMode.EXACT;
+
+    @Autowired
+    public ReactiveStorageService(ReactiveStorageRepository storageRepository, FileTypeDetector fileTypeDetector) {
+        this.storageRepository = storageRepository;
+        this.fileTypeDetector = fileTypeDetector;
+    }
+
+    public Mono<UploadFileResponseDTO> uploadFile(UploadFileRequestDTO fileToUpload, RefreshMode refresh) {
+        if (refresh != null) {
+            return Mono.error(new NotSupportedInReactiveModeException("refresh"));
+        }
+        return storageRepository.save(toStoredFile(fileToUpload))
+                .map(storedFile -> new UploadFileResponseDTO(storedFile.getId()));
+    }
+
+    public Mono<ResponseWithSuccessDTO> deleteFileById(String id, RefreshMode refresh) {
+        if (refresh != null) {
+            return Mono.error(new NotSupportedInReactiveModeException("refresh"));
+        }
+        return storageRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new FileNotFoundException(id)))
+                .flatMap(storageRepository::delete)
+                .thenReturn(ResponseWithSuccessDTO.getSuccessResponse());
+    }
+
+    public Mono<ResponseWithSuccessDTO> assignTagsToFileById(String id, Set<String> tags, RefreshMode refresh) {
+        if (refresh != null) {
+            return Mono.error(new NotSupportedInReactiveModeException("refresh"));
+        }
+        return storageRepository.addTags(id, tags)
+                .flatMap(outcome -> outcome == UpdateOutcome.NOT_FOUND
+                        ? Mono.error(new FileNotFoundException(id))
+                        : Mono.just(ResponseWithSuccessDTO.getSuccessResponse()));
+    }
+
+    public Mono<ResponseWithSuccessDTO> deleteTagsFromFileById(String id, Set<String> tags, RefreshMode refresh) {
+        if (refresh != null) {
+            return Mono.error(new NotSupportedInReactiveModeException("refresh"));
+        }
+        return removeTags(id, tags, 1);
+    }
+
+    private Mono<ResponseWithSuccessDTO> removeTags(String id, Set<String> tags, int attempt) {
+        if (attempt > REMOVE_TAGS_ATTEMPTS) {
+            return Mono.error(new TagsConcurrentlyModifiedException(id, tags));
+        }
+        return storageRepository.removeTags(id, tags).flatMap(outcome -> {
+            if (outcome == UpdateOutcome.NOT_FOUND) {
+                return Mono.error(new FileNotFoundException(id));
+            }
+            if (outcome == UpdateOutcome.UPDATED || tags.isEmpty()) {
+                return Mono.just(ResponseWithSuccessDTO.getSuccessResponse());
+            }
+            // file is left untouched when some of the tags are missing, read it only to report them
+            return storageRepository.findById(id)
+                    .switchIfEmpty(Mono.error(() -> new FileNotFoundException(id)))
+                    .flatMap(file -> {
+                        var missingTags = new LinkedHashSet<>(tags);
+                        if (file.getTags() != null) {
+                            missingTags.removeAll(file.getTags());
+                        }
+                        // the tags were assigned after the removal, remove them again
+                        return missingTags.isEmpty()
+                                ? removeTags(id, tags, attempt + 1)
+                                : Mono.error(new TagNotFoundOnFileException(id, missingTags));
+                    });
+        });
+    }
+
+    public Mono<FilteredPagedSearchResponseDTO> filteredAndPagedSearch(FileSearchRequestDTO request) {
+        if (request.getCursor() != null || request.isScroll()) {
+            return Mono.error(new CursorPagingNotSupportedException());
+        }
+        if (request.getFacets() != null && !request.getFacets().isEmpty()) {
+            return Mono.error(new FacetsNotSupportedException());
+        }
+        if (request.getTotal() == TotalHitsMode.ESTIMATE) {
+            return Mono.error(new NotSupportedInReactiveModeException("total=estimate"));
+        }
+        var query = FileQuery.builder()
+                .tags(request.getTags())
+                .allTags(request.getTagMatch() == TagMatch.ALL)
+                .nameFilter(request.getQ())
+                .minSize(request.getMinSize())
+                .maxSize(request.getMaxSize())
+                .sortField(request.getSort() == null ? null : request.getSort().getField())
+                .sortDescending(request.getSort() != null && request.getSort().isDescending())
+                .fields(request.getFields() == null || request.getFields().isEmpty() ? null : request.getFields())
+                .build();
+        // estimate configured as the default is counted exactly, the count API has no threshold
+        var totalHitsMode = request.getTotal() == null ? defaultTotalHitsMode : request.getTotal();
+        int trackTotalHitsUpTo = totalHitsMode == TotalHitsMode.NONE
+                ? FileSearchQueries.TRACK_TOTAL_HITS_DISABLED
+                : FileSearchQueries.TRACK_TOTAL_HITS_ACCURATE;
+        return storageRepository.search(query, PageRequest.of(request.getPage(), request.getSize()), trackTotalHitsUpTo)
+                .map(result -> new FilteredPagedSearchResponseDTO(result.getTotal(),
+                        result.isProjected() ? ProjectedFileDTO.fromAll(result.getFiles()) : result.getFiles(), null,
+                        result.getTotal() == null ? null : "eq"));
+    }
+
+    private StoredFile toStoredFile(UploadFileRequestDTO fileToUpload) {
+        Set<String> tags = new LinkedHashSet<>();
+        fileTypeDetector.getTypeOfFileByName(fileToUpload.getName()).map(tags::add);
+        // id is generated here rather than by Elasticsearch so it is copied to the sorted id field of the document
+        return StoredFile.builder()
+                .id(UUID.randomUUID().toString())
+                .fileSize(fileToUpload.getSize())
+                .fileName(fileToUpload.getName())
+                .tags(tags)
+                .build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.test.storage.util;
+
+/**
+ * Single pass parsing of uploaded file names, without regular expressions.
+ * <p>
+ * A valid name is {@code ^(?:[\wА-Яа-яі.]+[\wА-Яа-яі|\s-]*)?(?:\.[A-Za-z0-9]+)?$}: a base name
+ * starting with a word character, a cyrillic letter or a dot, which may continue with spaces, {@code |}
+ * and {@code -} but has no dots after the first of them, and an optional extension of latin letters and digits.
+ */
+public final class FileNames {
+
+    private FileNames() {
+
+    }
+
+    /**
+     * @return true when the name matches the format above, empty name included
+     */
+    public static boolean isValid(CharSequence name) {
+        int length = name.length();
+        if (length == 0) {
+            return true;
+        }
+        if (isSeparator(name.charAt(0))) {
+            return false;
+        }
+        int firstSeparator = -1;
+        int lastDot = -1;
+        int dotBeforeLast = -1;
+        // characters after the last dot are all latin letters and digits
+        boolean extensionChars = true;
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c == '.') {
+                dotBeforeLast = lastDot;
+                lastDot = i;
+                extensionChars = true;
+            } else if (isSeparator(c)) {
+                if (firstSeparator < 0) {
+                    firstSeparator = i;
+                }
+                extensionChars = false;
+            } else if (isWordChar(c)) {
+                extensionChars &= c < 128 && c != '_';
+            } else {
+                return false;
+            }
+        }
+        // the whole name is a base name
+        if (firstSeparator < 0 || lastDot < firstSeparator) {
+            return true;
+        }
+        // otherwise the last dot starts the extension, and the base name before it has no dots after a separator
+        boolean hasExtension = lastDot < length - 1 && extensionChars;
+        return hasExtension && (dotBeforeLast < firstSeparator);
+    }
+
+    /**
+     * @return index of the first character of the extension, that is of the text after the last dot,
+     * or -1 when the name has no dot
+     */
+    public static int extensionStart(String name) {
+        int lastDot = name.lastIndexOf('.');
+        return lastDot < 0 ? -1 : lastDot + 1;
+    }
+
+    // \w, А-Я, а-я and і
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_'
+                || (c >= 'А' && c <= 'я') || c == 'і';
+    }
+
+    // characters allowed in a base name after its first character, but not in its first character
+    private static boolean isSeparator(char c) {
+        return c == '|' || c == '-' || c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,91 @@
+package com.test.storage.util;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tika.Tika;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+@Component
+public class FileTypeDetector {
+
+    private static final Set<String> EXPECTED_TYPES = Set.of("audio", "video", "text", "image");
+    // outcomes of auto-tagging besides the detected types
+    static final String NO_EXTENSION = "no_extension";
+    static final String UNKNOWN_TYPE = "unknown";
+
+    // Tika facade is thread safe, MIME registry is loaded only once
+    private final Tika tika = new Tika();
+    private final LoadingCache<String, Optional<String>> typeByExtension;
+    // storage.autotag counter per outcome, registered upfront to keep lookups off the upload path
+    private final Map<String, Counter> outcomeCounters = new HashMap<>();
+
+    public FileTypeDetector(long cacheSize) {
+        this(cacheSize, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public FileTypeDetector(@Value("${storage.file-type.cache-size:1024}") long cacheSize, MeterRegistry meterRegistry) {
+        this.typeByExtension = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build(this::detectTypeOfExtension);
+        CaffeineCacheMetrics.monitor(meterRegistry, typeByExtension, "file-type");
+        for (String outcome : EXPECTED_TYPES) {
+            outcomeCounters.put(outcome, autoTagCounter(meterRegistry, outcome));
+        }
+        outcomeCounters.put(NO_EXTENSION, autoTagCounter(meterRegistry, NO_EXTENSION));
+        outcomeCounters.put(UNKNOWN_TYPE, autoTagCounter(meterRegistry, UNKNOWN_TYPE));
+    }
+
+    public Optional<String> getTypeOfFileByName(String fileName) {
+        int extensionStart = FileNames.extensionStart(fileName);
+        if (extensionStart < 0) {
+            outcomeCounters.get(NO_EXTENSION).increment();
+            return Optional.empty();
+        }
+        var type = typeByExtension.get(fileName.substring(extensionStart).toLowerCase(Locale.ROOT));
+        outcomeCounters.get(type.orElse(UNKNOWN_TYPE)).increment();
+        return type;
+    }
+
+    public CacheStats getCacheStats() {
+        return typeByExtension.stats();
+    }
+
+    public long getCacheHits() {
+        return typeByExtension.stats().hitCount();
+    }
+
+    public long getCacheMisses() {
+        return typeByExtension.stats().missCount();
+    }
+
+    private static Counter autoTagCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("storage.autotag")
+                .description("Files tagged with their type on upload, by the detected type")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private Optional<String> detectTypeOfExtension(String extension) {
+        // detected string is like type/format
+        String mimeType = tika.detect("file." + extension);
+        int typeEnd = mimeType.indexOf('/');
+        String fileType = typeEnd < 0 ? mimeType : mimeType.substring(0, typeEnd);
+        return EXPECTED_TYPES.contains(fileType) ? Optional.of(fileType) : Optional.empty();
+    }
+
+}
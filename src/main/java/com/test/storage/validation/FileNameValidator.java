@@ -0,0 +1,14 @@
+package com.test.storage.validation;
+
+import com.test.storage.util.FileNames;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+public class FileNameValidator implements ConstraintValidator<ValidFileName, CharSequence> {
+
+    @Override
+    public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+        return value == null || FileNames.isValid(value);
+    }
+}
@@ -0,0 +1,25 @@
+package com.test.storage.validation;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * File name in the format of {@link com.test.storage.util.FileNames#isValid}, null is valid.
+ */
+@Documented
+@Constraint(validatedBy = FileNameValidator.class)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ValidFileName {
+
+    String message() default "wrong file name format, should be name.ext or .ext or name";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
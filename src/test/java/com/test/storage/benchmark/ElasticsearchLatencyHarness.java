@@ -0,0 +1,126 @@
+package com.test.storage.benchmark;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import static com.test.storage.benchmark.Latencies.max;
+import static com.test.storage.benchmark.Latencies.millis;
+import static com.test.storage.benchmark.Latencies.percentile;
+
+/**
+ * Runs the latency benchmarks comparing a filter on the previous mapping of files with the same filter
+ * on the current one: creates an index per mapping, loads the same documents into both and measures
+ * the queries of each index one after another. The benchmarks define only their documents and queries.
+ */
+final class ElasticsearchLatencyHarness implements Closeable {
+
+    private static final int BULK_SIZE = 5000;
+    private static final int QUERIES = 2000;
+
+    private final RestHighLevelClient client;
+
+    ElasticsearchLatencyHarness(String host) {
+        this.client = new RestHighLevelClient(RestClient.builder(HttpHost.create(host)));
+    }
+
+    // index of the previous mapping, without the settings of the app
+    void createIndex(String index, String mapping) throws IOException {
+        createIndex(index, null, mapping);
+    }
+
+    // index of the current mapping and settings of the app
+    void createFilesIndex(String index) throws IOException {
+        createIndex(index,
+                resource("/elasticsearch/files-settings.json"),
+                resource("/elasticsearch/files-mapping.json"));
+    }
+
+    private void createIndex(String index, String settings, String mapping) throws IOException {
+        if (client.indices().exists(new GetIndexRequest(index), RequestOptions.DEFAULT)) {
+            client.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+        }
+        var request = new CreateIndexRequest(index).mapping(mapping, XContentType.JSON);
+        if (settings != null) {
+            request.settings(settings, XContentType.JSON);
+        }
+        client.indices().create(request, RequestOptions.DEFAULT);
+    }
+
+    /**
+     * Indexes the same documents into every index and refreshes them, so all of them are searched.
+     *
+     * @param document source of the document with the given number
+     */
+    void load(int documents, IntFunction<Map<String, Object>> document, String... indices) throws IOException {
+        for (int from = 0; from < documents; from += BULK_SIZE) {
+            var bulk = new BulkRequest();
+            for (int i = from; i < Math.min(from + BULK_SIZE, documents); i++) {
+                Map<String, Object> source = document.apply(i);
+                for (String index : indices) {
+                    bulk.add(new IndexRequest(index).source(source));
+                }
+            }
+            client.bulk(bulk, RequestOptions.DEFAULT);
+        }
+        client.indices().refresh(new RefreshRequest(indices), RequestOptions.DEFAULT);
+    }
+
+    /**
+     * Sends queries one at a time, so each latency is of a single query on an otherwise idle cluster.
+     * Pass filters drawn from a generator seeded the same way for every index, so the indices are queried alike.
+     *
+     * @return sorted latencies in nanoseconds
+     */
+    <T> long[] measure(String index, Supplier<T> filters, Function<T, QueryBuilder> query) throws IOException {
+        long[] latencies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            var request = new SearchRequest(index)
+                    .source(new SearchSourceBuilder().query(query.apply(filters.get())).size(10));
+            long startNanos = System.nanoTime();
+            client.search(request, RequestOptions.DEFAULT);
+            latencies[i] = System.nanoTime() - startNanos;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    static void report(String name, long[] sortedLatencies) {
+        System.out.printf("%-12s p50 %8.2f ms   p99 %8.2f ms   max %8.2f ms%n", name,
+                millis(percentile(sortedLatencies, 0.50)),
+                millis(percentile(sortedLatencies, 0.99)),
+                millis(max(sortedLatencies)));
+    }
+
+    private static String resource(String path) throws IOException {
+        try (InputStream inputStream = ElasticsearchLatencyHarness.class.getResourceAsStream(path)) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+}
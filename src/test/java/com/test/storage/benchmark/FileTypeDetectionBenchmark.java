@@ -0,0 +1,55 @@
+package com.test.storage.benchmark;
+
+import com.test.storage.util.FileTypeDetector;
+import org.apache.tika.Tika;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares cached {@link FileTypeDetector} with detection building new Tika on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileTypeDetectionBenchmark {
+
+    private static final String[] EXPECTED_TYPES = {"audio", "video", "text", "image"};
+
+    private static final String[] FILE_NAMES = {
+            "song.mp3", "notes.txt", "photo.final.png", "movie.avi", "archive.zip", "report", "data.kkk"
+    };
+
+    private FileTypeDetector fileTypeDetector;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        fileTypeDetector = new FileTypeDetector(1024);
+    }
+
+    @Benchmark
+    public Optional<String> cachedDetector() {
+        return fileTypeDetector.getTypeOfFileByName(nextFileName());
+    }
+
+    @Benchmark
+    public Optional<String> newTikaPerCall() {
+        String fileName = nextFileName();
+        if (!fileName.contains(".")) {
+            return Optional.empty();
+        }
+        String fileType = new Tika().detect(fileName).replaceAll("/.*", "");
+        return Optional.ofNullable(Arrays.asList(EXPECTED_TYPES).contains(fileType) ? fileType : null);
+    }
+
+    private String nextFileName() {
+        next = (next + 1) % FILE_NAMES.length;
+        return FILE_NAMES[next];
+    }
+}
@@ -0,0 +1,25 @@
+package com.test.storage.benchmark;
+
+/**
+ * Percentiles of latencies measured by the benchmarks, in nanoseconds.
+ */
+final class Latencies {
+
+    private Latencies() {
+    }
+
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.max((int) Math.ceil(percentile * sorted.length) - 1, 0)];
+    }
+
+    static long max(long[] sorted) {
+        return sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+    }
+
+    static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
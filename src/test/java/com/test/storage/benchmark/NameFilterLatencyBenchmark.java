@@ -0,0 +1,60 @@
+package com.test.storage.benchmark;
+
+import org.elasticsearch.index.query.QueryBuilders;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static com.test.storage.benchmark.ElasticsearchLatencyHarness.report;
+
+/**
+ * Measures latency of the file name filter on the previous mapping (wildcard over the analyzed field)
+ * and on the current one (filename.ngram subfield). Needs a running Elasticsearch:
+ * <pre>
+ *     mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *         -Dexec.args="-cp %classpath com.test.storage.benchmark.NameFilterLatencyBenchmark localhost:9200 1000000"
+ * </pre>
+ */
+public class NameFilterLatencyBenchmark {
+
+    private static final String WILDCARD_INDEX = "files-benchmark-wildcard";
+    private static final String NGRAM_INDEX = "files-benchmark-ngram";
+    private static final String[] WORDS = {
+            "report", "invoice", "photo", "backup", "draft", "final", "song", "movie", "notes", "scan"
+    };
+    private static final String[] EXTENSIONS = {"txt", "pdf", "png", "mp3", "avi", "docx"};
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost:9200";
+        int documents = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        try (var harness = new ElasticsearchLatencyHarness(host)) {
+            harness.createIndex(WILDCARD_INDEX,
+                    "{\"properties\":{\"filename\":{\"type\":\"text\"},\"filesize\":{\"type\":\"long\"}}}");
+            harness.createFilesIndex(NGRAM_INDEX);
+            var random = new Random(7);
+            harness.load(documents, i -> Map.of("filename", randomName(random, i), "filesize", (long) i),
+                    WILDCARD_INDEX, NGRAM_INDEX);
+
+            report("wildcard", harness.measure(WILDCARD_INDEX, filters(new Random(42)), filter -> QueryBuilders
+                    .queryStringQuery("*" + filter + "*").field("filename").analyzeWildcard(true)));
+            report("ngram", harness.measure(NGRAM_INDEX, filters(new Random(42)), filter -> QueryBuilders
+                    .matchPhraseQuery("filename.ngram", filter)));
+        }
+    }
+
+    // substrings of at least 3 characters, so both queries return the same files
+    private static Supplier<String> filters(Random random) {
+        return () -> {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            int start = random.nextInt(word.length() - 2);
+            return word.substring(start, start + 3 + random.nextInt(word.length() - start - 2));
+        };
+    }
+
+    private static String randomName(Random random, int i) {
+        return WORDS[random.nextInt(WORDS.length)] + "_" + WORDS[random.nextInt(WORDS.length)] + "_" + i
+                + "." + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+    }
+}
@@ -0,0 +1,72 @@
+package com.test.storage.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.test.storage.dto.FilteredPagedSearchResponseDTO;
+import com.test.storage.model.StoredFile;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing {@link FilteredPagedSearchResponseDTO} as {@code GET /file} does and reading it back as a client,
+ * for pages up to the largest ones cursor paging returns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchResponseSerializationBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int pageSize;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private FilteredPagedSearchResponseDTO response;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        writer = objectMapper.writerFor(FilteredPagedSearchResponseDTO.class);
+        reader = objectMapper.readerFor(SearchResponse.class);
+        List<StoredFile> page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            page.add(new StoredFile("id-" + i, "file " + i + ".txt", 1024L * i,
+                    new LinkedHashSet<>(List.of("text", "work", "shared"))));
+        }
+        response = new FilteredPagedSearchResponseDTO(100_000L, page, null, "eq");
+        json = writer.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public SearchResponse deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+
+    // response as seen by a client, the DTO itself has no default constructor
+    @Data
+    @NoArgsConstructor
+    public static class SearchResponse {
+        private Long total;
+        private List<StoredFile> page;
+        private String cursor;
+        private String totalRelation;
+    }
+}
@@ -0,0 +1,110 @@
+package com.test.storage.benchmark;
+
+import com.test.storage.StorageApplication;
+import com.test.storage.model.StoredFile;
+import com.test.storage.repository.FileQuery;
+import com.test.storage.repository.FileSearchQueries;
+import com.test.storage.repository.FileSearchResult;
+import com.test.storage.repository.StorageEngine;
+import com.test.storage.repository.UpdateOutcome;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index, tag and search calls of the {@link StorageEngine} of a profile. Runs against the in-memory engine
+ * by default, pass {@code -Djmh.include="StorageEngine -p engine=in-memory,elasticsearch"} to compare it
+ * with Elasticsearch, which has to be running and gets the benchmark files written to its {@code files} alias.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageEngineBenchmark {
+
+    private static final String[] FILE_NAMES = {
+            "song.mp3", "notes.txt", "photo.final.png", "movie.avi", "archive.zip", "report", "Звіт за квартал.docx"
+    };
+    private static final String[] TAGS = {"audio", "text", "image", "video", "work"};
+
+    // profile selecting the engine, elasticsearch is the default one
+    @Param({"in-memory"})
+    private String engine;
+
+    @Param({"10000"})
+    private int files;
+
+    private ConfigurableApplicationContext context;
+    private StorageEngine storageEngine;
+    private List<String> ids;
+    private FileQuery tagQuery;
+    private FileQuery nameQuery;
+
+    @Setup
+    public void setUp() {
+        var application = new SpringApplicationBuilder(StorageApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=warn");
+        if (!"elasticsearch".equals(engine)) {
+            application.profiles(engine);
+        }
+        context = application.run();
+        storageEngine = context.getBean(StorageEngine.class);
+        ids = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            // only the last write waits for the files to become searchable
+            ids.add(storageEngine.index(nextFile(i), i == files - 1 ? RefreshPolicy.WAIT_UNTIL : RefreshPolicy.NONE));
+        }
+        tagQuery = FileQuery.builder().tags(Set.of("audio", "work")).build();
+        nameQuery = FileQuery.builder().nameFilter("song").build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (String id : ids) {
+            storageEngine.deleteById(id, RefreshPolicy.NONE);
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public String index() {
+        // files written by the benchmark itself are left in the engine
+        return storageEngine.index(nextFile(ThreadLocalRandom.current().nextInt(files)), RefreshPolicy.NONE);
+    }
+
+    @Benchmark
+    public UpdateOutcome addTags() {
+        String id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        return storageEngine.addTags(id, Set.of("work"), RefreshPolicy.NONE);
+    }
+
+    @Benchmark
+    public FileSearchResult searchByTags() {
+        return storageEngine.search(tagQuery, PageRequest.of(0, 20), FileSearchQueries.TRACK_TOTAL_HITS_ACCURATE);
+    }
+
+    @Benchmark
+    public FileSearchResult searchByName() {
+        return storageEngine.search(nameQuery, PageRequest.of(0, 20), FileSearchQueries.TRACK_TOTAL_HITS_ACCURATE);
+    }
+
+    private static StoredFile nextFile(int i) {
+        return StoredFile.builder()
+                .fileName(i + FILE_NAMES[i % FILE_NAMES.length])
+                .fileSize(1024L * i)
+                .tags(Set.of(TAGS[i % TAGS.length]))
+                .build();
+    }
+}
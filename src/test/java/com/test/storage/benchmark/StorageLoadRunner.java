@@ -0,0 +1,301 @@
+package com.test.storage.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.storage.StorageApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static com.test.storage.benchmark.Latencies.max;
+import static com.test.storage.benchmark.Latencies.millis;
+import static com.test.storage.benchmark.Latencies.percentile;
+
+/**
+ * Drives a mixed workload of uploads, tag assignments and searches through the whole REST stack
+ * and reports throughput and latency percentiles per endpoint. By default the app is started in-process
+ * in the in-memory profile, keeping files in {@link com.test.storage.repository.InMemoryStorageEngine}
+ * in place of Elasticsearch, so it runs offline:
+ * <pre>
+ *     mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *         -Dexec.args="-cp %classpath com.test.storage.benchmark.StorageLoadRunner 16 60 upload=1,tag=1,search=3"
+ * </pre>
+ * Arguments are concurrency, duration in seconds, the mix of operations, and optionally the web stack
+ * of the started app, {@code servlet} (the default) or {@code reactive}, or the URL of a running instance
+ * to load instead, like {@code http://localhost:8081}. Compare the stacks at the same {@code -Xmx}, passed before
+ * {@code -cp}; with the in-memory engine neither waits on Elasticsearch, so the difference is the overhead
+ * of the stack itself, while a running instance shows how they cope with Elasticsearch latency.
+ * Every worker sends its next request once the previous one is answered, so latencies are measured
+ * at the throughput the app sustains rather than at a fixed request rate.
+ * <p>
+ * Concurrency may be a list of steps, like {@code 16,64,256,1024}, run one after another against the same app;
+ * a summary of throughput, errors and p99 latency per step then shows the concurrency at which the stack
+ * stops keeping up, which is what the servlet and reactive stacks are compared by.
+ */
+public class StorageLoadRunner {
+
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+    private static final int PRELOADED_FILES = 1000;
+    private static final String[] FILE_NAMES = {
+            "song.mp3", "notes.txt", "photo.final.png", "movie.avi", "archive.zip", "report", "Звіт за квартал.docx"
+    };
+    private static final String[] SEARCHED_TAGS = {"audio", "text", "image", "video", "work"};
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+    // files preloaded before the run, tags are assigned to them
+    private final List<String> ids = new ArrayList<>();
+    private final AtomicLong uploaded = new AtomicLong();
+
+    enum Operation {
+        UPLOAD("POST /file"),
+        TAG("POST /file/{id}/tags"),
+        SEARCH("GET /file");
+
+        private final String endpoint;
+
+        Operation(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    StorageLoadRunner(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] concurrencies = Arrays.stream((args.length > 0 ? args[0] : "16").split(","))
+                .mapToInt(concurrency -> Integer.parseInt(concurrency.trim()))
+                .toArray();
+        Duration duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 60);
+        Map<Operation, Integer> mix = parseMix(args.length > 2 ? args[2] : "upload=1,tag=1,search=3");
+        String target = args.length > 3 ? args[3] : "servlet";
+        ConfigurableApplicationContext app = target.startsWith("http") ? null : startInMemoryApp(target);
+        try {
+            String baseUrl = app == null
+                    ? target
+                    : "http://localhost:" + ((WebServerApplicationContext) app).getWebServer().getPort();
+            var runner = new StorageLoadRunner(baseUrl);
+            System.out.printf("loading %s (%s), max heap %dMB%n",
+                    baseUrl, app == null ? "running instance" : target, Runtime.getRuntime().maxMemory() >> 20);
+            runner.preload();
+            System.out.printf("warming up for %ds%n", WARMUP.toSeconds());
+            runner.run(concurrencies[0], WARMUP, mix);
+            List<String> steps = new ArrayList<>();
+            for (int concurrency : concurrencies) {
+                System.out.printf("running %d workers for %ds, mix %s%n", concurrency, duration.toSeconds(), mix);
+                var results = runner.run(concurrency, duration, mix);
+                print(results, duration);
+                steps.add(step(concurrency, results, duration));
+            }
+            if (concurrencies.length > 1) {
+                System.out.printf("%-10s %10s %8s %10s%n", "workers", "req/s", "errors", "p99 ms");
+                steps.forEach(System.out::println);
+            }
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+    }
+
+    /**
+     * Starts the app on a random port with the in-memory storage engine.
+     *
+     * @param stack {@code servlet} for Spring MVC or {@code reactive} for WebFlux
+     */
+    static ConfigurableApplicationContext startInMemoryApp(String stack) {
+        String[] profiles;
+        switch (stack) {
+            case "servlet":
+                profiles = new String[]{"in-memory"};
+                break;
+            case "reactive":
+                profiles = new String[]{"reactive", "in-memory"};
+                break;
+            default:
+                throw new IllegalArgumentException("unknown web stack: " + stack);
+        }
+        return new SpringApplicationBuilder(StorageApplication.class)
+                .profiles(profiles)
+                .properties(
+                        "server.port=0",
+                        "logging.level.root=warn")
+                .run();
+    }
+
+    void preload() throws IOException, InterruptedException {
+        for (int i = 0; i < PRELOADED_FILES; i++) {
+            var response = send(Operation.UPLOAD);
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("upload failed with " + response.statusCode() + ": " + response.body());
+            }
+            ids.add(objectMapper.readTree(response.body()).get("id").asText());
+        }
+    }
+
+    /**
+     * @return latencies in nanoseconds and failed requests per operation
+     */
+    Map<Operation, Recorder> run(int concurrency, Duration duration, Map<Operation, Integer> mix) throws Exception {
+        Operation[] weighted = mix.entrySet().stream()
+                .flatMap(entry -> Stream.generate(entry::getKey).limit(entry.getValue()))
+                .toArray(Operation[]::new);
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<Map<Operation, Recorder>>> results = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                results.add(workers.submit(() -> {
+                    Map<Operation, Recorder> recorders = recorders();
+                    while (System.nanoTime() < deadline) {
+                        Operation operation = weighted[ThreadLocalRandom.current().nextInt(weighted.length)];
+                        long start = System.nanoTime();
+                        boolean success;
+                        try {
+                            success = send(operation).statusCode() == 200;
+                        } catch (IOException e) {
+                            success = false;
+                        }
+                        recorders.get(operation).record(System.nanoTime() - start, success);
+                    }
+                    return recorders;
+                }));
+            }
+            Map<Operation, Recorder> total = recorders();
+            for (var result : results) {
+                result.get().forEach((operation, recorder) -> total.get(operation).addAll(recorder));
+            }
+            return total;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private HttpResponse<String> send(Operation operation) throws IOException, InterruptedException {
+        var random = ThreadLocalRandom.current();
+        HttpRequest request;
+        switch (operation) {
+            case UPLOAD:
+                long n = uploaded.incrementAndGet();
+                String name = n + FILE_NAMES[(int) (n % FILE_NAMES.length)];
+                request = json(URI.create(baseUrl + "/file"),
+                        "{\"name\":\"" + name + "\",\"size\":" + random.nextLong(1L << 30) + "}");
+                break;
+            case TAG:
+                String id = ids.get(random.nextInt(ids.size()));
+                request = json(URI.create(baseUrl + "/file/" + id + "/tags"),
+                        "[\"work\",\"tag-" + random.nextInt(100) + "\"]");
+                break;
+            default:
+                String tag = SEARCHED_TAGS[random.nextInt(SEARCHED_TAGS.length)];
+                request = HttpRequest.newBuilder(URI.create(baseUrl + "/file?size=20&tags=" + tag
+                        + (random.nextBoolean() ? "&q=report" : ""))).GET().build();
+        }
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest json(URI uri, String body) {
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String weight : mix.split(",")) {
+            String[] parts = weight.split("=");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    private static Map<Operation, Recorder> recorders() {
+        Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder());
+        }
+        return recorders;
+    }
+
+    private static void print(Map<Operation, Recorder> results, Duration duration) {
+        System.out.printf("%-22s %10s %10s %8s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        results.forEach((operation, recorder) -> {
+            long[] latencies = recorder.sorted();
+            System.out.printf("%-22s %10d %10.1f %8d %10.2f %10.2f %10.2f %10.2f%n",
+                    operation.endpoint,
+                    latencies.length,
+                    latencies.length / (double) duration.toSeconds(),
+                    recorder.errors,
+                    millis(percentile(latencies, 0.5)),
+                    millis(percentile(latencies, 0.99)),
+                    millis(percentile(latencies, 0.999)),
+                    millis(max(latencies)));
+        });
+    }
+
+    // all endpoints of one concurrency step together
+    private static String step(int concurrency, Map<Operation, Recorder> results, Duration duration) {
+        Recorder total = new Recorder();
+        results.values().forEach(total::addAll);
+        long[] latencies = total.sorted();
+        return String.format("%-10d %10.1f %8d %10.2f",
+                concurrency,
+                latencies.length / (double) duration.toSeconds(),
+                total.errors,
+                millis(percentile(latencies, 0.99)));
+    }
+
+    /**
+     * Latencies of one worker, merged after the run so workers don't contend on recording.
+     */
+    static class Recorder {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        void record(long latency, boolean success) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        void addAll(Recorder other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
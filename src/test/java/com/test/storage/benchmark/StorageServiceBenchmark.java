@@ -0,0 +1,103 @@
+package com.test.storage.benchmark;
+
+import com.test.storage.dto.FileSearchRequestDTO;
+import com.test.storage.dto.FilteredPagedSearchResponseDTO;
+import com.test.storage.dto.ResponseWithSuccessDTO;
+import com.test.storage.dto.UploadFileRequestDTO;
+import com.test.storage.dto.UploadFileResponseDTO;
+import com.test.storage.repository.InMemoryStorageEngine;
+import com.test.storage.repository.StorageEngine;
+import com.test.storage.service.SearchResultCache;
+import com.test.storage.service.StorageService;
+import com.test.storage.service.StoredFileCache;
+import com.test.storage.service.WriteBehindQueue;
+import com.test.storage.util.FileTypeDetector;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+
+import javax.validation.Validation;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload, tag and search paths of {@link StorageService} against {@link InMemoryStorageEngine},
+ * with the search cache disabled so every search reaches the engine. Files are loaded again before every
+ * iteration, so uploads of the previous ones don't make the later iterations search more files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageServiceBenchmark {
+
+    private static final String[] FILE_NAMES = {
+            "song.mp3", "notes.txt", "photo.final.png", "movie.avi", "archive.zip", "report", "Звіт за квартал.docx"
+    };
+
+    // tags assigned are drawn from it, so assignments change the file rather than finding the tag there already
+    private static final String[] TAGS = new String[10000];
+
+    static {
+        for (int i = 0; i < TAGS.length; i++) {
+            TAGS[i] = "tag-" + i;
+        }
+    }
+
+    @Param({"10000"})
+    private int files;
+
+    private StorageService storageService;
+    private List<String> ids;
+    private FileSearchRequestDTO searchRequest;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        StorageEngine storageEngine = new InMemoryStorageEngine(Duration.ofMinutes(1));
+        var fileCache = new StoredFileCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(16));
+        var searchCache = new SearchResultCache(false, Duration.ofMinutes(1), DataSize.ofMegabytes(16));
+        storageService = new StorageService(
+                storageEngine,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                Jackson2ObjectMapperBuilder.json().build(),
+                new FileTypeDetector(1024),
+                fileCache,
+                searchCache,
+                new WriteBehindQueue(storageEngine, fileCache, searchCache,
+                        false, 1, 1, Duration.ofMinutes(1), 0, Duration.ZERO));
+        ids = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            ids.add(storageService.uploadFile(nextFile(i), null).getId());
+        }
+        searchRequest = new FileSearchRequestDTO();
+        searchRequest.setTags(Set.of("audio"));
+        searchRequest.setQ("song");
+    }
+
+    @Benchmark
+    public UploadFileResponseDTO uploadFile() {
+        return storageService.uploadFile(nextFile(ThreadLocalRandom.current().nextInt(FILE_NAMES.length)), null);
+    }
+
+    @Benchmark
+    public ResponseWithSuccessDTO assignTags() {
+        var random = ThreadLocalRandom.current();
+        String id = ids.get(random.nextInt(ids.size()));
+        return storageService.assignTagsToFileById(id, Set.of(TAGS[random.nextInt(TAGS.length)]), null);
+    }
+
+    @Benchmark
+    public FilteredPagedSearchResponseDTO search() {
+        return storageService.filteredAndPagedSearch(searchRequest);
+    }
+
+    private static UploadFileRequestDTO nextFile(int i) {
+        return new UploadFileRequestDTO(FILE_NAMES[i % FILE_NAMES.length], 1024L * i);
+    }
+}
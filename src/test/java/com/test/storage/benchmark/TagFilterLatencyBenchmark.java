@@ -0,0 +1,91 @@
+package com.test.storage.benchmark;
+
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static com.test.storage.benchmark.ElasticsearchLatencyHarness.report;
+
+/**
+ * Measures latency of the tag filter on the previous mapping (scored match queries over the analyzed field)
+ * and on the current one (terms query on the keyword field in filter context). Needs a running Elasticsearch:
+ * <pre>
+ *     mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *         -Dexec.args="-cp %classpath com.test.storage.benchmark.TagFilterLatencyBenchmark localhost:9200 1000000"
+ * </pre>
+ * Tag sets repeat across queries, like filters picked in a UI, so the filter cache of the keyword index is warmed
+ * the same way it is in production.
+ */
+public class TagFilterLatencyBenchmark {
+
+    private static final String TEXT_INDEX = "files-benchmark-tags-text";
+    private static final String KEYWORD_INDEX = "files-benchmark-tags-keyword";
+    private static final String[] TAGS = {
+            "text", "document", "image", "audio", "video", "archived", "shared", "draft", "work", "family",
+            "travel", "music", "invoice", "backup", "important", "old"
+    };
+    private static final int DISTINCT_FILTERS = 50;
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost:9200";
+        int documents = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        try (var harness = new ElasticsearchLatencyHarness(host)) {
+            harness.createIndex(TEXT_INDEX,
+                    "{\"properties\":{\"filename\":{\"type\":\"text\"},\"tags\":{\"type\":\"text\"}}}");
+            harness.createFilesIndex(KEYWORD_INDEX);
+            var random = new Random(7);
+            harness.load(documents, i -> Map.of("filename", "file_" + i + ".txt", "tags", randomTags(random, 3)),
+                    TEXT_INDEX, KEYWORD_INDEX);
+
+            List<List<String>> filters = distinctFilters(new Random(42));
+            for (boolean allTags : new boolean[]{false, true}) {
+                String match = allTags ? "all" : "any";
+                report("text " + match, harness.measure(TEXT_INDEX, filters(filters, new Random(3)), tags -> {
+                    BoolQueryBuilder query = QueryBuilders.boolQuery().minimumShouldMatch(allTags ? tags.size() : 1);
+                    tags.forEach(tag -> query.should(QueryBuilders.matchQuery("tags", tag)));
+                    return QueryBuilders.boolQuery().must(query);
+                }));
+                report("keyword " + match, harness.measure(KEYWORD_INDEX, filters(filters, new Random(3)), tags -> {
+                    BoolQueryBuilder query = QueryBuilders.boolQuery();
+                    if (allTags) {
+                        tags.forEach(tag -> query.filter(QueryBuilders.termQuery("tags", tag)));
+                    } else {
+                        query.filter(QueryBuilders.termsQuery("tags", tags));
+                    }
+                    return query;
+                }));
+            }
+        }
+    }
+
+    private static List<List<String>> distinctFilters(Random random) {
+        List<List<String>> filters = new ArrayList<>();
+        for (int i = 0; i < DISTINCT_FILTERS; i++) {
+            filters.add(randomTags(random, 2));
+        }
+        return filters;
+    }
+
+    private static Supplier<List<String>> filters(List<List<String>> distinctFilters, Random random) {
+        return () -> distinctFilters.get(random.nextInt(distinctFilters.size()));
+    }
+
+    // distinct tags, up to the given number
+    private static List<String> randomTags(Random random, int maxTags) {
+        List<String> tags = new ArrayList<>();
+        int count = 1 + random.nextInt(maxTags);
+        while (tags.size() < count) {
+            String tag = TAGS[random.nextInt(TAGS.length)];
+            if (!tags.contains(tag)) {
+                tags.add(tag);
+            }
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,56 @@
+package com.test.storage.benchmark;
+
+import com.test.storage.dto.UploadFileRequestDTO;
+import com.test.storage.util.FileNames;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Bean Validation of {@link UploadFileRequestDTO} compared with checking its name alone,
+ * by {@link FileNames} and by the regular expression it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadFileRequestValidationBenchmark {
+
+    // @Pattern of UploadFileRequestDTO.name before FileNames
+    private static final Pattern NAME_PATTERN =
+            Pattern.compile("^(?:[\\wА-Яа-яі.]+[\\wА-Яа-яі|\\s-]*)?(?:\\.[A-Za-z0-9]+)?$");
+
+    @Param({"song.mp3", "Звіт за квартал 2021 - остаточний.docx", "no extension at all", "bad/name?.txt"})
+    private String name;
+
+    private Validator validator;
+    private UploadFileRequestDTO request;
+
+    @Setup
+    public void setUp() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        request = new UploadFileRequestDTO(name, 1024L);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<UploadFileRequestDTO>> beanValidation() {
+        return validator.validate(request);
+    }
+
+    @Benchmark
+    public boolean fileNames() {
+        return FileNames.isValid(request.getName());
+    }
+
+    @Benchmark
+    public boolean namePattern() {
+        return NAME_PATTERN.matcher(request.getName()).matches();
+    }
+}
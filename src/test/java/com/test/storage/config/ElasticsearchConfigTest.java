@@ -0,0 +1,162 @@
+package com.test.storage.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the client against local HTTP servers standing in for Elasticsearch nodes.
+ */
+public class ElasticsearchConfigTest {
+
+    private final List<StubNode> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(StubNode::stop);
+    }
+
+    @Test
+    public void whenHostsListed_thenParseEveryHost() {
+        var hosts = ElasticsearchConfig.toHttpHosts("localhost:9200", " https://es2:9243 ", "");
+        assertEquals(2, hosts.length);
+        assertEquals(new HttpHost("localhost", 9200, "http"), hosts[0]);
+        assertEquals(new HttpHost("es2", 9243, "https"), hosts[1]);
+    }
+
+    @Test
+    public void whenSeedsUseHttps_thenSniffedNodesUseIt() {
+        assertEquals(ElasticsearchNodesSniffer.Scheme.HTTPS,
+                ElasticsearchConfig.sniffScheme(ElasticsearchConfig.toHttpHosts("https://es1:9243", "https://es2:9243")));
+        assertEquals(ElasticsearchNodesSniffer.Scheme.HTTP,
+                ElasticsearchConfig.sniffScheme(ElasticsearchConfig.toHttpHosts("es1:9200", "http://es2:9200")));
+        assertThrows(IllegalArgumentException.class,
+                () -> ElasticsearchConfig.sniffScheme(ElasticsearchConfig.toHttpHosts("es1:9200", "https://es2:9243")));
+    }
+
+    @Test
+    public void whenSeveralNodes_thenSpreadRequestsAcrossThem() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            nodes.add(new StubNode(() -> "{}"));
+        }
+        try (RestClient client = ElasticsearchConfig.restClientBuilder(hosts(nodes), null).build()) {
+            for (int i = 0; i < 30; i++) {
+                client.performRequest(new Request("GET", "/"));
+            }
+        }
+        nodes.forEach(node -> assertEquals(10, node.requests.get()));
+    }
+
+    @Test
+    public void whenNodeIsDown_thenRetryRequestsOnOtherNodes() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            nodes.add(new StubNode(() -> "{}"));
+        }
+        nodes.get(0).stop();
+        try (RestClient client = ElasticsearchConfig.restClientBuilder(hosts(nodes), null).build()) {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(200, client.performRequest(new Request("GET", "/")).getStatusLine().getStatusCode());
+            }
+        }
+        // dead node is not retried before its backoff passes
+        assertEquals(10, nodes.get(1).requests.get() + nodes.get(2).requests.get());
+    }
+
+    @Test
+    public void whenSniffing_thenSendRequestsToDiscoveredNodes() throws Exception {
+        var discovered = List.of(new StubNode(() -> "{}"), new StubNode(() -> "{}"));
+        nodes.addAll(discovered);
+        var seed = new StubNode(() -> nodesInfo(discovered));
+        nodes.add(seed);
+
+        var listener = new SniffOnFailureListener();
+        try (RestClient client = ElasticsearchConfig.restClientBuilder(hosts(List.of(seed)), listener).build();
+             Sniffer ignored = ElasticsearchConfig.sniffer(client, listener, Duration.ofMinutes(5), Duration.ofMinutes(1))) {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (client.getNodes().size() != 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(2, client.getNodes().size());
+            for (int i = 0; i < 4; i++) {
+                client.performRequest(new Request("GET", "/"));
+            }
+        }
+        discovered.forEach(node -> assertEquals(2, node.requests.get()));
+    }
+
+    private static HttpHost[] hosts(List<StubNode> nodes) {
+        return ElasticsearchConfig.toHttpHosts(nodes.stream()
+                .map(node -> "127.0.0.1:" + node.port())
+                .toArray(String[]::new));
+    }
+
+    // response of GET /_nodes/http listing the nodes as data nodes
+    private static String nodesInfo(List<StubNode> nodes) {
+        return nodes.stream()
+                .map(node -> String.format("\"node-%1$d\":{\"name\":\"node-%1$d\",\"host\":\"127.0.0.1\",\"ip\":\"127.0.0.1\","
+                        + "\"version\":\"7.10.2\",\"roles\":[\"data\",\"ingest\"],\"attributes\":{},"
+                        + "\"http\":{\"bound_address\":[\"127.0.0.1:%1$d\"],\"publish_address\":\"127.0.0.1:%1$d\"}}",
+                        node.port()))
+                .collect(Collectors.joining(",", "{\"nodes\":{", "}}"));
+    }
+
+    private static class StubNode {
+
+        private final HttpServer server;
+        private final int port;
+        private final AtomicInteger requests = new AtomicInteger();
+        private boolean stopped;
+
+        StubNode(Supplier<String> body) {
+            try {
+                server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            server.createContext("/", exchange -> {
+                if (!exchange.getRequestURI().getPath().startsWith("/_nodes")) {
+                    requests.incrementAndGet();
+                }
+                byte[] response = body.get().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            });
+            server.start();
+            // address of a stopped server is not available
+            port = server.getAddress().getPort();
+        }
+
+        int port() {
+            return port;
+        }
+
+        void stop() {
+            if (!stopped) {
+                stopped = true;
+                server.stop(0);
+            }
+        }
+    }
+}
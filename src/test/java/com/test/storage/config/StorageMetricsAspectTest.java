@@ -0,0 +1,54 @@
+package com.test.storage.config;
+
+import com.test.storage.dto.FileSearchRequestDTO;
+import com.test.storage.exception.custom.FileNotFoundException;
+import com.test.storage.service.StorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StorageMetricsAspectTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private StorageService storageService;
+    private StorageService timedStorageService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        storageService = mock(StorageService.class);
+        var proxyFactory = new AspectJProxyFactory(storageService);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new StorageMetricsAspect(meterRegistry));
+        timedStorageService = proxyFactory.getProxy();
+    }
+
+    @Test
+    public void whenServiceCalled_thenTimeItByMethod() {
+        timedStorageService.filteredAndPagedSearch(new FileSearchRequestDTO());
+        timedStorageService.filteredAndPagedSearch(new FileSearchRequestDTO());
+        var timer = meterRegistry.get(StorageMetricsAspect.SERVICE_TIMER)
+                .tag("method", "filteredAndPagedSearch")
+                .tag("exception", "none")
+                .timer();
+        assertEquals(2, timer.count());
+    }
+
+    @Test
+    public void whenServiceThrows_thenTimeItByException() {
+        when(storageService.deleteFileById(anyString(), any())).thenThrow(new FileNotFoundException("id"));
+        assertThrows(FileNotFoundException.class, () -> timedStorageService.deleteFileById("id", null));
+        var timer = meterRegistry.get(StorageMetricsAspect.SERVICE_TIMER)
+                .tag("method", "deleteFileById")
+                .tag("exception", "FileNotFoundException")
+                .timer();
+        assertEquals(1, timer.count());
+    }
+}
@@ -0,0 +1,38 @@
+package com.test.storage.controller;
+
+import com.test.storage.config.ElasticsearchConnectionPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.pool.PoolStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ElasticsearchClientController.class)
+@Import(SimpleMeterRegistry.class)
+public class ElasticsearchClientControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    ElasticsearchConnectionPool connectionPool;
+
+    @Test
+    public void whenPoolStatsRequested_thenReturnThem() throws Exception {
+        when(connectionPool.getTotalStats()).thenReturn(new PoolStats(3, 2, 1, 100));
+        mockMvc.perform(get("/admin/elasticsearch/pool"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.leased").value(3))
+                .andExpect(jsonPath("$.pending").value(2))
+                .andExpect(jsonPath("$.available").value(1))
+                .andExpect(jsonPath("$.max").value(100));
+    }
+}
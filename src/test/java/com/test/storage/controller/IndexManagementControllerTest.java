@@ -0,0 +1,71 @@
+package com.test.storage.controller;
+
+import com.test.storage.dto.BackingIndexDTO;
+import com.test.storage.dto.IndexRolloverResponseDTO;
+import com.test.storage.service.IndexManagementService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(IndexManagementController.class)
+@Import(SimpleMeterRegistry.class)
+public class IndexManagementControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    IndexManagementService indexManagementService;
+
+    @Test
+    public void whenBackingIndicesRequested_thenReturnThem() throws Exception {
+        when(indexManagementService.getBackingIndices()).thenReturn(List.of(
+                new BackingIndexDTO("files-000001", false, 10, Instant.parse("2021-03-01T00:00:00Z")),
+                new BackingIndexDTO("files-000002", true, 3, Instant.parse("2021-04-01T00:00:00Z"))));
+        mockMvc.perform(get("/admin/index"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("files-000001"))
+                .andExpect(jsonPath("$[0].writeIndex").value(false))
+                .andExpect(jsonPath("$[0].documents").value(10))
+                .andExpect(jsonPath("$[1].writeIndex").value(true))
+                .andExpect(jsonPath("$[1].creationDate").value("2021-04-01T00:00:00Z"));
+    }
+
+    @Test
+    public void whenRolloverRequested_thenCheckConditions() throws Exception {
+        when(indexManagementService.rollover(false, false)).thenReturn(new IndexRolloverResponseDTO(
+                "files-000001", "files-000002", true, false, Map.of("[max_docs: 1000]", true)));
+        mockMvc.perform(post("/admin/index/_rollover"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.oldIndex").value("files-000001"))
+                .andExpect(jsonPath("$.newIndex").value("files-000002"))
+                .andExpect(jsonPath("$.rolledOver").value(true))
+                .andExpect(jsonPath("$.conditions['[max_docs: 1000]']").value(true));
+    }
+
+    @Test
+    public void whenForcedDryRunRequested_thenPassFlags() throws Exception {
+        when(indexManagementService.rollover(true, true)).thenReturn(new IndexRolloverResponseDTO(
+                "files-000001", "files-000002", false, true, Map.of()));
+        mockMvc.perform(post("/admin/index/_rollover").param("force", "true").param("dryRun", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rolledOver").value(false))
+                .andExpect(jsonPath("$.dryRun").value(true));
+        verify(indexManagementService).rollover(true, true);
+    }
+}
@@ -1,29 +1,60 @@
 package com.test.storage.controller;
 
+import com.test.storage.dto.BatchTagItemDTO;
+import com.test.storage.dto.BatchTagUpdateResponseDTO;
+import com.test.storage.dto.BatchTaskStatus;
+import com.test.storage.dto.BulkUploadItemDTO;
+import com.test.storage.dto.BulkUploadResponseDTO;
+import com.test.storage.dto.FileFacet;
+import com.test.storage.dto.FileFacetsDTO;
+import com.test.storage.dto.FileSearchRequestDTO;
+import com.test.storage.dto.FileSort;
 import com.test.storage.dto.FilteredPagedSearchResponseDTO;
+import com.test.storage.dto.ProjectedFileDTO;
+import com.test.storage.dto.RefreshMode;
 import com.test.storage.dto.ResponseWithSuccessDTO;
+import com.test.storage.dto.TagCountDTO;
+import com.test.storage.dto.TagMatch;
+import com.test.storage.dto.TotalHitsMode;
 import com.test.storage.dto.UploadFileResponseDTO;
+import com.test.storage.exception.custom.CursorExpiredException;
 import com.test.storage.exception.custom.FileNotFoundException;
 import com.test.storage.exception.custom.TagNotFoundOnFileException;
+import com.test.storage.exception.custom.TagsConcurrentlyModifiedException;
+import com.test.storage.exception.custom.TaskNotFoundException;
+import com.test.storage.exception.custom.WriteQueueFullException;
 import com.test.storage.model.StoredFile;
+import com.test.storage.model.StoredFileField;
+import com.test.storage.service.BatchTagService;
 import com.test.storage.service.StorageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(StorageController.class)
+@Import(SimpleMeterRegistry.class)
 public class StorageControllerTest {
 
     @Autowired
@@ -32,11 +63,17 @@ public class StorageControllerTest {
     @MockBean
     StorageService storageService;
 
+    @MockBean
+    BatchTagService batchTagService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
     @Test
     public void whenUploadValid_thenReturnResponseWithId() throws Exception {
         String id = "id";
         var response = new UploadFileResponseDTO(id);
-        when(storageService.uploadFile(any())).thenReturn(response);
+        when(storageService.uploadFile(any(), any())).thenReturn(response);
         mockMvc.perform(post("/file")
                 .content("{\"name\":\"test.txt\",\"size\": 10}")
                 .contentType(MediaType.APPLICATION_JSON).characterEncoding("utf-8"))
@@ -45,6 +82,28 @@ public class StorageControllerTest {
                 .andExpect(jsonPath("$.id").value(id));
     }
 
+    @Test
+    public void whenRefreshGiven_thenPassItToService() throws Exception {
+        when(storageService.uploadFile(any(), any())).thenReturn(new UploadFileResponseDTO("id"));
+        mockMvc.perform(post("/file")
+                .param("refresh", "wait_for")
+                .content("{\"name\":\"test.txt\",\"size\": 10}")
+                .contentType(MediaType.APPLICATION_JSON).characterEncoding("utf-8"))
+                .andExpect(status().isOk());
+        verify(storageService).uploadFile(any(), eq(RefreshMode.WAIT_FOR));
+    }
+
+    @Test
+    public void whenWriteQueueFull_thenReturnTooManyRequests() throws Exception {
+        when(storageService.uploadFile(any(), any())).thenThrow(new WriteQueueFullException());
+        mockMvc.perform(post("/file")
+                .content("{\"name\":\"test.txt\",\"size\": 10}")
+                .contentType(MediaType.APPLICATION_JSON).characterEncoding("utf-8"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.error").value("too many pending writes, retry later"));
+    }
+
     @Test
     public void whenUploadEmptyFileName_thenReturnErrorResponse() throws Exception {
         mockMvc.perform(post("/file")
@@ -91,7 +150,7 @@ public class StorageControllerTest {
 
     @Test
     public void whenDeleteValidId_thenReturnSuccessResponse() throws Exception {
-        when(storageService.deleteFileById(anyString())).thenReturn(ResponseWithSuccessDTO.getSuccessResponse());
+        when(storageService.deleteFileById(anyString(), any())).thenReturn(ResponseWithSuccessDTO.getSuccessResponse());
         mockMvc.perform(delete("/file/test"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").exists())
@@ -101,7 +160,7 @@ public class StorageControllerTest {
     @Test
     public void whenDeleteNotValidId_thenReturnErrorResponse() throws Exception {
         String id = "test";
-        when(storageService.deleteFileById(anyString())).thenThrow(new FileNotFoundException(id));
+        when(storageService.deleteFileById(anyString(), any())).thenThrow(new FileNotFoundException(id));
         mockMvc.perform(delete("/file/" + id))
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$").exists())
@@ -109,9 +168,19 @@ public class StorageControllerTest {
                 .andExpect(jsonPath("$.error").value("file not found, id: " + id));
     }
 
+    @Test
+    public void whenErrorResponse_thenCountItByExceptionType() throws Exception {
+        when(storageService.deleteFileById(anyString(), any())).thenThrow(new FileNotFoundException("test"));
+        var errors = meterRegistry.counter("storage.errors", "exception", "FileNotFoundException", "status", "404");
+        double before = errors.count();
+        mockMvc.perform(delete("/file/test"))
+                .andExpect(status().isNotFound());
+        assertEquals(before + 1, errors.count());
+    }
+
     @Test
     public void whenAssignTagsValid_thenReturnSuccessResponse() throws Exception {
-        when(storageService.assignTagsToFileById(anyString(), anySet()))
+        when(storageService.assignTagsToFileById(anyString(), anySet(), any()))
                 .thenReturn(ResponseWithSuccessDTO.getSuccessResponse());
         mockMvc.perform(post("/file/test/tags")
                 .content("[1,2,3]")
@@ -123,7 +192,7 @@ public class StorageControllerTest {
 
     @Test
     public void whenRemoveTagsFromFileValid_thenReturnSuccessResponse() throws Exception {
-        when(storageService.deleteTagsFromFileById(anyString(), anySet()))
+        when(storageService.deleteTagsFromFileById(anyString(), anySet(), any()))
                 .thenReturn(ResponseWithSuccessDTO.getSuccessResponse());
         mockMvc.perform(delete("/file/test/tags")
                 .content("[1,2,3]")
@@ -137,7 +206,7 @@ public class StorageControllerTest {
     public void whenRemoveNotValidTags_thenReturnErrorResponse() throws Exception {
         String id = "test";
         var tags = Set.of("tag1", "tag2");
-        when(storageService.deleteTagsFromFileById(anyString(), anySet()))
+        when(storageService.deleteTagsFromFileById(anyString(), anySet(), any()))
                 .thenThrow(new TagNotFoundOnFileException("test", tags));
         mockMvc.perform(delete("/file/" + id + "/tags")
                 .content("[]")
@@ -148,14 +217,235 @@ public class StorageControllerTest {
                 .andExpect(jsonPath("$.error").value("tags: [tag1, tag2] not found on file with id: test"));
     }
 
+    @Test
+    public void whenTagsKeptChanging_thenReturnConflict() throws Exception {
+        when(storageService.deleteTagsFromFileById(anyString(), anySet(), any()))
+                .thenThrow(new TagsConcurrentlyModifiedException("test", Set.of("tag1")));
+        mockMvc.perform(delete("/file/test/tags")
+                .content("[\"tag1\"]")
+                .contentType(MediaType.APPLICATION_JSON).characterEncoding("utf-8"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.error")
+                        .value("tags of file with id: test kept changing while removing [tag1], retry later"));
+    }
+
     @Test
     public void whenFilteredRequestValid_thenReturnFilteredRagedResponseDto() throws Exception {
-        when(storageService.filteredAndPagedSearch(any(), anyInt(), anyInt(), anyString()))
+        when(storageService.filteredAndPagedSearch(any(FileSearchRequestDTO.class)))
                 .thenReturn(new FilteredPagedSearchResponseDTO(5L, new ArrayList<>()));
         mockMvc.perform(get("/file"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").exists())
                 .andExpect(jsonPath("$.total").value(5))
-                .andExpect(jsonPath("$.page").isArray());
+                .andExpect(jsonPath("$.page").isArray())
+                .andExpect(jsonPath("$.cursor").doesNotExist());
+    }
+
+    @Test
+    public void whenFilteredRequestWithParams_thenPassThemToService() throws Exception {
+        when(storageService.filteredAndPagedSearch(any(FileSearchRequestDTO.class)))
+                .thenReturn(new FilteredPagedSearchResponseDTO(5L, new ArrayList<>(), "next", "eq"));
+        mockMvc.perform(get("/file?page=2&size=5&tags=a,b&tagMatch=all&q=test&scroll=true&total=estimate"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").value("next"))
+                .andExpect(jsonPath("$.totalRelation").value("eq"));
+        var captor = ArgumentCaptor.forClass(FileSearchRequestDTO.class);
+        verify(storageService).filteredAndPagedSearch(captor.capture());
+        assertEquals(2, captor.getValue().getPage());
+        assertEquals(5, captor.getValue().getSize());
+        assertEquals(Set.of("a", "b"), captor.getValue().getTags());
+        assertEquals(TagMatch.ALL, captor.getValue().getTagMatch());
+        assertEquals("test", captor.getValue().getQ());
+        assertTrue(captor.getValue().isScroll());
+        assertEquals(TotalHitsMode.ESTIMATE, captor.getValue().getTotal());
+    }
+
+    @Test
+    public void whenFieldsRequested_thenReturnOnlyThem() throws Exception {
+        when(storageService.filteredAndPagedSearch(any(FileSearchRequestDTO.class)))
+                .thenReturn(new FilteredPagedSearchResponseDTO(1L,
+                        List.of(new ProjectedFileDTO(StoredFile.builder().id("id").build()))));
+        mockMvc.perform(get("/file?fields=id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.page[0].id").value("id"))
+                .andExpect(jsonPath("$.page[0].fileName").doesNotExist())
+                .andExpect(jsonPath("$.page[0].tags").doesNotExist());
+        var captor = ArgumentCaptor.forClass(FileSearchRequestDTO.class);
+        verify(storageService).filteredAndPagedSearch(captor.capture());
+        assertEquals(Set.of(StoredFileField.ID), captor.getValue().getFields());
+    }
+
+    @Test
+    public void whenNoFieldsRequested_thenReturnEveryFieldOfPage() throws Exception {
+        when(storageService.filteredAndPagedSearch(any(FileSearchRequestDTO.class)))
+                .thenReturn(new FilteredPagedSearchResponseDTO(1L, List.of(StoredFile.builder().id("id").build())));
+        mockMvc.perform(get("/file"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.page[0].id").value("id"))
+                .andExpect(jsonPath("$.page[0].fileName", nullValue()))
+                .andExpect(jsonPath("$.page[0].tags", nullValue()));
+    }
+
+    @Test
+    public void whenFacetsRequested_thenReturnThem() throws Exception {
+        var facets = new FileFacetsDTO(List.of(new TagCountDTO("text", 3L)), null);
+        when(storageService.filteredAndPagedSearch(any(FileSearchRequestDTO.class)))
+                .thenReturn(new FilteredPagedSearchResponseDTO(3L, List.of(), null, "eq", facets));
+        mockMvc.perform(get("/file?facets=tags"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.facets.tags[0].tag").value("text"))
+                .andExpect(jsonPath("$.facets.tags[0].count").value(3))
+                .andExpect(jsonPath("$.facets.sizes").doesNotExist());
+        var captor = ArgumentCaptor.forClass(FileSearchRequestDTO.class);
+        verify(storageService).filteredAndPagedSearch(captor.capture());
+        assertEquals(Set.of(FileFacet.TAGS), captor.getValue().getFacets());
+    }
+
+    @Test
+    public void whenSizeRangeAndSortRequested_thenPassThem() throws Exception {
+        when(storageService.filteredAndPagedSearch(any(FileSearchRequestDTO.class)))
+                .thenReturn(new FilteredPagedSearchResponseDTO(0L, List.of()));
+        mockMvc.perform(get("/file?minSize=1024&maxSize=2048&sort=size_desc"))
+                .andExpect(status().isOk());
+        var captor = ArgumentCaptor.forClass(FileSearchRequestDTO.class);
+        verify(storageService).filteredAndPagedSearch(captor.capture());
+        assertEquals(1024L, captor.getValue().getMinSize());
+        assertEquals(2048L, captor.getValue().getMaxSize());
+        assertEquals(FileSort.SIZE_DESC, captor.getValue().getSort());
+    }
+
+    @Test
+    public void whenNegativeSizeBound_thenReturnErrorResponse() throws Exception {
+        mockMvc.perform(get("/file?minSize=-1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.error").value("min size must not be less than 0"));
+    }
+
+    @Test
+    public void whenMinSizeAboveMaxSize_thenReturnErrorResponse() throws Exception {
+        mockMvc.perform(get("/file?minSize=2048&maxSize=1024"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.error").value("min size must not be greater than max size"));
+        verifyNoInteractions(storageService);
+    }
+
+    @Test
+    public void whenUnknownFieldRequested_thenReturnErrorResponse() throws Exception {
+        mockMvc.perform(get("/file?fields=fileName,owner"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    public void whenCursorExpired_thenReturnErrorResponse() throws Exception {
+        when(storageService.filteredAndPagedSearch(any(FileSearchRequestDTO.class)))
+                .thenThrow(new CursorExpiredException());
+        mockMvc.perform(get("/file?cursor=expired"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.error").value("cursor is expired or not valid, start paging again"));
+    }
+
+    @Test
+    public void whenFilteredRequestPageNotNumber_thenReturnErrorResponse() throws Exception {
+        mockMvc.perform(get("/file?page=first"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+
+    @Test
+    public void whenBulkUpload_thenReturnResultOfEveryItem() throws Exception {
+        var response = BulkUploadResponseDTO.of(List.of(
+                BulkUploadItemDTO.success(0, "id"),
+                BulkUploadItemDTO.failure(1, "size of file must not be less than 0")));
+        when(storageService.bulkUploadFiles(anyList(), any())).thenReturn(response);
+        mockMvc.perform(post("/file/_bulk")
+                .content("[{\"name\":\"test.txt\",\"size\": 10},{\"name\":\"test\",\"size\": -1}]")
+                .contentType(MediaType.APPLICATION_JSON).characterEncoding("utf-8"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.uploaded").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.items[0].id").value("id"))
+                .andExpect(jsonPath("$.items[1].error").value("size of file must not be less than 0"));
+    }
+
+    @Test
+    public void whenStreamUpload_thenReturnCountersAndErrors() throws Exception {
+        var response = new BulkUploadResponseDTO(1L, 1L,
+                List.of(BulkUploadItemDTO.failure(1, "size of file must not be less than 0")));
+        when(storageService.streamUploadFiles(any(), any())).thenReturn(response);
+        mockMvc.perform(post("/file/_bulk")
+                .content("{\"name\":\"test.txt\",\"size\": 10}\n{\"name\":\"test\",\"size\": -1}\n")
+                .contentType("application/x-ndjson").characterEncoding("utf-8"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.uploaded").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.items[0].index").value(1));
+    }
+
+    @Test
+    public void whenBatchTagUpdateValid_thenReturnResultOfEveryFile() throws Exception {
+        var response = new BatchTagUpdateResponseDTO(null, BatchTaskStatus.COMPLETED, 2L, 1L, 0L, 1L, 0L, null,
+                List.of(new BatchTagItemDTO("a", "updated", null), new BatchTagItemDTO("b", "not_found", null)));
+        when(batchTagService.updateTags(any())).thenReturn(response);
+        mockMvc.perform(post("/file/_tags")
+                .content("{\"ids\":[\"a\",\"b\"],\"add\":[\"archived\"]}")
+                .contentType(MediaType.APPLICATION_JSON).characterEncoding("utf-8"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.items[1].id").value("b"))
+                .andExpect(jsonPath("$.items[1].result").value("not_found"));
+    }
+
+    @Test
+    public void whenBatchTagUpdateWithIdsAndFilter_thenReturnErrorResponse() throws Exception {
+        mockMvc.perform(post("/file/_tags")
+                .content("{\"ids\":[\"a\"],\"filter\":{\"q\":\"test\"},\"add\":[\"archived\"]}")
+                .contentType(MediaType.APPLICATION_JSON).characterEncoding("utf-8"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.error").value("exactly one of ids or filter must be provided"));
+    }
+
+    @Test
+    public void whenBatchTagUpdateWithoutTags_thenReturnErrorResponse() throws Exception {
+        mockMvc.perform(post("/file/_tags")
+                .content("{\"ids\":[\"a\"]}")
+                .contentType(MediaType.APPLICATION_JSON).characterEncoding("utf-8"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("tags to add or remove must be provided"));
+    }
+
+    @Test
+    public void whenBatchTagUpdateWithNullId_thenReturnErrorResponse() throws Exception {
+        mockMvc.perform(post("/file/_tags")
+                .content("{\"ids\":[\"a\",null],\"add\":[\"archived\"]}")
+                .contentType(MediaType.APPLICATION_JSON).characterEncoding("utf-8"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("ids must not contain null"));
+        verifyNoInteractions(batchTagService);
+    }
+
+    @Test
+    public void whenBatchTagUpdateWithInvertedSizeRange_thenReturnErrorResponse() throws Exception {
+        mockMvc.perform(post("/file/_tags")
+                .content("{\"filter\":{\"minSize\":10,\"maxSize\":5},\"add\":[\"archived\"]}")
+                .contentType(MediaType.APPLICATION_JSON).characterEncoding("utf-8"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("min size must not be greater than max size"));
+        verifyNoInteractions(batchTagService);
+    }
+
+    @Test
+    public void whenTagUpdateTaskNotFound_thenReturnErrorResponse() throws Exception {
+        when(batchTagService.getTask(anyString())).thenThrow(new TaskNotFoundException("task"));
+        mockMvc.perform(get("/file/_tags/tasks/task"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.error").value("task not found, id: task"));
     }
 }
@@ -2,7 +2,13 @@ package com.test.storage.controller;
 
 import com.test.storage.model.StoredFile;
 import com.test.storage.repository.StorageRepository;
+import com.test.storage.service.BatchTagService;
+import com.test.storage.service.SearchResultCache;
 import com.test.storage.service.StorageService;
+import com.test.storage.service.StoredFileCache;
+import com.test.storage.service.WriteBehindQueue;
+import com.test.storage.util.FileTypeDetector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -24,7 +30,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(StorageController.class)
-@Import(StorageService.class)
+@Import({StorageService.class, BatchTagService.class, StoredFileCache.class, SearchResultCache.class,
+        WriteBehindQueue.class, FileTypeDetector.class, SimpleMeterRegistry.class})
 public class StorageControllerWithServiceIT {
 
     @MockBean
@@ -41,7 +48,7 @@ public class StorageControllerWithServiceIT {
                 .tags(new LinkedHashSet<>())
                 .id("id")
                 .build();
-        when(storageRepository.save(any())).thenReturn(storedFile);
+        when(storageRepository.index(any(), any())).thenReturn(storedFile.getId());
         mockMvc.perform(post("/file")
                 .content("{\"name\":\"test.txt\",\"size\": 10}")
                 .contentType(MediaType.APPLICATION_JSON).characterEncoding("utf-8"))
@@ -52,7 +59,7 @@ public class StorageControllerWithServiceIT {
 
     @Test
     public void whenDeleteValidId_thenReturnSuccessResponse() throws Exception {
-        doNothing().when(storageRepository).delete(any());
+        doNothing().when(storageRepository).deleteById(anyString(), any());
         when(storageRepository.findById(anyString())).thenReturn(Optional.of(new StoredFile()));
         mockMvc.perform(delete("/file/test"))
                 .andExpect(status().isOk())
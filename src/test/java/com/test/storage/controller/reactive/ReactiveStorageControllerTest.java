@@ -0,0 +1,152 @@
+package com.test.storage.controller.reactive;
+
+import com.test.storage.dto.FileSearchRequestDTO;
+import com.test.storage.dto.FilteredPagedSearchResponseDTO;
+import com.test.storage.dto.RefreshMode;
+import com.test.storage.dto.ResponseWithSuccessDTO;
+import com.test.storage.dto.TotalHitsMode;
+import com.test.storage.dto.UploadFileResponseDTO;
+import com.test.storage.exception.custom.CursorPagingNotSupportedException;
+import com.test.storage.exception.custom.FileNotFoundException;
+import com.test.storage.service.reactive.ReactiveStorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(ReactiveStorageController.class)
+@Import(SimpleMeterRegistry.class)
+@ActiveProfiles("reactive")
+public class ReactiveStorageControllerTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @MockBean
+    ReactiveStorageService storageService;
+
+    @Test
+    public void whenUploadValid_thenReturnResponseWithId() {
+        when(storageService.uploadFile(any(), any())).thenReturn(Mono.just(new UploadFileResponseDTO("id")));
+        webTestClient.post().uri("/file")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"name\":\"test.txt\",\"size\": 10}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.id").isEqualTo("id");
+    }
+
+    @Test
+    public void whenUploadEmptyFileName_thenReturnErrorResponse() {
+        webTestClient.post().uri("/file")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"name\":\"\",\"size\": 10}")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.success").isEqualTo(false)
+                .jsonPath("$.error").isEqualTo("name of file must not be empty");
+    }
+
+    @Test
+    public void whenDeleteNotPresentFile_thenReturnNotFound() {
+        when(storageService.deleteFileById(anyString(), any())).thenReturn(Mono.error(new FileNotFoundException("test")));
+        webTestClient.delete().uri("/file/test")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.success").isEqualTo(false)
+                .jsonPath("$.error").isEqualTo(new FileNotFoundException("test").getMessage());
+    }
+
+    @Test
+    public void whenAssignTags_thenReturnSuccess() {
+        when(storageService.assignTagsToFileById(anyString(), anySet(), any()))
+                .thenReturn(Mono.just(ResponseWithSuccessDTO.getSuccessResponse()));
+        webTestClient.post().uri("/file/test/tags")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[\"tag1\"]")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.success").isEqualTo(true);
+    }
+
+    @Test
+    public void whenFilteredRequestWithParams_thenPassThemToService() {
+        when(storageService.filteredAndPagedSearch(any(FileSearchRequestDTO.class)))
+                .thenReturn(Mono.just(new FilteredPagedSearchResponseDTO(5L, new ArrayList<>())));
+        webTestClient.get().uri("/file?page=2&size=5&tags=a,b&q=test&total=none")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.total").isEqualTo(5)
+                .jsonPath("$.page").isArray();
+        var captor = ArgumentCaptor.forClass(FileSearchRequestDTO.class);
+        verify(storageService).filteredAndPagedSearch(captor.capture());
+        assertEquals(2, captor.getValue().getPage());
+        assertEquals(5, captor.getValue().getSize());
+        assertEquals(Set.of("a", "b"), captor.getValue().getTags());
+        assertEquals(TotalHitsMode.NONE, captor.getValue().getTotal());
+    }
+
+    @Test
+    public void whenCursorRequested_thenReturnErrorResponse() {
+        when(storageService.filteredAndPagedSearch(any(FileSearchRequestDTO.class)))
+                .thenReturn(Mono.error(new CursorPagingNotSupportedException()));
+        webTestClient.get().uri("/file?scroll=true")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.success").isEqualTo(false);
+    }
+
+    @Test
+    public void whenRefreshGiven_thenPassItToService() {
+        when(storageService.uploadFile(any(), any())).thenReturn(Mono.just(new UploadFileResponseDTO("id")));
+        webTestClient.post().uri("/file?refresh=wait_for")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"name\":\"test.txt\",\"size\": 10}")
+                .exchange()
+                .expectStatus().isOk();
+        verify(storageService).uploadFile(any(), eq(RefreshMode.WAIT_FOR));
+    }
+
+    @Test
+    public void whenBulkUploadRequested_thenReturnErrorResponse() {
+        webTestClient.post().uri("/file/_bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"name\":\"test.txt\",\"size\": 10}]")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.success").isEqualTo(false)
+                .jsonPath("$.error").isEqualTo("bulk upload is not supported in reactive mode, use the default mode");
+        verifyNoInteractions(storageService);
+    }
+
+    @Test
+    public void whenBatchTagTaskRequested_thenReturnErrorResponse() {
+        webTestClient.get().uri("/file/_tags/tasks/task")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.success").isEqualTo(false);
+    }
+}
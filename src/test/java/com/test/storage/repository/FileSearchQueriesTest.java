@@ -0,0 +1,178 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFileField;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
+import org.apache.lucene.index.memory.MemoryIndex;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.MatchAllQueryBuilder;
+import org.elasticsearch.index.query.MatchPhraseQueryBuilder;
+import org.elasticsearch.index.query.QueryStringQueryBuilder;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.index.query.TermQueryBuilder;
+import org.elasticsearch.index.query.TermsQueryBuilder;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileSearchQueriesTest {
+
+    @Test
+    public void whenNoFilter_thenMatchAll() {
+        var query = FileSearchQueries.filter(FileQuery.builder().nameFilter("").build(), true);
+        assertTrue(query instanceof MatchAllQueryBuilder);
+    }
+
+    @Test
+    public void whenNameFilterLongerThanGram_thenMatchGramsOfNgramSubfieldAsPhrase() {
+        var query = (BoolQueryBuilder) FileSearchQueries.filter(FileQuery.builder().nameFilter("report").build(), true);
+        var nameQuery = (MatchPhraseQueryBuilder) query.must().get(0);
+        assertEquals("filename.ngram", nameQuery.fieldName());
+        assertEquals("report", nameQuery.value());
+    }
+
+    @Test
+    public void whenGramsOfFilterNotAdjacentInName_thenNameDoesNotMatch() {
+        // same analysis as filename.ngram in files-settings.json
+        Analyzer analyzer = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tokenizer = new NGramTokenizer(3, 3);
+                return new TokenStreamComponents(tokenizer, new LowerCaseFilter(tokenizer));
+            }
+        };
+        var phrase = new org.apache.lucene.util.QueryBuilder(analyzer).createPhraseQuery("filename.ngram", "abab");
+        assertTrue(matches(analyzer, phrase, "x_ABAB.txt"));
+        // has both grams of the filter, aba and bab, but not next to each other
+        assertFalse(matches(analyzer, phrase, "aba_bab.txt"));
+    }
+
+    private static boolean matches(Analyzer analyzer, Query query, String fileName) {
+        var index = new MemoryIndex();
+        index.addField("filename.ngram", fileName, analyzer);
+        return index.search(query) > 0;
+    }
+
+    @Test
+    public void whenNameFilterShorterThanGram_thenUseWildcardQuery() {
+        var query = (BoolQueryBuilder) FileSearchQueries.filter(FileQuery.builder().nameFilter("re").build(), true);
+        var nameQuery = (QueryStringQueryBuilder) query.must().get(0);
+        assertEquals("*re*", nameQuery.queryString());
+    }
+
+    @Test
+    public void whenNgramSubfieldNotMapped_thenUseWildcardQuery() {
+        var query = (BoolQueryBuilder) FileSearchQueries.filter(
+                FileQuery.builder().nameFilter("report").build(), false);
+        var nameQuery = (QueryStringQueryBuilder) query.must().get(0);
+        assertEquals("*report*", nameQuery.queryString());
+    }
+
+    @Test
+    public void whenTagsAndName_thenFilterByTagsAndScoreByName() {
+        var query = (BoolQueryBuilder) FileSearchQueries.filter(FileQuery.builder()
+                .tags(Set.of("a", "b"))
+                .nameFilter("report")
+                .build(), true);
+        assertEquals(1, query.must().size());
+        assertEquals(1, query.filter().size());
+        var tagsQuery = (TermsQueryBuilder) query.filter().get(0);
+        assertEquals("tags", tagsQuery.fieldName());
+        assertEquals(Set.of("a", "b"), Set.copyOf(tagsQuery.values()));
+    }
+
+    @Test
+    public void whenFacetsRequested_thenAggregateInSameSearch() {
+        var source = new SearchSourceBuilder();
+        FileSearchQueries.applyFacets(source, FileQuery.builder().tagsFacet(true).sizeFacet(true).build(), 5);
+        var aggregations = source.aggregations().getAggregatorFactories();
+        assertEquals(2, aggregations.size());
+        var tags = (TermsAggregationBuilder) aggregations.stream()
+                .filter(aggregation -> aggregation.getName().equals(FileSearchQueries.TAGS_FACET))
+                .findFirst().orElseThrow();
+        assertEquals("tags", tags.field());
+        assertEquals(5, tags.size());
+        var sizes = (RangeAggregationBuilder) aggregations.stream()
+                .filter(aggregation -> aggregation.getName().equals(FileSearchQueries.SIZE_FACET))
+                .findFirst().orElseThrow();
+        assertEquals(FileSearchQueries.SIZE_FACET_BOUNDS.length + 1, sizes.ranges().size());
+    }
+
+    @Test
+    public void whenNoFacetsRequested_thenDoNotAggregate() {
+        var source = new SearchSourceBuilder();
+        FileSearchQueries.applyFacets(source, FileQuery.builder().build(), 5);
+        assertNull(source.aggregations());
+    }
+
+    @Test
+    public void whenAllTagsRequired_thenFilterByEveryTag() {
+        var query = (BoolQueryBuilder) FileSearchQueries.filter(FileQuery.builder()
+                .tags(Set.of("a", "b"))
+                .allTags(true)
+                .build(), true);
+        assertTrue(query.must().isEmpty());
+        assertEquals(2, query.filter().size());
+        assertTrue(query.filter().stream().allMatch(clause -> clause instanceof TermQueryBuilder));
+    }
+
+    @Test
+    public void whenSizeBounded_thenFilterBySizeRange() {
+        var query = (BoolQueryBuilder) FileSearchQueries.filter(FileQuery.builder().minSize(10L).build(), true);
+        assertTrue(query.must().isEmpty());
+        var sizeQuery = (RangeQueryBuilder) query.filter().get(0);
+        assertEquals("filesize", sizeQuery.fieldName());
+        assertEquals(10L, sizeQuery.from());
+        assertNull(sizeQuery.to());
+        assertTrue(sizeQuery.includeLower());
+    }
+
+    @Test
+    public void whenSortedByName_thenSortOnKeywordSubfield() {
+        var source = new SearchSourceBuilder();
+        FileSearchQueries.applySort(source, FileQuery.builder()
+                .sortField(StoredFileField.FILENAME)
+                .sortDescending(true)
+                .build());
+        var sort = (FieldSortBuilder) source.sorts().get(0);
+        assertEquals("filename.keyword", sort.getFieldName());
+        assertEquals(SortOrder.DESC, sort.order());
+    }
+
+    @Test
+    public void whenSorted_thenTiesBrokenByNameAndId() {
+        var source = new SearchSourceBuilder();
+        FileSearchQueries.applySort(source, FileQuery.builder()
+                .sortField(StoredFileField.FILESIZE)
+                .sortDescending(true)
+                .build());
+        assertEquals(List.of("filesize", "filename.keyword", "id"), source.sorts().stream()
+                .map(sort -> ((FieldSortBuilder) sort).getFieldName())
+                .collect(Collectors.toList()));
+
+        source = new SearchSourceBuilder();
+        FileSearchQueries.applySort(source, FileQuery.builder().sortField(StoredFileField.FILENAME).build());
+        assertEquals(List.of("filename.keyword", "id"), source.sorts().stream()
+                .map(sort -> ((FieldSortBuilder) sort).getFieldName())
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void whenNotSorted_thenKeepOrderByScore() {
+        var source = new SearchSourceBuilder();
+        FileSearchQueries.applySort(source, FileQuery.builder().build());
+        assertNull(source.sorts());
+    }
+}
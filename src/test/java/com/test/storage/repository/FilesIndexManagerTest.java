@@ -0,0 +1,159 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFile;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.client.GetAliasesResponse;
+import org.elasticsearch.client.IndicesClient;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.core.CountRequest;
+import org.elasticsearch.client.core.CountResponse;
+import org.elasticsearch.client.indices.GetFieldMappingsRequest;
+import org.elasticsearch.client.indices.GetFieldMappingsResponse;
+import org.elasticsearch.client.tasks.TaskSubmissionResponse;
+import org.elasticsearch.cluster.metadata.AliasMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+public class FilesIndexManagerTest {
+
+    private RestHighLevelClient client;
+    private IndicesClient indices;
+    private RestClient lowLevelClient;
+    private FilesIndexManager filesIndexManager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        client = mock(RestHighLevelClient.class);
+        indices = mock(IndicesClient.class);
+        lowLevelClient = mock(RestClient.class);
+        when(client.indices()).thenReturn(indices);
+        when(client.getLowLevelClient()).thenReturn(lowLevelClient);
+        var operations = mock(ElasticsearchOperations.class);
+        when(operations.getIndexCoordinatesFor(StoredFile.class)).thenReturn(IndexCoordinates.of("files"));
+        filesIndexManager = new FilesIndexManager(client, operations);
+
+        var aliases = mock(GetAliasesResponse.class);
+        when(aliases.getAliases()).thenReturn(Map.of("files-000001", Set.<AliasMetadata>of()));
+        when(indices.getAlias(any(GetAliasesRequest.class), any(RequestOptions.class))).thenReturn(aliases);
+        var task = mock(TaskSubmissionResponse.class);
+        when(task.getTask()).thenReturn("node:1");
+        when(client.submitReindexTask(any(), any())).thenReturn(task);
+    }
+
+    @Test
+    public void whenEveryFileReindexed_thenMoveAliasToNewIndex() throws Exception {
+        taskResult("{\"completed\":true,\"response\":{\"total\":3,\"failures\":[]}}");
+        counts(3, 3);
+        var result = filesIndexManager.migrate();
+        assertEquals(List.of("files-000001"), result.getPreviousIndices());
+        assertEquals("files-000002", result.getNewIndex());
+        verify(indices).updateAliases(any(IndicesAliasesRequest.class), any(RequestOptions.class));
+        verify(indices, never()).delete(any(DeleteIndexRequest.class), any(RequestOptions.class));
+    }
+
+    @Test
+    public void whenReindexTaskFailed_thenDeleteNewIndexAndKeepAlias() throws Exception {
+        taskResult("{\"completed\":true,\"error\":{\"type\":\"search_phase_execution_exception\"}}");
+        counts(3, 0);
+        assertThrows(IllegalStateException.class, () -> filesIndexManager.migrate());
+        verifyAbortedMigration();
+    }
+
+    @Test
+    public void whenReindexHasFailures_thenDeleteNewIndexAndKeepAlias() throws Exception {
+        taskResult("{\"completed\":true,\"response\":{\"total\":3,\"failures\":[{\"id\":\"a\",\"status\":400}]}}");
+        counts(3, 2);
+        assertThrows(IllegalStateException.class, () -> filesIndexManager.migrate());
+        verifyAbortedMigration();
+    }
+
+    @Test
+    public void whenFilesMissingFromNewIndex_thenDeleteNewIndexAndKeepAlias() throws Exception {
+        taskResult("{\"completed\":true,\"response\":{\"total\":3,\"failures\":[]}}");
+        counts(3, 2);
+        var e = assertThrows(IllegalStateException.class, () -> filesIndexManager.migrate());
+        assertEquals("2 of 3 files were reindexed to files-000002", e.getMessage());
+        verifyAbortedMigration();
+    }
+
+    @Test
+    public void whenBackingIndicesListed_thenReuseThemUntilMigrated() throws Exception {
+        assertEquals(List.of("files-000001"), filesIndexManager.getBackingIndices());
+        assertEquals(List.of("files-000001"), filesIndexManager.getBackingIndices());
+        verify(indices, times(1)).getAlias(any(GetAliasesRequest.class), any(RequestOptions.class));
+
+        taskResult("{\"completed\":true,\"response\":{\"total\":3,\"failures\":[]}}");
+        counts(3, 3);
+        filesIndexManager.migrate();
+        var migrated = mock(GetAliasesResponse.class);
+        when(migrated.getAliases()).thenReturn(Map.of("files-000002", Set.<AliasMetadata>of()));
+        when(indices.getAlias(any(GetAliasesRequest.class), any(RequestOptions.class))).thenReturn(migrated);
+        assertEquals(List.of("files-000002"), filesIndexManager.getBackingIndices());
+    }
+
+    @Test
+    public void whenIndexPredatesNgramSubfield_thenNotMappedUntilMigrated() throws Exception {
+        fieldMappings(Map.of("files", Map.of()));
+        assertFalse(filesIndexManager.isNameNgramMapped());
+        assertFalse(filesIndexManager.isNameNgramMapped());
+        verify(indices, times(1)).getFieldMapping(any(GetFieldMappingsRequest.class), any(RequestOptions.class));
+
+        taskResult("{\"completed\":true,\"response\":{\"total\":3,\"failures\":[]}}");
+        counts(3, 3);
+        filesIndexManager.migrate();
+        fieldMappings(Map.of("files-000002",
+                Map.of(FileSearchQueries.NAME_NGRAM_FIELD, mock(GetFieldMappingsResponse.FieldMappingMetadata.class))));
+        assertTrue(filesIndexManager.isNameNgramMapped());
+    }
+
+    private void verifyAbortedMigration() throws IOException {
+        verify(indices, never()).updateAliases(any(IndicesAliasesRequest.class), any(RequestOptions.class));
+        verify(indices).delete(argThat(request -> List.of(request.indices()).equals(List.of("files-000002"))),
+                any(RequestOptions.class));
+    }
+
+    private void taskResult(String json) throws IOException {
+        var response = mock(Response.class);
+        when(response.getEntity()).thenReturn(new StringEntity(json, ContentType.APPLICATION_JSON));
+        when(lowLevelClient.performRequest(any(Request.class))).thenReturn(response);
+    }
+
+    private void fieldMappings(Map<String, Map<String, GetFieldMappingsResponse.FieldMappingMetadata>> mappings)
+            throws IOException {
+        var response = mock(GetFieldMappingsResponse.class);
+        when(response.mappings()).thenReturn(mappings);
+        when(indices.getFieldMapping(any(GetFieldMappingsRequest.class), any(RequestOptions.class)))
+                .thenReturn(response);
+    }
+
+    private void counts(long source, long migrated) throws IOException {
+        var sourceCount = mock(CountResponse.class);
+        when(sourceCount.getCount()).thenReturn(source);
+        var migratedCount = mock(CountResponse.class);
+        when(migratedCount.getCount()).thenReturn(migrated);
+        when(client.count(any(CountRequest.class), any(RequestOptions.class))).thenAnswer(invocation -> {
+            CountRequest request = invocation.getArgument(0);
+            return List.of(request.indices()).equals(List.of("files")) ? sourceCount : migratedCount;
+        });
+    }
+}
@@ -0,0 +1,168 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFile;
+import com.test.storage.model.StoredFileField;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryStorageEngineTest {
+
+    private InMemoryStorageEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        engine = new InMemoryStorageEngine(Duration.ofMinutes(1));
+        engine.index(file("1", "Report.txt", 10L, "Text", "work"), RefreshPolicy.NONE);
+        engine.index(file("2", "song.mp3", 2048L, "audio"), RefreshPolicy.NONE);
+        engine.index(file("3", "report.pdf", 5L << 20, "work"), RefreshPolicy.NONE);
+        engine.index(file("4", "notes", null), RefreshPolicy.NONE);
+    }
+
+    @Test
+    public void whenAnyTag_thenFilesHavingAnyOfThemIgnoringCase() {
+        assertEquals(List.of("1", "2"), ids(FileQuery.builder().tags(Set.of("text", "AUDIO")).build()));
+    }
+
+    @Test
+    public void whenAllTags_thenFilesHavingAllOfThem() {
+        assertEquals(List.of("1"), ids(FileQuery.builder().tags(Set.of("text", "work")).allTags(true).build()));
+    }
+
+    @Test
+    public void whenNameFilter_thenFilesContainingItIgnoringCase() {
+        assertEquals(List.of("1", "3"), ids(FileQuery.builder().nameFilter("REPORT").build()));
+        assertEquals(List.of("2"), ids(FileQuery.builder().nameFilter("mp").build()));
+        assertEquals(List.of(), ids(FileQuery.builder().nameFilter("report.mp3").build()));
+    }
+
+    @Test
+    public void whenSizeRange_thenBothBoundsInclusiveAndFilesWithoutSizeExcluded() {
+        assertEquals(List.of("1", "2"), ids(FileQuery.builder().minSize(10L).maxSize(2048L).build()));
+        assertEquals(List.of("1", "2", "3"), ids(FileQuery.builder().minSize(0L).build()));
+    }
+
+    @Test
+    public void whenSortedBySize_thenFilesWithoutSizeLast() {
+        assertEquals(List.of("3", "2", "1", "4"), ids(FileQuery.builder()
+                .sortField(StoredFileField.FILESIZE)
+                .sortDescending(true)
+                .build()));
+    }
+
+    @Test
+    public void whenPaged_thenTotalOfAllMatchingFiles() {
+        var query = FileQuery.builder().sortField(StoredFileField.FILENAME).build();
+        var result = engine.search(query, PageRequest.of(1, 2), FileSearchQueries.TRACK_TOTAL_HITS_ACCURATE);
+        assertEquals(4L, result.getTotal());
+        assertTrue(result.isTotalExact());
+        assertEquals(List.of("3", "2"), result.getFiles().stream().map(StoredFile::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void whenTotalAboveTrackedHits_thenLowerBound() {
+        var result = engine.search(FileQuery.builder().build(), PageRequest.of(0, 1), 2);
+        assertEquals(2L, result.getTotal());
+        assertFalse(result.isTotalExact());
+    }
+
+    @Test
+    public void whenFieldsRequested_thenOnlyTheyAreReturned() {
+        var query = FileQuery.builder().nameFilter("song").fields(Set.of(StoredFileField.FILESIZE)).build();
+        var result = engine.search(query, PageRequest.of(0, 10), FileSearchQueries.TRACK_TOTAL_HITS_ACCURATE);
+        assertTrue(result.isProjected());
+        var file = result.getFiles().get(0);
+        assertEquals("2", file.getId());
+        assertEquals(2048L, file.getFileSize());
+        assertNull(file.getFileName());
+        assertNull(file.getTags());
+    }
+
+    @Test
+    public void whenFacetsRequested_thenCountsOfMatchingFiles() {
+        var query = FileQuery.builder().minSize(0L).tagsFacet(true).sizeFacet(true).build();
+        var facets = engine.search(query, PageRequest.of(0, 1), FileSearchQueries.TRACK_TOTAL_HITS_ACCURATE)
+                .getFacets();
+        assertEquals(List.of("work", "audio", "text"), new ArrayList<>(facets.getTags().keySet()));
+        assertEquals(2L, facets.getTags().get("work"));
+        var sizes = facets.getSizes();
+        assertEquals(FileSearchQueries.SIZE_FACET_BOUNDS.length + 1, sizes.size());
+        assertEquals(1L, sizes.get(0).getCount());
+        assertEquals(1L, sizes.get(1).getCount());
+        assertEquals(1L, sizes.get(2).getCount());
+    }
+
+    @Test
+    public void whenScrolled_thenEveryFileOnceAndNoCursorAfterLastPage() {
+        var query = FileQuery.builder().sortField(StoredFileField.FILESIZE).build();
+        var page = engine.startScroll(query, 3);
+        List<String> ids = new ArrayList<>();
+        page.getFiles().forEach(file -> ids.add(file.getId()));
+        assertNotNull(page.getCursor());
+        page = engine.continueScroll(page.getCursor()).orElseThrow();
+        page.getFiles().forEach(file -> ids.add(file.getId()));
+        assertNull(page.getCursor());
+        assertEquals(List.of("1", "2", "3", "4"), ids);
+    }
+
+    @Test
+    public void whenScrollUnknown_thenEmpty() {
+        assertTrue(engine.continueScroll("missing").isEmpty());
+    }
+
+    @Test
+    public void whenTagsChanged_thenIndexFollows() {
+        assertEquals(UpdateOutcome.UPDATED, engine.addTags("4", Set.of("draft"), RefreshPolicy.NONE));
+        assertEquals(UpdateOutcome.NOOP, engine.addTags("4", Set.of("draft"), RefreshPolicy.NONE));
+        assertEquals(List.of("4"), ids(FileQuery.builder().tags(Set.of("draft")).build()));
+
+        assertEquals(UpdateOutcome.NOOP, engine.removeTags("4", Set.of("draft", "missing"), RefreshPolicy.NONE));
+        assertEquals(UpdateOutcome.UPDATED, engine.removeTags("4", Set.of("draft"), RefreshPolicy.NONE));
+        assertEquals(List.of(), ids(FileQuery.builder().tags(Set.of("draft")).build()));
+        assertEquals(UpdateOutcome.NOT_FOUND, engine.addTags("5", Set.of("draft"), RefreshPolicy.NONE));
+    }
+
+    @Test
+    public void whenFileReplacedOrDeleted_thenIndexFollows() {
+        engine.index(file("2", "movie.avi", 1L, "video"), RefreshPolicy.NONE);
+        assertEquals(List.of(), ids(FileQuery.builder().nameFilter("song").build()));
+        assertEquals(List.of("2"), ids(FileQuery.builder().tags(Set.of("video")).nameFilter("movie").build()));
+
+        engine.deleteById("2", RefreshPolicy.NONE);
+        assertTrue(engine.findById("2").isEmpty());
+        assertEquals(List.of(), ids(FileQuery.builder().tags(Set.of("video")).build()));
+    }
+
+    @Test
+    public void whenBulkWrite_thenUpdateOfMissingFileFails() {
+        var results = engine.bulkWrite(List.of(
+                FileWrite.updateTags("1", Set.of("draft"), Set.of("work")),
+                FileWrite.updateTags("5", Set.of("draft"), Set.of()),
+                FileWrite.delete("3")));
+        assertFalse(results.get(0).isFailed());
+        assertTrue(results.get(1).isFailed());
+        assertFalse(results.get(2).isFailed());
+        assertEquals(Set.of("Text", "draft"), engine.findById("1").orElseThrow().getTags());
+        assertTrue(engine.findById("3").isEmpty());
+    }
+
+    private List<String> ids(FileQuery query) {
+        return engine.search(query, PageRequest.of(0, 10), FileSearchQueries.TRACK_TOTAL_HITS_ACCURATE)
+                .getFiles().stream()
+                .map(StoredFile::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static StoredFile file(String id, String name, Long size, String... tags) {
+        return StoredFile.builder().id(id).fileName(name).fileSize(size).tags(Set.of(tags)).build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.test.storage.repository;
+
+import com.test.storage.repository.reactive.InMemoryReactiveStorageRepository;
+import com.test.storage.repository.reactive.ReactiveStorageRepository;
+import com.test.storage.service.StorageService;
+import com.test.storage.service.reactive.ReactiveStorageService;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts the whole app with the repositories of every profile, none of them connects to Elasticsearch on startup
+ * once the index initialization is off.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = "storage.index.initialize=false")
+public class StorageEngineContextTest {
+
+    @Autowired
+    ApplicationContext context;
+
+    @Test
+    public void whenDefaultProfile_thenRepositoryIsTheOnlyEngine() {
+        assertEquals(1, context.getBeanNamesForType(StorageEngine.class).length);
+        assertTrue(context.getBean(StorageEngine.class) instanceof StorageRepository);
+        assertNotNull(context.getBean(StorageService.class));
+    }
+
+    @Nested
+    @ActiveProfiles("reactive")
+    class Reactive {
+
+        @Autowired
+        ApplicationContext context;
+
+        @Test
+        public void whenReactiveProfile_thenRepositoryIsTheOnlyEngine() {
+            assertEquals(1, context.getBeanNamesForType(StorageEngine.class).length);
+            assertTrue(context.getBean(StorageEngine.class) instanceof StorageRepository);
+            assertNotNull(context.getBean(StorageService.class));
+        }
+    }
+
+    @Nested
+    @ActiveProfiles("in-memory")
+    class InMemory {
+
+        @Autowired
+        ApplicationContext context;
+
+        @Test
+        public void whenInMemoryProfile_thenNoElasticsearchRepository() {
+            assertEquals(0, context.getBeanNamesForType(StorageRepository.class).length);
+            assertTrue(context.getBean(StorageEngine.class) instanceof InMemoryStorageEngine);
+            assertNotNull(context.getBean(StorageService.class));
+        }
+    }
+
+    @Nested
+    @ActiveProfiles({"reactive", "in-memory"})
+    class ReactiveInMemory {
+
+        @Autowired
+        ApplicationContext context;
+
+        @Test
+        public void whenReactiveInMemoryProfile_thenNoElasticsearchRepository() {
+            assertEquals(0, context.getBeanNamesForType(StorageRepository.class).length);
+            assertTrue(context.getBean(ReactiveStorageRepository.class) instanceof InMemoryReactiveStorageRepository);
+            assertNotNull(context.getBean(ReactiveStorageService.class));
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.test.storage.repository;
+
+import com.test.storage.model.StoredFile;
+import com.test.storage.model.StoredFileField;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.index.engine.DocumentMissingException;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Writes and reads by id of files in a rolled over backing index, with the client mocked.
+ * files-000002 is the write index of the alias, files-000001 the previous backing index.
+ */
+public class StorageRepositoryCustomImplTest {
+
+    private RestHighLevelClient client;
+    private ElasticsearchConverter converter;
+    private FilesIndexManager filesIndexManager;
+    private StorageRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        client = mock(RestHighLevelClient.class);
+        converter = mock(ElasticsearchConverter.class);
+        var operations = mock(ElasticsearchOperations.class);
+        when(operations.getIndexCoordinatesFor(StoredFile.class)).thenReturn(IndexCoordinates.of("files"));
+        when(operations.getElasticsearchConverter()).thenReturn(converter);
+        filesIndexManager = mock(FilesIndexManager.class);
+        when(filesIndexManager.getBackingIndices()).thenReturn(List.of("files-000001", "files-000002"));
+        when(filesIndexManager.refreshBackingIndices()).thenReturn(List.of("files-000001", "files-000002"));
+        repository = new StorageRepositoryCustomImpl(client, operations, filesIndexManager);
+    }
+
+    @Test
+    public void whenFileInRolledOverIndex_thenRetryDeleteOnIt() throws IOException {
+        var notFound = mock(DeleteResponse.class);
+        when(notFound.getResult()).thenReturn(DocWriteResponse.Result.NOT_FOUND);
+        var deleted = mock(DeleteResponse.class);
+        when(deleted.getResult()).thenReturn(DocWriteResponse.Result.DELETED);
+        List<String> indices = new ArrayList<>();
+        when(client.delete(any(DeleteRequest.class), any(RequestOptions.class))).thenAnswer(invocation -> {
+            indices.add(invocation.<DeleteRequest>getArgument(0).index());
+            return indices.size() == 1 ? notFound : deleted;
+        });
+        var items = new MultiGetItemResponse[]{found("files-000001", "a"), missing("files-000002", "a")};
+        when(client.mget(any(MultiGetRequest.class), any(RequestOptions.class))).thenReturn(new MultiGetResponse(items));
+
+        repository.deleteById("a", RefreshPolicy.NONE);
+        assertEquals(List.of("files", "files-000001"), indices);
+    }
+
+    @Test
+    public void whenFileInRolledOverIndex_thenRetryTagUpdateOnIt() throws IOException {
+        var updated = mock(UpdateResponse.class);
+        when(updated.getResult()).thenReturn(DocWriteResponse.Result.UPDATED);
+        List<String> indices = new ArrayList<>();
+        when(client.update(any(UpdateRequest.class), any(RequestOptions.class))).thenAnswer(invocation -> {
+            indices.add(invocation.<UpdateRequest>getArgument(0).index());
+            if (indices.size() == 1) {
+                throw new ElasticsearchStatusException("document missing", RestStatus.NOT_FOUND);
+            }
+            return updated;
+        });
+        var items = new MultiGetItemResponse[]{found("files-000001", "a"), missing("files-000002", "a")};
+        when(client.mget(any(MultiGetRequest.class), any(RequestOptions.class))).thenReturn(new MultiGetResponse(items));
+
+        assertEquals(UpdateOutcome.UPDATED, repository.addTags("a", Set.of("x"), RefreshPolicy.NONE));
+        assertEquals(List.of("files", "files-000001"), indices);
+    }
+
+    @Test
+    public void whenIndexedWithoutId_thenGenerateItAndCopyItToSortedField() throws IOException {
+        List<IndexRequest> requests = new ArrayList<>();
+        when(client.index(any(IndexRequest.class), any(RequestOptions.class))).thenAnswer(invocation -> {
+            IndexRequest request = invocation.getArgument(0);
+            requests.add(request);
+            var response = mock(IndexResponse.class);
+            when(response.getId()).thenReturn(request.id());
+            return response;
+        });
+
+        String id = repository.index(StoredFile.builder().fileName("a.txt").build(), RefreshPolicy.NONE);
+        assertNotNull(id);
+        assertEquals(id, requests.get(0).id());
+        assertEquals(id, requests.get(0).sourceAsMap().get("id"));
+    }
+
+    @Test
+    public void whenFileMissingFromEveryIndex_thenNotFoundWithoutRetry() throws IOException {
+        when(client.update(any(UpdateRequest.class), any(RequestOptions.class)))
+                .thenThrow(new ElasticsearchStatusException("document missing", RestStatus.NOT_FOUND));
+        var items = new MultiGetItemResponse[]{missing("files-000001", "a"), missing("files-000002", "a")};
+        when(client.mget(any(MultiGetRequest.class), any(RequestOptions.class))).thenReturn(new MultiGetResponse(items));
+
+        assertEquals(UpdateOutcome.NOT_FOUND, repository.removeTags("a", Set.of("x"), RefreshPolicy.NONE));
+        verify(client, times(1)).update(any(UpdateRequest.class), any(RequestOptions.class));
+    }
+
+    @Test
+    public void whenIndexDeletedDuringRead_thenFindFileInOtherIndex() throws IOException {
+        var items = new MultiGetItemResponse[]{indexDeleted("files-000001", "a"), found("files-000002", "a")};
+        when(client.mget(any(MultiGetRequest.class), any(RequestOptions.class))).thenReturn(new MultiGetResponse(items));
+        when(converter.read(eq(StoredFile.class), any())).thenReturn(StoredFile.builder().fileName("a.txt").build());
+
+        var file = repository.findById("a").orElseThrow();
+        assertEquals("a", file.getId());
+        assertEquals("a.txt", file.getFileName());
+    }
+
+    @Test
+    public void whenIndexDeletedAndFileMissingElsewhere_thenNotFound() throws IOException {
+        var items = new MultiGetItemResponse[]{indexDeleted("files-000001", "a"), missing("files-000002", "a")};
+        when(client.mget(any(MultiGetRequest.class), any(RequestOptions.class))).thenReturn(new MultiGetResponse(items));
+        assertTrue(repository.findById("a").isEmpty());
+    }
+
+    @Test
+    public void whenFileFoundInListedIndices_thenDontListThemAgain() throws IOException {
+        var items = new MultiGetItemResponse[]{missing("files-000001", "a"), found("files-000002", "a")};
+        when(client.mget(any(MultiGetRequest.class), any(RequestOptions.class))).thenReturn(new MultiGetResponse(items));
+        when(converter.read(eq(StoredFile.class), any())).thenReturn(StoredFile.builder().fileName("a.txt").build());
+
+        assertTrue(repository.findById("a").isPresent());
+        verify(filesIndexManager, never()).refreshBackingIndices();
+    }
+
+    @Test
+    public void whenRolledOverByOtherInstance_thenListIndicesAgainAndFindFileInNewOne() throws IOException {
+        when(filesIndexManager.refreshBackingIndices())
+                .thenReturn(List.of("files-000001", "files-000002", "files-000003"));
+        var listed = new MultiGetItemResponse[]{missing("files-000001", "a"), missing("files-000002", "a")};
+        var rolledOver = new MultiGetItemResponse[]{found("files-000003", "a")};
+        List<List<String>> requestedIndices = new ArrayList<>();
+        when(client.mget(any(MultiGetRequest.class), any(RequestOptions.class))).thenAnswer(invocation -> {
+            requestedIndices.add(invocation.<MultiGetRequest>getArgument(0).getItems().stream()
+                    .map(MultiGetRequest.Item::index)
+                    .collect(Collectors.toList()));
+            return new MultiGetResponse(requestedIndices.size() == 1 ? listed : rolledOver);
+        });
+        when(converter.read(eq(StoredFile.class), any())).thenReturn(StoredFile.builder().fileName("a.txt").build());
+
+        assertEquals("a", repository.findById("a").orElseThrow().getId());
+        assertEquals(List.of(List.of("files-000001", "files-000002"), List.of("files-000003")), requestedIndices);
+    }
+
+    @Test
+    public void whenBulkUpdateMissesRolledOverFile_thenRetryItAndKeepItsPosition() throws IOException {
+        var first = new BulkItemResponse[]{
+                updated(0, "a"),
+                documentMissing(1, "files", "b"),
+                documentMissing(2, "files", "c")};
+        // the retry has only b, at position 0 of its own request
+        var retry = new BulkItemResponse[]{updated(0, "b")};
+        List<BulkRequest> bulks = new ArrayList<>();
+        when(client.bulk(any(BulkRequest.class), any(RequestOptions.class))).thenAnswer(invocation -> {
+            bulks.add(invocation.getArgument(0));
+            return new BulkResponse(bulks.size() == 1 ? first : retry, 1);
+        });
+        var items = new MultiGetItemResponse[]{
+                found("files-000001", "b"), missing("files-000002", "b"),
+                missing("files-000001", "c"), missing("files-000002", "c")};
+        when(client.mget(any(MultiGetRequest.class), any(RequestOptions.class))).thenReturn(new MultiGetResponse(items));
+
+        var results = repository.bulkWrite(List.of(
+                FileWrite.updateTags("a", Set.of("x"), Set.of()),
+                FileWrite.updateTags("b", Set.of("x"), Set.of()),
+                FileWrite.updateTags("c", Set.of("x"), Set.of())));
+
+        assertEquals(2, bulks.size());
+        assertEquals(List.of("files-000001"), bulks.get(1).requests().stream()
+                .map(DocWriteRequest::index)
+                .collect(Collectors.toList()));
+        assertEquals(List.of(0L, 1L, 2L), results.stream().map(BulkItemResult::getOrdinal).collect(Collectors.toList()));
+        assertFalse(results.get(0).isFailed());
+        assertFalse(results.get(1).isFailed());
+        assertEquals("b", results.get(1).getId());
+        // missing from every backing index, not retried
+        assertTrue(results.get(2).isFailed());
+    }
+
+    @Test
+    public void whenScrollPageShorterThanFirst_thenNoCursorAndScrollCleared() throws IOException {
+        ReflectionTestUtils.setField(repository, "scrollKeepAlive", Duration.ofMinutes(1));
+        var first = searchResponse("scroll-1", "a", "b");
+        when(client.search(any(SearchRequest.class), any(RequestOptions.class))).thenReturn(first);
+        var last = searchResponse("scroll-2", "c");
+        List<String> scrollIds = new ArrayList<>();
+        when(client.scroll(any(SearchScrollRequest.class), any(RequestOptions.class))).thenAnswer(invocation -> {
+            scrollIds.add(invocation.<SearchScrollRequest>getArgument(0).scrollId());
+            return last;
+        });
+
+        var page = repository.startScroll(FileQuery.builder().build(), 2);
+        assertEquals("2:scroll-1", page.getCursor());
+        page = repository.continueScroll(page.getCursor()).orElseThrow();
+        assertEquals(List.of("scroll-1"), scrollIds);
+        assertEquals(List.of("c"), page.getFiles().stream().map(StoredFile::getId).collect(Collectors.toList()));
+        assertNull(page.getCursor());
+        verify(client).clearScroll(argThat(request -> request.getScrollIds().equals(List.of("scroll-2"))),
+                any(RequestOptions.class));
+    }
+
+    @Test
+    public void whenProjectedScrollContinued_thenNextPageStillProjected() throws IOException {
+        ReflectionTestUtils.setField(repository, "scrollKeepAlive", Duration.ofMinutes(1));
+        var first = searchResponse("scroll-1", "a", "b");
+        when(client.search(any(SearchRequest.class), any(RequestOptions.class))).thenReturn(first);
+        var next = searchResponse("scroll-2", "c", "d");
+        List<String> scrollIds = new ArrayList<>();
+        when(client.scroll(any(SearchScrollRequest.class), any(RequestOptions.class))).thenAnswer(invocation -> {
+            scrollIds.add(invocation.<SearchScrollRequest>getArgument(0).scrollId());
+            return next;
+        });
+
+        var page = repository.startScroll(FileQuery.builder().fields(Set.of(StoredFileField.ID)).build(), 2);
+        assertTrue(page.isProjected());
+        assertEquals("2p:scroll-1", page.getCursor());
+        page = repository.continueScroll(page.getCursor()).orElseThrow();
+        assertEquals(List.of("scroll-1"), scrollIds);
+        assertTrue(page.isProjected());
+        assertEquals("2p:scroll-2", page.getCursor());
+    }
+
+    @Test
+    public void whenCursorWithoutPageSize_thenExpired() throws IOException {
+        assertTrue(repository.continueScroll("scroll-1").isEmpty());
+        assertTrue(repository.continueScroll("0:scroll-1").isEmpty());
+        verify(client, never()).scroll(any(SearchScrollRequest.class), any(RequestOptions.class));
+    }
+
+    private static MultiGetItemResponse found(String index, String id) {
+        var response = getResponse(index, id, true);
+        when(response.getSourceAsMap()).thenReturn(Map.of("filename", "a.txt"));
+        return new MultiGetItemResponse(response, null);
+    }
+
+    private static MultiGetItemResponse missing(String index, String id) {
+        return new MultiGetItemResponse(getResponse(index, id, false), null);
+    }
+
+    // index deleted by a concurrent migration after the backing indices were listed
+    private static MultiGetItemResponse indexDeleted(String index, String id) {
+        return new MultiGetItemResponse(null,
+                new MultiGetResponse.Failure(index, "_doc", id, new IndexNotFoundException(index)));
+    }
+
+    private static GetResponse getResponse(String index, String id, boolean exists) {
+        var response = mock(GetResponse.class);
+        when(response.getIndex()).thenReturn(index);
+        when(response.getId()).thenReturn(id);
+        when(response.isExists()).thenReturn(exists);
+        return response;
+    }
+
+    private static SearchResponse searchResponse(String scrollId, String... ids) {
+        SearchHit[] hits = new SearchHit[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            hits[i] = mock(SearchHit.class);
+            when(hits[i].getId()).thenReturn(ids[i]);
+        }
+        var searchHits = mock(SearchHits.class);
+        when(searchHits.getHits()).thenReturn(hits);
+        when(searchHits.getTotalHits()).thenReturn(new TotalHits(3, TotalHits.Relation.EQUAL_TO));
+        var response = mock(SearchResponse.class);
+        when(response.getScrollId()).thenReturn(scrollId);
+        when(response.getHits()).thenReturn(searchHits);
+        return response;
+    }
+
+    private static BulkItemResponse updated(int itemId, String id) {
+        var response = mock(UpdateResponse.class);
+        when(response.getId()).thenReturn(id);
+        when(response.getResult()).thenReturn(DocWriteResponse.Result.UPDATED);
+        return new BulkItemResponse(itemId, DocWriteRequest.OpType.UPDATE, response);
+    }
+
+    private static BulkItemResponse documentMissing(int itemId, String index, String id) {
+        return new BulkItemResponse(itemId, DocWriteRequest.OpType.UPDATE, new BulkItemResponse.Failure(index, "_doc", id,
+                new DocumentMissingException(new ShardId(index, "_na_", 0), "_doc", id)));
+    }
+}
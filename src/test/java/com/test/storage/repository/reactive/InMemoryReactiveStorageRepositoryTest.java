@@ -0,0 +1,53 @@
+package com.test.storage.repository.reactive;
+
+import com.test.storage.model.StoredFile;
+import com.test.storage.repository.InMemoryStorageEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryReactiveStorageRepositoryTest {
+
+    private InMemoryReactiveStorageRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        repository = new InMemoryReactiveStorageRepository(new InMemoryStorageEngine(Duration.ofMinutes(1)));
+        repository.saveAll(List.of(
+                StoredFile.builder().fileName("b.txt").fileSize(10L).build(),
+                StoredFile.builder().fileName("a.txt").fileSize(20L).build(),
+                StoredFile.builder().fileName("c.txt").build(),
+                StoredFile.builder().fileName("a.txt").fileSize(5L).build())).blockLast();
+    }
+
+    @Test
+    public void whenSortedBySize_thenFilesWithoutSizeComeLast() {
+        assertEquals(List.of(20L, 10L, 5L), sizes(repository.findAll(Sort.by(Sort.Direction.DESC, "fileSize"))
+                .collectList().block()).subList(0, 3));
+        assertEquals("c.txt", repository.findAll(Sort.by("fileSize")).blockLast().getFileName());
+    }
+
+    @Test
+    public void whenSortedByNameAndSize_thenTiesOrderedBySize() {
+        var files = repository.findAll(Sort.by("fileName").and(Sort.by(Sort.Direction.DESC, "fileSize")))
+                .collectList().block();
+        assertEquals(List.of("a.txt", "a.txt", "b.txt", "c.txt"),
+                files.stream().map(StoredFile::getFileName).collect(Collectors.toList()));
+        assertEquals(List.of(20L, 5L), sizes(files).subList(0, 2));
+    }
+
+    @Test
+    public void whenSortedByUnknownProperty_thenFail() {
+        assertThrows(IllegalArgumentException.class, () -> repository.findAll(Sort.by("tags")).collectList().block());
+    }
+
+    private static List<Long> sizes(List<StoredFile> files) {
+        return files.stream().map(StoredFile::getFileSize).collect(Collectors.toList());
+    }
+}
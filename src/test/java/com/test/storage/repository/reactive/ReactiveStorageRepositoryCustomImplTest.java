@@ -0,0 +1,122 @@
+package com.test.storage.repository.reactive;
+
+import com.test.storage.model.StoredFile;
+import com.test.storage.repository.FilesIndexManager;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.index.get.GetResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.client.reactive.ReactiveElasticsearchClient;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Reads and deletes by id of files in backing indices of the files alias, with the client mocked.
+ * files-000002 is the write index of the alias, files-000001 the previous backing index.
+ */
+public class ReactiveStorageRepositoryCustomImplTest {
+
+    private ReactiveElasticsearchClient client;
+    private ElasticsearchConverter converter;
+    private FilesIndexManager filesIndexManager;
+    private ReactiveStorageRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        client = mock(ReactiveElasticsearchClient.class);
+        converter = mock(ElasticsearchConverter.class);
+        var operations = mock(ReactiveElasticsearchOperations.class);
+        when(operations.getIndexCoordinatesFor(StoredFile.class)).thenReturn(IndexCoordinates.of("files"));
+        when(operations.getElasticsearchConverter()).thenReturn(converter);
+        filesIndexManager = mock(FilesIndexManager.class);
+        when(filesIndexManager.getBackingIndices()).thenReturn(List.of("files-000001", "files-000002"));
+        when(filesIndexManager.refreshBackingIndices()).thenReturn(List.of("files-000001", "files-000002"));
+        repository = new ReactiveStorageRepositoryCustomImpl(client, filesIndexManager, operations);
+    }
+
+    @Test
+    public void whenFileJustUploaded_thenFindItWithoutSearch() {
+        StoredFile file = StoredFile.builder().fileName("a.txt").build();
+        when(converter.read(eq(StoredFile.class), any(Document.class))).thenReturn(file);
+        List<MultiGetRequest> requests = new ArrayList<>();
+        GetResult result = found("files-000002", "a");
+        when(client.multiGet(any(MultiGetRequest.class))).thenAnswer(invocation -> {
+            requests.add(invocation.getArgument(0));
+            return Flux.just(result);
+        });
+
+        assertSame(file, repository.findById("a").block());
+        assertEquals("a", file.getId());
+        assertEquals(List.of("files-000001", "files-000002"), requests.get(0).getItems().stream()
+                .map(MultiGetRequest.Item::index)
+                .collect(Collectors.toList()));
+        verify(client, never()).search(any(SearchRequest.class));
+    }
+
+    @Test
+    public void whenFileInRolledOverIndex_thenDeleteItThere() {
+        GetResult result = found("files-000001", "a");
+        when(client.multiGet(any(MultiGetRequest.class))).thenReturn(Flux.just(result));
+        List<String> indices = new ArrayList<>();
+        when(client.delete(any(DeleteRequest.class))).thenAnswer(invocation -> {
+            indices.add(invocation.<DeleteRequest>getArgument(0).index());
+            return Mono.just(mock(DeleteResponse.class));
+        });
+
+        repository.deleteById("a").block();
+        assertEquals(List.of("files-000001"), indices);
+    }
+
+    @Test
+    public void whenRolledOverByOtherInstance_thenListIndicesAgainAndFindFileInNewOne() throws IOException {
+        when(filesIndexManager.refreshBackingIndices())
+                .thenReturn(List.of("files-000001", "files-000002", "files-000003"));
+        when(converter.read(eq(StoredFile.class), any(Document.class))).thenReturn(StoredFile.builder().build());
+        List<MultiGetRequest> requests = new ArrayList<>();
+        GetResult result = found("files-000003", "a");
+        when(client.multiGet(any(MultiGetRequest.class))).thenAnswer(invocation -> {
+            requests.add(invocation.getArgument(0));
+            return requests.size() == 1 ? Flux.empty() : Flux.just(result);
+        });
+
+        assertNotNull(repository.findById("a").block());
+        assertEquals(2, requests.size());
+        assertEquals(List.of("files-000003"), requests.get(1).getItems().stream()
+                .map(MultiGetRequest.Item::index)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void whenFileMissingFromEveryIndex_thenNotFound() throws IOException {
+        when(client.multiGet(any(MultiGetRequest.class))).thenReturn(Flux.empty());
+
+        assertNull(repository.findById("a").block());
+        verify(filesIndexManager).refreshBackingIndices();
+        verify(client).multiGet(any(MultiGetRequest.class));
+    }
+
+    private static GetResult found(String index, String id) {
+        GetResult result = mock(GetResult.class);
+        when(result.getIndex()).thenReturn(index);
+        when(result.getId()).thenReturn(id);
+        when(result.sourceAsMap()).thenReturn(Map.of("filename", "a.txt"));
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+package com.test.storage.service;
+
+import com.test.storage.dto.BatchTagUpdateRequestDTO;
+import com.test.storage.dto.BatchTagUpdateResponseDTO;
+import com.test.storage.dto.BatchTaskStatus;
+import com.test.storage.dto.FileFilterDTO;
+import com.test.storage.dto.TagMatch;
+import com.test.storage.exception.custom.TaskNotFoundException;
+import com.test.storage.repository.StorageRepository;
+import com.test.storage.repository.TagUpdateItemResult;
+import com.test.storage.repository.UpdateOutcome;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class BatchTagServiceTest {
+
+    private StorageRepository storageRepository;
+    private BatchTagService batchTagService;
+
+    @BeforeEach
+    void setUp() {
+        this.storageRepository = mock(StorageRepository.class);
+        this.batchTagService = new BatchTagService(storageRepository,
+                new StoredFileCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1)),
+                new SearchResultCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1)),
+                1, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchTagService.shutdown();
+    }
+
+    @Test
+    public void whenFewIds_thenUpdateSynchronouslyAndReturnEveryResult() {
+        var ids = List.of("a", "b", "c");
+        when(storageRepository.bulkUpdateTags(ids, Set.of("archived"), Set.of())).thenReturn(List.of(
+                new TagUpdateItemResult("a", UpdateOutcome.UPDATED, null),
+                new TagUpdateItemResult("b", UpdateOutcome.NOOP, null),
+                new TagUpdateItemResult("c", UpdateOutcome.NOT_FOUND, null)));
+        var response = batchTagService.updateTags(new BatchTagUpdateRequestDTO(ids, null, Set.of("archived"), null));
+        assertNull(response.getTaskId());
+        assertEquals(BatchTaskStatus.COMPLETED, response.getStatus());
+        assertEquals(1, response.getUpdated());
+        assertEquals(1, response.getUnchanged());
+        assertEquals(1, response.getNotFound());
+        assertEquals(3, response.getItems().size());
+        assertEquals("not_found", response.getItems().get(2).getResult());
+    }
+
+    @Test
+    public void whenManyIds_thenUpdateInChunksByTrackedTask() throws InterruptedException {
+        var ids = IntStream.range(0, 2500).mapToObj(String::valueOf).collect(Collectors.toList());
+        when(storageRepository.bulkUpdateTags(anyList(), anySet(), anySet())).thenAnswer(invocation -> {
+            List<String> chunk = invocation.getArgument(0);
+            return chunk.stream()
+                    .map(id -> new TagUpdateItemResult(id, UpdateOutcome.UPDATED, null))
+                    .collect(Collectors.toList());
+        });
+        var response = batchTagService.updateTags(new BatchTagUpdateRequestDTO(ids, null, null, Set.of("old")));
+        assertNotNull(response.getTaskId());
+        var task = awaitCompletion(response.getTaskId());
+        assertEquals(BatchTaskStatus.COMPLETED, task.getStatus());
+        assertEquals(2500, task.getUpdated());
+        assertTrue(task.getItems().isEmpty());
+        verify(storageRepository, times(3)).bulkUpdateTags(anyList(), anySet(), anySet());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenFilter_thenUpdateScrolledIdsByTrackedTask() throws InterruptedException {
+        doAnswer(invocation -> {
+            Consumer<List<String>> consumer = invocation.getArgument(2);
+            consumer.accept(List.of("a", "b"));
+            return null;
+        }).when(storageRepository).scrollIds(
+                argThat(query -> query.getTags().equals(Set.of("text"))
+                        && query.isAllTags()
+                        && query.getNameFilter().equals("report")
+                        && query.getMinSize() == 10L
+                        && query.getMaxSize() == null),
+                anyInt(), any());
+        when(storageRepository.bulkUpdateTags(anyList(), anySet(), anySet())).thenReturn(List.of(
+                new TagUpdateItemResult("a", UpdateOutcome.UPDATED, null),
+                new TagUpdateItemResult("b", null, "version_conflict_engine_exception")));
+        var filter = new FileFilterDTO(Set.of("text"), "report", TagMatch.ALL, 10L, null);
+        var response = batchTagService.updateTags(new BatchTagUpdateRequestDTO(null, filter, Set.of("archived"), null));
+        var task = awaitCompletion(response.getTaskId());
+        assertEquals(1, task.getUpdated());
+        assertEquals(1, task.getFailed());
+        assertEquals(1, task.getItems().size());
+        assertEquals("b", task.getItems().get(0).getID());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenTaskRunsLongerThanRetention_thenKeepItUntilRetentionAfterCompletion() throws InterruptedException {
+        batchTagService.shutdown();
+        batchTagService = new BatchTagService(storageRepository,
+                new StoredFileCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1)),
+                new SearchResultCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1)),
+                1, Duration.ofMillis(200));
+        var release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(storageRepository).scrollIds(any(), anyInt(), any(Consumer.class));
+        var filter = new FileFilterDTO(Set.of("text"), "", null, null, null);
+        var response = batchTagService.updateTags(new BatchTagUpdateRequestDTO(null, filter, Set.of("archived"), null));
+
+        Thread.sleep(400);
+        assertEquals(BatchTaskStatus.RUNNING, batchTagService.getTask(response.getTaskId()).getStatus());
+        release.countDown();
+        assertEquals(BatchTaskStatus.COMPLETED, awaitCompletion(response.getTaskId()).getStatus());
+        Thread.sleep(400);
+        assertThrows(TaskNotFoundException.class, () -> batchTagService.getTask(response.getTaskId()));
+    }
+
+    @Test
+    public void whenUnknownTask_thenThrowTaskNotFoundException() {
+        assertThrows(TaskNotFoundException.class, () -> batchTagService.getTask("unknown"));
+    }
+
+    private BatchTagUpdateResponseDTO awaitCompletion(String taskId) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            var task = batchTagService.getTask(taskId);
+            if (task.getStatus() != BatchTaskStatus.RUNNING) {
+                return task;
+            }
+            Thread.sleep(50);
+        }
+        return fail("task was not completed in time");
+    }
+}
@@ -0,0 +1,73 @@
+package com.test.storage.service;
+
+import com.test.storage.dto.FileSearchRequestDTO;
+import com.test.storage.dto.FilteredPagedSearchResponseDTO;
+import com.test.storage.dto.TotalHitsMode;
+import com.test.storage.model.StoredFile;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchResultCacheTest {
+
+    @Test
+    public void whenDisabled_thenAlwaysSearch() {
+        var cache = new SearchResultCache(false, Duration.ofMinutes(1), DataSize.ofMegabytes(1));
+        var searches = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            cache.get(new FileSearchRequestDTO(), TotalHitsMode.EXACT, () -> {
+                searches.incrementAndGet();
+                return new FilteredPagedSearchResponseDTO(0L, List.of());
+            });
+        }
+        assertEquals(3, searches.get());
+    }
+
+    @Test
+    public void whenTotalHitsModeDiffers_thenSearchAgain() {
+        var cache = new SearchResultCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1));
+        var searches = new AtomicInteger();
+        for (TotalHitsMode mode : List.of(TotalHitsMode.EXACT, TotalHitsMode.NONE, TotalHitsMode.EXACT)) {
+            cache.get(new FileSearchRequestDTO(), mode, () -> {
+                searches.incrementAndGet();
+                return new FilteredPagedSearchResponseDTO(0L, List.of());
+            });
+        }
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    public void whenMemoryLimitExceeded_thenEvictResults() {
+        var cache = new SearchResultCache(true, Duration.ofMinutes(1), DataSize.ofKilobytes(4));
+        var page = List.of(StoredFile.builder().id("id").fileName("file.txt").fileSize(1L).build());
+        for (int i = 0; i < 100; i++) {
+            var request = new FileSearchRequestDTO();
+            request.setPage(i);
+            cache.get(request, TotalHitsMode.EXACT, () -> new FilteredPagedSearchResponseDTO(1L, page));
+        }
+        cache.cleanUp();
+        assertTrue(cache.getWeightedSizeBytes() <= 4096);
+        assertTrue(cache.getCacheStats().evictionCount() > 0);
+    }
+
+    @Test
+    public void whenSearchedTwice_thenPublishHitsAndMemory() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var cache = new SearchResultCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1), meterRegistry);
+        for (int i = 0; i < 2; i++) {
+            cache.get(new FileSearchRequestDTO(), TotalHitsMode.EXACT, () -> new FilteredPagedSearchResponseDTO(0L, List.of()));
+        }
+        cache.cleanUp();
+        var cacheTag = Tags.of("cache", "searchResults");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tags(cacheTag).tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tags(cacheTag).tag("result", "miss").functionCounter().count());
+        assertTrue(meterRegistry.get("cache.weighted.size").tags(cacheTag).gauge().value() > 0);
+    }
+}
@@ -1,16 +1,46 @@
 package com.test.storage.service;
 
+import com.test.storage.dto.FileFacet;
+import com.test.storage.dto.FileSearchRequestDTO;
+import com.test.storage.dto.FileSort;
+import com.test.storage.dto.ProjectedFileDTO;
+import com.test.storage.dto.RefreshMode;
 import com.test.storage.dto.ResponseWithSuccessDTO;
+import com.test.storage.dto.SizeBucketDTO;
+import com.test.storage.dto.TagCountDTO;
+import com.test.storage.dto.TotalHitsMode;
 import com.test.storage.dto.UploadFileRequestDTO;
+import com.test.storage.exception.custom.CursorExpiredException;
 import com.test.storage.exception.custom.FileNotFoundException;
 import com.test.storage.exception.custom.TagNotFoundOnFileException;
+import com.test.storage.exception.custom.TagsConcurrentlyModifiedException;
 import com.test.storage.model.StoredFile;
+import com.test.storage.model.StoredFileField;
+import com.test.storage.repository.BulkIndexSession;
+import com.test.storage.repository.BulkItemResult;
+import com.test.storage.repository.FileFacets;
+import com.test.storage.repository.FileQuery;
+import com.test.storage.repository.FileSearchQueries;
+import com.test.storage.repository.FileSearchResult;
 import com.test.storage.repository.StorageRepository;
+import com.test.storage.repository.UpdateOutcome;
+import com.test.storage.util.FileTypeDetector;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.data.domain.PageImpl;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
 
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -18,18 +48,30 @@ import static org.mockito.Mockito.*;
 public class StorageServiceTest {
 
     private StorageRepository storageRepository;
+    private StoredFileCache fileCache;
+    private SearchResultCache searchCache;
     private StorageService storageService;
 
     @BeforeEach
     void setUp() {
         this.storageRepository = mock(StorageRepository.class);
-        this.storageService = new StorageService(storageRepository);
+        this.fileCache = new StoredFileCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1));
+        this.searchCache = new SearchResultCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1));
+        this.storageService = new StorageService(
+                storageRepository,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                Jackson2ObjectMapperBuilder.json().build(),
+                new FileTypeDetector(16),
+                fileCache,
+                searchCache,
+                new WriteBehindQueue(storageRepository, fileCache, searchCache,
+                        false, 1, 1, Duration.ofMinutes(1), 0, Duration.ZERO));
     }
 
     @Test
     public void whenDeleteNotPresentFile_thenThrowFileNotFoundException() {
         when(storageRepository.findById(anyString())).thenReturn(Optional.empty());
-        assertThrows(FileNotFoundException.class, () -> storageService.deleteFileById(" "));
+        assertThrows(FileNotFoundException.class, () -> storageService.deleteFileById(" ", null));
     }
 
     @Test
@@ -40,8 +82,8 @@ public class StorageServiceTest {
                 .tags(new HashSet<>())
                 .build();
         when(storageRepository.findById(anyString())).thenReturn(Optional.of(storedFile));
-        doNothing().when(storageRepository).delete(any(StoredFile.class));
-        assertTrue(storageService.deleteFileById("any").getSuccess());
+        doNothing().when(storageRepository).deleteById(anyString(), any());
+        assertTrue(storageService.deleteFileById("any", null).getSuccess());
     }
 
     @Test
@@ -54,29 +96,172 @@ public class StorageServiceTest {
                 .tags(new HashSet<>())
                 .build();
         var uploadFileRequest = new UploadFileRequestDTO("aaa", 10L);
-        when(storageRepository.save(any(StoredFile.class))).thenReturn(uploadedFile);
-        assertEquals(expectedId, storageService.uploadFile(uploadFileRequest).getID());
+        when(storageRepository.index(any(StoredFile.class), any())).thenReturn(uploadedFile.getId());
+        assertEquals(expectedId, storageService.uploadFile(uploadFileRequest, null).getID());
+    }
+
+    @Test
+    public void whenRefreshNotGiven_thenWaitForRefresh() {
+        when(storageRepository.index(any(StoredFile.class), any())).thenReturn("id");
+        storageService.uploadFile(new UploadFileRequestDTO("aaa", 10L), null);
+        verify(storageRepository).index(any(StoredFile.class), eq(RefreshPolicy.WAIT_UNTIL));
+    }
+
+    @Test
+    public void whenRefreshGiven_thenUseItForWrite() {
+        when(storageRepository.addTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.UPDATED);
+        when(storageRepository.findById("id")).thenReturn(Optional.of(fileWithTags("a")));
+        storageService.assignTagsToFileById("id", Set.of("a"), RefreshMode.NONE);
+        storageService.deleteFileById("id", RefreshMode.IMMEDIATE);
+        verify(storageRepository).addTags("id", Set.of("a"), RefreshPolicy.NONE);
+        verify(storageRepository).deleteById("id", RefreshPolicy.IMMEDIATE);
     }
 
     @Test
     public void whenAssignTagsValidId_thenAddTagsAndReturnResponseWithSuccess() {
         Set<String> tagsToAssign = Set.of("tag1", "tag2");
-        Set<String> fileTags = new LinkedHashSet<>();
-        var uploadedFile = StoredFile.builder()
-                .fileName("testfile")
-                .fileSize(10L)
-                .tags(fileTags)
-                .build();
-        when(storageRepository.findById(anyString())).thenReturn(Optional.of(uploadedFile));
-        ResponseWithSuccessDTO response = storageService.assignTagsToFileById("id", tagsToAssign);
-        assertEquals(2, uploadedFile.getTags().size());
+        when(storageRepository.addTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.UPDATED);
+        ResponseWithSuccessDTO response = storageService.assignTagsToFileById("id", tagsToAssign, null);
+        verify(storageRepository).addTags(eq("id"), eq(tagsToAssign), any());
+        verify(storageRepository, never()).findById(anyString());
+        verify(storageRepository, never()).index(any(StoredFile.class), any());
         assertTrue(response.getSuccess());
     }
 
+    @Test
+    public void whenAssignTagsAlreadyAssigned_thenReturnResponseWithSuccess() {
+        when(storageRepository.addTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.NOOP);
+        assertTrue(storageService.assignTagsToFileById("id", Set.of("tag1"), null).getSuccess());
+    }
+
     @Test
     public void whenAssignTagsNotValidId_thenThrowFileNotFoundException() {
-        when(storageRepository.findById(anyString())).thenReturn(Optional.empty());
-        assertThrows(FileNotFoundException.class, () -> storageService.assignTagsToFileById("id", new LinkedHashSet<>()));
+        when(storageRepository.addTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.NOT_FOUND);
+        assertThrows(FileNotFoundException.class, () -> storageService.assignTagsToFileById("id", new LinkedHashSet<>(), null));
+    }
+
+    @Test
+    public void whenFileReadTwice_thenLoadItOnce() {
+        when(storageRepository.removeTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.NOOP);
+        when(storageRepository.findById("id")).thenReturn(Optional.of(fileWithTags("a")));
+        assertThrows(TagNotFoundOnFileException.class, () -> storageService.deleteTagsFromFileById("id", Set.of("b"), null));
+        assertThrows(TagNotFoundOnFileException.class, () -> storageService.deleteTagsFromFileById("id", Set.of("b"), null));
+        verify(storageRepository, times(1)).findById("id");
+        assertEquals(1, fileCache.getCacheStats().hitCount());
+    }
+
+    @Test
+    public void whenTagsAssigned_thenCachedFileIsNotServed() {
+        when(storageRepository.removeTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.NOOP);
+        when(storageRepository.findById("id")).thenReturn(Optional.of(fileWithTags("a")));
+        assertThrows(TagNotFoundOnFileException.class, () -> storageService.deleteTagsFromFileById("id", Set.of("b"), null));
+
+        when(storageRepository.addTags(eq("id"), eq(Set.of("b")), any())).thenReturn(UpdateOutcome.UPDATED);
+        when(storageRepository.findById("id")).thenReturn(Optional.of(fileWithTags("a", "b")));
+        storageService.assignTagsToFileById("id", Set.of("b"), null);
+
+        var e = assertThrows(TagNotFoundOnFileException.class,
+                () -> storageService.deleteTagsFromFileById("id", Set.of("b", "c"), null));
+        assertEquals("tags: [c] not found on file with id: id", e.getMessage());
+        verify(storageRepository, times(2)).findById("id");
+    }
+
+    @Test
+    public void whenCachedFileHasAllTagsToRemove_thenReportMissingTagsOfStoredFile() {
+        when(storageRepository.removeTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.NOOP);
+        when(storageRepository.findById("id")).thenReturn(Optional.of(fileWithTags("a", "b")));
+        assertThrows(TagNotFoundOnFileException.class, () -> storageService.deleteTagsFromFileById("id", Set.of("c"), null));
+
+        // tag removed by another instance, the cached file still has it
+        when(storageRepository.findById("id")).thenReturn(Optional.of(fileWithTags("a")));
+        assertThrows(TagNotFoundOnFileException.class, () -> storageService.deleteTagsFromFileById("id", Set.of("b"), null));
+        verify(storageRepository, times(2)).findById("id");
+    }
+
+    @Test
+    public void whenTagsAssignedAfterRemoval_thenRetryRemoval() {
+        when(storageRepository.removeTags(eq("id"), eq(Set.of("b")), any()))
+                .thenReturn(UpdateOutcome.NOOP)
+                .thenReturn(UpdateOutcome.UPDATED);
+        when(storageRepository.findById("id")).thenReturn(Optional.of(fileWithTags("a", "b")));
+        assertTrue(storageService.deleteTagsFromFileById("id", Set.of("b"), null).getSuccess());
+        verify(storageRepository, times(2)).removeTags(eq("id"), eq(Set.of("b")), any());
+    }
+
+    @Test
+    public void whenRemovalNeverApplied_thenDoNotReportSuccess() {
+        when(storageRepository.removeTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.NOOP);
+        when(storageRepository.findById("id")).thenReturn(Optional.of(fileWithTags("a", "b")));
+        assertThrows(TagsConcurrentlyModifiedException.class,
+                () -> storageService.deleteTagsFromFileById("id", Set.of("b"), null));
+    }
+
+    @Test
+    public void whenTagsRemoved_thenCachedFileIsNotServed() {
+        when(storageRepository.removeTags(eq("id"), eq(Set.of("b")), any())).thenReturn(UpdateOutcome.NOOP);
+        when(storageRepository.findById("id")).thenReturn(Optional.of(fileWithTags("a")));
+        assertThrows(TagNotFoundOnFileException.class, () -> storageService.deleteTagsFromFileById("id", Set.of("b"), null));
+
+        when(storageRepository.removeTags(eq("id"), eq(Set.of("a")), any())).thenReturn(UpdateOutcome.UPDATED);
+        when(storageRepository.findById("id")).thenReturn(Optional.of(fileWithTags()));
+        storageService.deleteTagsFromFileById("id", Set.of("a"), null);
+
+        assertThrows(TagNotFoundOnFileException.class, () -> storageService.deleteTagsFromFileById("id", Set.of("b"), null));
+        verify(storageRepository, times(2)).findById("id");
+    }
+
+    @Test
+    public void whenFileDeleted_thenCachedFileIsNotServed() {
+        when(storageRepository.removeTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.NOOP);
+        when(storageRepository.findById("id")).thenReturn(Optional.of(fileWithTags("a")));
+        assertThrows(TagNotFoundOnFileException.class, () -> storageService.deleteTagsFromFileById("id", Set.of("b"), null));
+
+        storageService.deleteFileById("id", null);
+        when(storageRepository.findById("id")).thenReturn(Optional.empty());
+
+        assertThrows(FileNotFoundException.class, () -> storageService.deleteFileById("id", null));
+    }
+
+    @Test
+    public void whenCacheDisabled_thenAlwaysLoadFile() {
+        var service = new StorageService(
+                storageRepository,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                Jackson2ObjectMapperBuilder.json().build(),
+                new FileTypeDetector(16),
+                new StoredFileCache(false, Duration.ofMinutes(1), DataSize.ofMegabytes(1)),
+                searchCache,
+                new WriteBehindQueue(storageRepository, fileCache, searchCache,
+                        false, 1, 1, Duration.ofMinutes(1), 0, Duration.ZERO));
+        when(storageRepository.removeTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.NOOP);
+        when(storageRepository.findById("id")).thenReturn(Optional.of(fileWithTags("a")));
+        assertThrows(TagNotFoundOnFileException.class, () -> service.deleteTagsFromFileById("id", Set.of("b"), null));
+        assertThrows(TagNotFoundOnFileException.class, () -> service.deleteTagsFromFileById("id", Set.of("b"), null));
+        verify(storageRepository, times(2)).findById("id");
+    }
+
+    @Test
+    public void whenWriteBehindEnabled_thenWriteWithoutWaitingForElasticsearch() throws InterruptedException {
+        var queue = new WriteBehindQueue(storageRepository, fileCache, searchCache,
+                true, 10, 10, Duration.ofMinutes(1), 0, Duration.ZERO);
+        var service = new StorageService(
+                storageRepository,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                Jackson2ObjectMapperBuilder.json().build(),
+                new FileTypeDetector(16),
+                fileCache,
+                searchCache,
+                queue);
+        queue.start();
+        var id = service.uploadFile(new UploadFileRequestDTO("file.txt", 1L), null).getID();
+        assertNotNull(id);
+        assertTrue(service.assignTagsToFileById(id, Set.of("a"), null).getSuccess());
+        assertTrue(service.deleteFileById("other", null).getSuccess());
+        verifyNoInteractions(storageRepository);
+
+        queue.shutdown();
+        verify(storageRepository, never()).index(any(), any());
+        verify(storageRepository).bulkWrite(argThat(writes -> writes.size() == 2));
     }
 
     @Test
@@ -89,33 +274,187 @@ public class StorageServiceTest {
                     .tags(new LinkedHashSet<>())
                     .build());
         }
-        var filesPage = new PageImpl<>(storedFilesList);
-        when(storageRepository.findAllByFileNameContaining(anyString(), any())).thenReturn(filesPage);
-        var response = storageService.filteredAndPagedSearch(Optional.empty(), 0, 10, "test");
+        when(storageRepository.search(any(FileQuery.class), any(), anyInt()))
+                .thenReturn(new FileSearchResult(5L, true, storedFilesList, null));
+        var request = new FileSearchRequestDTO();
+        request.setQ("test");
+        var response = storageService.filteredAndPagedSearch(request);
         assertEquals(5, response.getTotal());
+        assertEquals("eq", response.getTotalRelation());
         assertEquals(storedFilesList, response.getPage());
+        var queryCaptor = ArgumentCaptor.forClass(FileQuery.class);
+        verify(storageRepository).search(queryCaptor.capture(), eq(PageRequest.of(0, 10)),
+                eq(FileSearchQueries.TRACK_TOTAL_HITS_ACCURATE));
+        assertEquals("test", queryCaptor.getValue().getNameFilter());
+        assertNull(queryCaptor.getValue().getTags());
+        assertNull(queryCaptor.getValue().getFields());
+    }
+
+    @Test
+    public void whenTotalNotNeeded_thenSkipCounting() {
+        when(storageRepository.search(any(FileQuery.class), any(), anyInt()))
+                .thenReturn(new FileSearchResult(null, false, List.of(), null));
+        var request = new FileSearchRequestDTO();
+        request.setTotal(TotalHitsMode.NONE);
+        var response = storageService.filteredAndPagedSearch(request);
+        assertNull(response.getTotal());
+        assertNull(response.getTotalRelation());
+        verify(storageRepository).search(any(), any(), eq(FileSearchQueries.TRACK_TOTAL_HITS_DISABLED));
+    }
+
+    @Test
+    public void whenTotalEstimated_thenCountUpToThreshold() {
+        when(storageRepository.search(any(FileQuery.class), any(), anyInt()))
+                .thenReturn(new FileSearchResult(10000L, false, List.of(), null));
+        var request = new FileSearchRequestDTO();
+        request.setTotal(TotalHitsMode.ESTIMATE);
+        var response = storageService.filteredAndPagedSearch(request);
+        assertEquals(10000, response.getTotal());
+        assertEquals("gte", response.getTotalRelation());
+        verify(storageRepository).search(any(), any(), eq(10000));
+    }
+
+    @Test
+    public void whenFieldsRequested_thenPassProjectionToRepository() {
+        when(storageRepository.search(any(FileQuery.class), any(), anyInt()))
+                .thenReturn(new FileSearchResult(1L, true, List.of(StoredFile.builder().id("id").build()), null));
+        var request = new FileSearchRequestDTO();
+        request.setFields(Set.of(StoredFileField.ID));
+        storageService.filteredAndPagedSearch(request);
+        var queryCaptor = ArgumentCaptor.forClass(FileQuery.class);
+        verify(storageRepository).search(queryCaptor.capture(), any(), anyInt());
+        assertEquals(Set.of(StoredFileField.ID), queryCaptor.getValue().getFields());
+    }
+
+    @Test
+    public void whenProjectedResult_thenPageOfProjectedFiles() {
+        var file = StoredFile.builder().id("id").build();
+        when(storageRepository.search(any(FileQuery.class), any(), anyInt()))
+                .thenReturn(new FileSearchResult(1L, true, List.of(file), null, null, true));
+        var request = new FileSearchRequestDTO();
+        request.setFields(Set.of(StoredFileField.ID));
+        var response = storageService.filteredAndPagedSearch(request);
+        assertTrue(response.getPage().get(0) instanceof ProjectedFileDTO);
+        assertEquals("id", response.getPage().get(0).getId());
+    }
+
+    @Test
+    public void whenFacetsRequested_thenReturnThemWithPage() {
+        var facets = new FileFacets(
+                new LinkedHashMap<>(Map.of("text", 3L)),
+                List.of(new FileFacets.SizeBucket(null, 1024L, 2L), new FileFacets.SizeBucket(1024L, null, 1L)));
+        when(storageRepository.search(any(FileQuery.class), any(), anyInt()))
+                .thenReturn(new FileSearchResult(3L, true, List.of(), null, facets));
+        var request = new FileSearchRequestDTO();
+        request.setFacets(Set.of(FileFacet.TAGS, FileFacet.SIZE));
+        var response = storageService.filteredAndPagedSearch(request);
+
+        var queryCaptor = ArgumentCaptor.forClass(FileQuery.class);
+        verify(storageRepository).search(queryCaptor.capture(), any(), anyInt());
+        assertTrue(queryCaptor.getValue().isTagsFacet());
+        assertTrue(queryCaptor.getValue().isSizeFacet());
+        assertEquals(List.of(new TagCountDTO("text", 3L)), response.getFacets().getTags());
+        assertEquals(new SizeBucketDTO(null, 1024L, 2L), response.getFacets().getSizes().get(0));
+        assertEquals(new SizeBucketDTO(1024L, null, 1L), response.getFacets().getSizes().get(1));
+    }
+
+    @Test
+    public void whenSizeRangeAndSortRequested_thenSearchWithThem() {
+        when(storageRepository.search(any(FileQuery.class), any(), anyInt()))
+                .thenReturn(new FileSearchResult(0L, true, List.of(), null));
+        var request = new FileSearchRequestDTO();
+        request.setMinSize(1024L);
+        request.setSort(FileSort.NAME_DESC);
+        storageService.filteredAndPagedSearch(request);
+
+        var queryCaptor = ArgumentCaptor.forClass(FileQuery.class);
+        verify(storageRepository).search(queryCaptor.capture(), any(), anyInt());
+        assertEquals(1024L, queryCaptor.getValue().getMinSize());
+        assertNull(queryCaptor.getValue().getMaxSize());
+        assertEquals(StoredFileField.FILENAME, queryCaptor.getValue().getSortField());
+        assertTrue(queryCaptor.getValue().isSortDescending());
+    }
+
+    @Test
+    public void whenSameSearchRepeated_thenSearchOnce() {
+        when(storageRepository.search(any(FileQuery.class), any(), anyInt()))
+                .thenReturn(new FileSearchResult(0L, true, List.of(), null));
+        var request = new FileSearchRequestDTO();
+        request.setTags(new LinkedHashSet<>(List.of("a", "b")));
+        storageService.filteredAndPagedSearch(request);
+        var reordered = new FileSearchRequestDTO();
+        reordered.setTags(new LinkedHashSet<>(List.of("b", "a")));
+        storageService.filteredAndPagedSearch(reordered);
+        verify(storageRepository, times(1)).search(any(), any(), anyInt());
+    }
+
+    @Test
+    public void whenFileChangedBetweenSearches_thenSearchAgain() {
+        when(storageRepository.search(any(FileQuery.class), any(), anyInt()))
+                .thenReturn(new FileSearchResult(0L, true, List.of(), null));
+        when(storageRepository.addTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.UPDATED);
+        when(storageRepository.index(any(StoredFile.class), any())).thenReturn("id");
+        storageService.filteredAndPagedSearch(new FileSearchRequestDTO());
+        storageService.assignTagsToFileById("id", Set.of("a"), null);
+        storageService.filteredAndPagedSearch(new FileSearchRequestDTO());
+        storageService.uploadFile(new UploadFileRequestDTO("file.txt", 1L), null);
+        storageService.filteredAndPagedSearch(new FileSearchRequestDTO());
+        verify(storageRepository, times(3)).search(any(), any(), anyInt());
+    }
+
+    @Test
+    public void whenTagsNotChanged_thenKeepCachedSearch() {
+        when(storageRepository.search(any(FileQuery.class), any(), anyInt()))
+                .thenReturn(new FileSearchResult(0L, true, List.of(), null));
+        when(storageRepository.addTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.NOOP);
+        storageService.filteredAndPagedSearch(new FileSearchRequestDTO());
+        storageService.assignTagsToFileById("id", Set.of("a"), null);
+        storageService.filteredAndPagedSearch(new FileSearchRequestDTO());
+        verify(storageRepository, times(1)).search(any(), any(), anyInt());
+    }
+
+    @Test
+    public void whenScrollRequest_thenReturnFirstPageWithCursor() {
+        var files = List.of(StoredFile.builder().id("id").fileName("test").build());
+        when(storageRepository.startScroll(any(FileQuery.class), eq(1))).thenReturn(new FileSearchResult(3L, true, files, "next"));
+        var request = new FileSearchRequestDTO();
+        request.setScroll(true);
+        request.setSize(1);
+        request.setTags(Set.of("tag"));
+        request.setQ("test");
+        var response = storageService.filteredAndPagedSearch(request);
+        assertEquals(3, response.getTotal());
+        assertEquals(files, response.getPage());
+        assertEquals("next", response.getCursor());
+    }
+
+    @Test
+    public void whenCursorRequest_thenContinueScroll() {
+        when(storageRepository.continueScroll("next")).thenReturn(Optional.of(new FileSearchResult(3L, true, List.of(), null)));
+        var request = new FileSearchRequestDTO();
+        request.setCursor("next");
+        var response = storageService.filteredAndPagedSearch(request);
+        assertNull(response.getCursor());
+        verify(storageRepository, never()).search(any(), any(), anyInt());
+    }
+
+    @Test
+    public void whenCursorExpired_thenThrowCursorExpiredException() {
+        when(storageRepository.continueScroll(anyString())).thenReturn(Optional.empty());
+        var request = new FileSearchRequestDTO();
+        request.setCursor("expired");
+        assertThrows(CursorExpiredException.class, () -> storageService.filteredAndPagedSearch(request));
     }
 
     @Test
     public void whenDeletingTagsValid_ThenDeleteTagsAndReturnResponseSuccess() {
-        String tag1 = "tag1";
-        String tag2 = "tag2";
-        String tag3 = "tag3";
-        var fileTags = new LinkedHashSet<String>();
-        fileTags.add(tag1);
-        fileTags.add(tag2);
-        fileTags.add(tag3);
         var deleteTags = new LinkedHashSet<String>();
-        deleteTags.add(tag1);
-        deleteTags.add(tag2);
-        var storedFile = StoredFile.builder()
-                .fileName("test")
-                .fileSize(10L)
-                .tags(fileTags)
-                .build();
-        when(storageRepository.findById(anyString())).thenReturn(Optional.of(storedFile));
-        var response = storageService.deleteTagsFromFileById("id", deleteTags);
-        assertEquals(1, fileTags.size());
+        deleteTags.add("tag1");
+        deleteTags.add("tag2");
+        when(storageRepository.removeTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.UPDATED);
+        var response = storageService.deleteTagsFromFileById("id", deleteTags, null);
+        verify(storageRepository).removeTags(eq("id"), eq(deleteTags), any());
+        verify(storageRepository, never()).findById(anyString());
         assertTrue(response.getSuccess());
     }
 
@@ -135,8 +474,100 @@ public class StorageServiceTest {
                 .fileSize(10L)
                 .tags(fileTags)
                 .build();
+        when(storageRepository.removeTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.NOOP);
         when(storageRepository.findById(anyString())).thenReturn(Optional.of(storedFile));
-        assertThrows(TagNotFoundOnFileException.class, () -> storageService.deleteTagsFromFileById("id", deleteTags));
+        var exception = assertThrows(TagNotFoundOnFileException.class,
+                () -> storageService.deleteTagsFromFileById("id", deleteTags, null));
+        assertEquals("tags: [tag2] not found on file with id: id", exception.getMessage());
+        assertEquals(2, fileTags.size());
+    }
+
+    @Test
+    public void whenDeleteTagsNotValidId_thenThrowFileNotFoundException() {
+        when(storageRepository.removeTags(anyString(), anySet(), any())).thenReturn(UpdateOutcome.NOT_FOUND);
+        assertThrows(FileNotFoundException.class, () -> storageService.deleteTagsFromFileById("id", Set.of("tag1"), null));
+    }
+
+    @Test
+    public void whenBulkUploadValid_thenReturnIdOfEveryFile() {
+        stubBulkIndexSession(ordinal -> BulkItemResult.success(ordinal, "id" + ordinal));
+        var response = storageService.bulkUploadFiles(List.of(
+                new UploadFileRequestDTO("a.txt", 1L),
+                new UploadFileRequestDTO("b.mp3", 2L)), null);
+        assertEquals(2, response.getUploaded());
+        assertEquals(0, response.getFailed());
+        assertEquals("id0", response.getItems().get(0).getID());
+        assertEquals("id1", response.getItems().get(1).getID());
+    }
+
+    @Test
+    public void whenBulkUploadContainsNotValidFile_thenReturnErrorOnlyForThatFile() {
+        stubBulkIndexSession(ordinal -> BulkItemResult.success(ordinal, "id" + ordinal));
+        var response = storageService.bulkUploadFiles(List.of(
+                new UploadFileRequestDTO("a.txt", 1L),
+                new UploadFileRequestDTO("b.txt", -1L),
+                new UploadFileRequestDTO("c.txt", 3L)), null);
+        assertEquals(2, response.getUploaded());
+        assertEquals(1, response.getFailed());
+        assertEquals("id0", response.getItems().get(0).getID());
+        assertEquals("size of file must not be less than 0", response.getItems().get(1).getError());
+        assertNull(response.getItems().get(1).getID());
+        assertEquals("id2", response.getItems().get(2).getID());
     }
 
+    @Test
+    public void whenBulkUploadIndexingFails_thenReturnErrorForFailedFile() {
+        stubBulkIndexSession(ordinal -> ordinal == 1
+                ? BulkItemResult.failure(ordinal, 400, "mapper_parsing_exception")
+                : BulkItemResult.success(ordinal, "id" + ordinal));
+        var response = storageService.bulkUploadFiles(List.of(
+                new UploadFileRequestDTO("a.txt", 1L),
+                new UploadFileRequestDTO("b.txt", 2L)), null);
+        assertEquals(1, response.getUploaded());
+        assertEquals("mapper_parsing_exception", response.getItems().get(1).getError());
+    }
+
+    @Test
+    public void whenStreamUpload_thenCountUploadedAndReturnOnlyErrors() throws IOException {
+        stubBulkIndexSession(ordinal -> BulkItemResult.success(ordinal, "id" + ordinal));
+        var ndjson = "{\"name\":\"a.txt\",\"size\":1}\n"
+                + "\n"
+                + "{\"name\":\"b.txt\",\"size\":-1}\n"
+                + "{\"name\":\n"
+                + "{\"name\":\"c.txt\",\"size\":3}\n";
+        var response = storageService.streamUploadFiles(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), null);
+        assertEquals(2, response.getUploaded());
+        assertEquals(2, response.getFailed());
+        assertEquals(2, response.getItems().size());
+        assertEquals(2, response.getItems().get(0).getIndex());
+        assertEquals("size of file must not be less than 0", response.getItems().get(0).getError());
+        assertEquals(3, response.getItems().get(1).getIndex());
+        assertTrue(response.getItems().get(1).getError().startsWith("malformed json"));
+    }
+
+    private void stubBulkIndexSession(LongFunction<BulkItemResult> resultOfOrdinal) {
+        when(storageRepository.openBulkIndexSession(anyInt(), any(), any())).thenAnswer(invocation -> {
+            Consumer<BulkItemResult> listener = invocation.getArgument(2);
+            return new BulkIndexSession() {
+                @Override
+                public void add(long ordinal, StoredFile file) {
+                    listener.accept(resultOfOrdinal.apply(ordinal));
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        });
+    }
+
+    private static StoredFile fileWithTags(String... tags) {
+        return StoredFile.builder()
+                .id("id")
+                .fileName("test.txt")
+                .fileSize(1L)
+                .tags(new HashSet<>(Arrays.asList(tags)))
+                .build();
+    }
 }
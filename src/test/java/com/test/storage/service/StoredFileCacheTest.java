@@ -0,0 +1,103 @@
+package com.test.storage.service;
+
+import com.test.storage.model.StoredFile;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StoredFileCacheTest {
+
+    @Test
+    public void whenAbsentFileLoaded_thenItIsNotCached() {
+        var cache = new StoredFileCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1));
+        var loads = new AtomicInteger();
+        assertTrue(cache.get("id", id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        }).isEmpty());
+        cache.get("id", id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void whenCachedFileChangedByCaller_thenCachedCopyIsUntouched() {
+        var cache = new StoredFileCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1));
+        cache.get("id", id -> Optional.of(file(id, "a"))).orElseThrow().getTags().add("b");
+        assertEquals(Set.of("a"), cache.get("id", id -> Optional.empty()).orElseThrow().getTags());
+    }
+
+    @Test
+    public void whenMemoryLimitExceeded_thenEvictFiles() {
+        var cache = new StoredFileCache(true, Duration.ofMinutes(1), DataSize.ofKilobytes(1));
+        for (int i = 0; i < 100; i++) {
+            cache.get(String.valueOf(i), id -> Optional.of(file(id, "a")));
+        }
+        cache.cleanUp();
+        assertTrue(cache.getWeightedSizeBytes() <= 1024);
+        assertTrue(cache.getCacheStats().evictionCount() > 0);
+    }
+
+    @Test
+    public void whenMemoryLimitExceeded_thenPublishEvictionsAndMemory() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var cache = new StoredFileCache(true, Duration.ofMinutes(1), DataSize.ofKilobytes(1), meterRegistry);
+        cache.get("0", id -> Optional.of(file(id, "a")));
+        cache.get("0", id -> Optional.empty());
+        for (int i = 1; i < 100; i++) {
+            cache.get(String.valueOf(i), id -> Optional.of(file(id, "a")));
+        }
+        cache.cleanUp();
+        var cacheTag = Tags.of("cache", "storedFiles");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tags(cacheTag).tag("result", "hit").functionCounter().count());
+        assertTrue(meterRegistry.get("cache.evictions").tags(cacheTag).functionCounter().count() > 0);
+        double bytes = meterRegistry.get("cache.weighted.size").tags(cacheTag).gauge().value();
+        assertTrue(bytes > 0 && bytes <= 1024);
+    }
+
+    @Test
+    public void whenInvalidatedDuringLoad_thenLoadedValueIsDropped() throws InterruptedException {
+        var cache = new StoredFileCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1));
+        var loadStarted = new CountDownLatch(1);
+        var fileChanged = new CountDownLatch(1);
+        var reader = new Thread(() -> cache.get("id", id -> {
+            loadStarted.countDown();
+            try {
+                fileChanged.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // value read before the change
+            return Optional.of(file(id, "old"));
+        }));
+        reader.start();
+        loadStarted.await();
+        var writer = new Thread(() -> cache.invalidate("id"));
+        writer.start();
+        fileChanged.countDown();
+        writer.join();
+        reader.join();
+        assertEquals(Set.of("new"), cache.get("id", id -> Optional.of(file(id, "new"))).orElseThrow().getTags());
+    }
+
+    private static StoredFile file(String id, String... tags) {
+        return StoredFile.builder()
+                .id(id)
+                .fileName("test.txt")
+                .fileSize(1L)
+                .tags(new HashSet<>(Set.of(tags)))
+                .build();
+    }
+}
@@ -0,0 +1,258 @@
+package com.test.storage.service;
+
+import com.test.storage.exception.custom.WriteQueueFullException;
+import com.test.storage.model.StoredFile;
+import com.test.storage.repository.BulkItemResult;
+import com.test.storage.repository.FileWrite;
+import com.test.storage.repository.StorageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class WriteBehindQueueTest {
+
+    private StorageRepository storageRepository;
+    private WriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        this.storageRepository = mock(StorageRepository.class);
+        when(storageRepository.bulkWrite(anyList())).thenAnswer(invocation -> {
+            List<FileWrite> writes = invocation.getArgument(0);
+            return IntStream.range(0, writes.size())
+                    .mapToObj(i -> BulkItemResult.success(i, writes.get(i).getId()))
+                    .collect(Collectors.toList());
+        });
+        // long interval, nothing is flushed before shutdown unless a batch is full
+        this.queue = new WriteBehindQueue(storageRepository,
+                new StoredFileCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1)),
+                new SearchResultCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1)),
+                true, 3, 3, Duration.ofMinutes(1), 2, Duration.ofMillis(1));
+        queue.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        queue.shutdown();
+    }
+
+    @Test
+    public void whenFileChangedManyTimes_thenWriteItOnce() throws InterruptedException {
+        queue.index(StoredFile.builder().id("new").fileName("a.txt").fileSize(1L).tags(new HashSet<>(Set.of("text"))).build());
+        queue.addTags("new", Set.of("a", "b"));
+        queue.removeTags("new", Set.of("text"));
+        queue.addTags("old", Set.of("a"));
+        queue.removeTags("old", Set.of("b"));
+        queue.removeTags("old", Set.of("a"));
+        assertEquals(2, queue.getQueueDepth());
+        queue.shutdown();
+
+        var captor = ArgumentCaptor.forClass(List.class);
+        verify(storageRepository).bulkWrite(captor.capture());
+        @SuppressWarnings("unchecked")
+        List<FileWrite> writes = captor.getValue();
+        assertEquals(FileWrite.Type.INDEX, writes.get(0).getType());
+        assertEquals(Set.of("a", "b"), writes.get(0).getFile().getTags());
+        assertEquals(FileWrite.Type.UPDATE_TAGS, writes.get(1).getType());
+        assertEquals(Set.of(), writes.get(1).getTagsToAdd());
+        assertEquals(Set.of("a", "b"), writes.get(1).getTagsToRemove());
+        assertEquals(2, queue.getFlushedWrites());
+        assertEquals(0, queue.getQueueDepth());
+    }
+
+    @Test
+    public void whenFlushed_thenPublishMetrics() throws InterruptedException {
+        var meterRegistry = new SimpleMeterRegistry();
+        var queue = new WriteBehindQueue(storageRepository,
+                new StoredFileCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1)),
+                new SearchResultCache(true, Duration.ofMinutes(1), DataSize.ofMegabytes(1)),
+                true, 3, 3, Duration.ofMinutes(1), 2, Duration.ofMillis(1), meterRegistry);
+        queue.start();
+        queue.delete("a");
+        queue.delete("b");
+        assertEquals(2.0, meterRegistry.get("storage.write.queue").gauge().value());
+        queue.shutdown();
+
+        assertEquals(0.0, meterRegistry.get("storage.write.queue").gauge().value());
+        assertEquals(1L, meterRegistry.get("storage.write.flush").timer().count());
+        assertEquals(2.0, meterRegistry.get("storage.write.writes").tag("outcome", "flushed").functionCounter().count());
+        assertEquals(0.0, meterRegistry.get("storage.write.writes").tag("outcome", "failed").functionCounter().count());
+    }
+
+    @Test
+    public void whenFileDeleted_thenDropItsOtherChanges() throws InterruptedException {
+        queue.addTags("id", Set.of("a"));
+        queue.delete("id");
+        queue.addTags("id", Set.of("b"));
+        queue.shutdown();
+
+        verify(storageRepository).bulkWrite(argThat(writes -> writes.size() == 1
+                && writes.get(0).getType() == FileWrite.Type.DELETE));
+    }
+
+    @Test
+    public void whenQueueFull_thenRejectChangesOfOtherFiles() {
+        // flush of a full batch is held, so queued files stay pending
+        var flushReleased = new CountDownLatch(1);
+        when(storageRepository.bulkWrite(anyList())).thenAnswer(invocation -> {
+            flushReleased.await();
+            return List.of();
+        });
+        try {
+            assertThrows(WriteQueueFullException.class, () -> {
+                for (int i = 0; i < 10; i++) {
+                    queue.delete(String.valueOf(i));
+                }
+            });
+        } finally {
+            flushReleased.countDown();
+        }
+    }
+
+    @Test
+    public void whenBulkRequestFails_thenCountFailedWrites() throws InterruptedException {
+        when(storageRepository.bulkWrite(anyList())).thenThrow(unavailable());
+        queue.delete("a");
+        queue.delete("b");
+        queue.shutdown();
+        assertEquals(2, queue.getFailedWrites());
+        assertEquals(4, queue.getRetriedWrites());
+        assertEquals("unavailable", queue.getLastError());
+        verify(storageRepository, times(3)).bulkWrite(anyList());
+    }
+
+    @Test
+    public void whenBulkRequestFailsOnce_thenRetryItsWrites() throws InterruptedException {
+        when(storageRepository.bulkWrite(anyList()))
+                .thenThrow(unavailable())
+                .thenAnswer(invocation -> {
+                    List<FileWrite> writes = invocation.getArgument(0);
+                    return List.of(BulkItemResult.success(0, writes.get(0).getId()),
+                            BulkItemResult.success(1, writes.get(1).getId()));
+                });
+        queue.delete("a");
+        queue.delete("b");
+        queue.shutdown();
+        assertEquals(0, queue.getFailedWrites());
+        assertEquals(2, queue.getRetriedWrites());
+        verify(storageRepository, times(2)).bulkWrite(argThat(writes -> writes.size() == 2));
+    }
+
+    @Test
+    public void whenWriteFails_thenRetryOnlyIt() throws InterruptedException {
+        when(storageRepository.bulkWrite(anyList()))
+                .thenReturn(List.of(BulkItemResult.success(0, "a"), BulkItemResult.failure(1, 429, "rejected")))
+                .thenReturn(List.of(BulkItemResult.success(0, "b")));
+        queue.delete("a");
+        queue.delete("b");
+        queue.shutdown();
+        assertEquals(0, queue.getFailedWrites());
+        verify(storageRepository).bulkWrite(argThat(writes -> writes.size() == 1 && writes.get(0).getId().equals("b")));
+    }
+
+    @Test
+    public void whenWriteFailsForGood_thenDropItWithoutRetry() throws InterruptedException {
+        when(storageRepository.bulkWrite(anyList())).thenReturn(List.of(
+                BulkItemResult.success(0, "a"),
+                BulkItemResult.failure(1, 404, "[b]: document missing")));
+        queue.delete("a");
+        queue.addTags("b", Set.of("x"));
+        queue.shutdown();
+        assertEquals(1, queue.getFlushedWrites());
+        assertEquals(1, queue.getFailedWrites());
+        assertEquals(0, queue.getRetriedWrites());
+        verify(storageRepository, times(1)).bulkWrite(anyList());
+    }
+
+    @Test
+    public void whenBulkRequestInvalid_thenDropItsWritesWithoutRetry() throws InterruptedException {
+        when(storageRepository.bulkWrite(anyList()))
+                .thenThrow(new ElasticsearchStatusException("mapper_parsing_exception", RestStatus.BAD_REQUEST));
+        queue.delete("a");
+        queue.delete("b");
+        queue.shutdown();
+        assertEquals(0, queue.getFlushedWrites());
+        assertEquals(2, queue.getFailedWrites());
+        assertEquals(0, queue.getRetriedWrites());
+        verify(storageRepository, times(1)).bulkWrite(anyList());
+    }
+
+    @Test
+    public void whenFileChangedDuringFailedFlush_thenRetryWithTheChange() throws InterruptedException {
+        var flushStarted = new CountDownLatch(1);
+        var flushReleased = new CountDownLatch(1);
+        List<List<FileWrite>> flushed = new CopyOnWriteArrayList<>();
+        when(storageRepository.bulkWrite(anyList())).thenAnswer(invocation -> {
+            List<FileWrite> writes = invocation.getArgument(0);
+            flushed.add(writes);
+            if (flushed.size() == 1) {
+                flushStarted.countDown();
+                flushReleased.await();
+                throw unavailable();
+            }
+            return IntStream.range(0, writes.size())
+                    .mapToObj(i -> BulkItemResult.success(i, writes.get(i).getId()))
+                    .collect(Collectors.toList());
+        });
+        queue.addTags("a", Set.of("x"));
+        queue.delete("b");
+        queue.delete("c");
+        flushStarted.await();
+        queue.addTags("a", Set.of("y"));
+        queue.index(StoredFile.builder().id("b").fileName("b.txt").fileSize(1L).build());
+        flushReleased.countDown();
+        queue.shutdown();
+
+        // writes due at different times may be retried in separate flushes
+        var retried = flushed.subList(1, flushed.size()).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toMap(FileWrite::getId, write -> write));
+        assertEquals(Set.of("a", "b", "c"), retried.keySet());
+        assertEquals(Set.of("x", "y"), retried.get("a").getTagsToAdd());
+        // newer upload replaces the failed delete
+        assertEquals(FileWrite.Type.INDEX, retried.get("b").getType());
+        assertEquals(FileWrite.Type.DELETE, retried.get("c").getType());
+        assertEquals(0, queue.getFailedWrites());
+    }
+
+    @Test
+    public void whenWriterDies_thenRejectChanges() throws InterruptedException {
+        when(storageRepository.bulkWrite(anyList())).thenThrow(new AssertionError("writer error"));
+        queue.delete("a");
+        queue.delete("b");
+        queue.delete("c");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                queue.delete("d");
+            } catch (IllegalStateException e) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("changes are accepted after the writer died");
+    }
+
+    private static UncheckedIOException unavailable() {
+        return new UncheckedIOException("unavailable", new IOException("connection refused"));
+    }
+}
@@ -0,0 +1,124 @@
+package com.test.storage.service.reactive;
+
+import com.test.storage.dto.FileSearchRequestDTO;
+import com.test.storage.dto.RefreshMode;
+import com.test.storage.dto.TotalHitsMode;
+import com.test.storage.dto.UploadFileRequestDTO;
+import com.test.storage.exception.custom.CursorPagingNotSupportedException;
+import com.test.storage.exception.custom.FileNotFoundException;
+import com.test.storage.exception.custom.NotSupportedInReactiveModeException;
+import com.test.storage.exception.custom.TagNotFoundOnFileException;
+import com.test.storage.exception.custom.TagsConcurrentlyModifiedException;
+import com.test.storage.model.StoredFile;
+import com.test.storage.repository.FileQuery;
+import com.test.storage.repository.FileSearchQueries;
+import com.test.storage.repository.FileSearchResult;
+import com.test.storage.repository.UpdateOutcome;
+import com.test.storage.repository.reactive.ReactiveStorageRepository;
+import com.test.storage.util.FileTypeDetector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ReactiveStorageServiceTest {
+
+    private ReactiveStorageRepository storageRepository;
+    private ReactiveStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        this.storageRepository = mock(ReactiveStorageRepository.class);
+        this.storageService = new ReactiveStorageService(storageRepository, new FileTypeDetector(16));
+    }
+
+    @Test
+    public void whenUpload_thenSaveFileWithDetectedType() {
+        when(storageRepository.save(any(StoredFile.class))).thenAnswer(invocation -> {
+            StoredFile file = invocation.getArgument(0);
+            file.setId("id");
+            return Mono.just(file);
+        });
+        assertEquals("id", storageService.uploadFile(new UploadFileRequestDTO("a.txt", 1L), null).block().getID());
+        verify(storageRepository).save(argThat(file -> file.getTags().contains("text")));
+    }
+
+    @Test
+    public void whenDeleteNotPresentFile_thenFailWithFileNotFound() {
+        when(storageRepository.findById(anyString())).thenReturn(Mono.empty());
+        assertThrows(FileNotFoundException.class, () -> storageService.deleteFileById("id", null).block());
+    }
+
+    @Test
+    public void whenRemoveMissingTags_thenFailWithMissingTags() {
+        when(storageRepository.removeTags(anyString(), anySet())).thenReturn(Mono.just(UpdateOutcome.NOOP));
+        when(storageRepository.findById("id"))
+                .thenReturn(Mono.just(StoredFile.builder().id("id").tags(Set.of("a")).build()));
+        var error = assertThrows(TagNotFoundOnFileException.class,
+                () -> storageService.deleteTagsFromFileById("id", Set.of("a", "b"), null).block());
+        assertEquals("tags: [b] not found on file with id: id", error.getMessage());
+    }
+
+    @Test
+    public void whenTagsAssignedAfterRemoval_thenRetryRemoval() {
+        when(storageRepository.removeTags("id", Set.of("b")))
+                .thenReturn(Mono.just(UpdateOutcome.NOOP))
+                .thenReturn(Mono.just(UpdateOutcome.UPDATED));
+        when(storageRepository.findById("id"))
+                .thenReturn(Mono.just(StoredFile.builder().id("id").tags(Set.of("a", "b")).build()));
+        assertTrue(storageService.deleteTagsFromFileById("id", Set.of("b"), null).block().getSuccess());
+        verify(storageRepository, times(2)).removeTags("id", Set.of("b"));
+    }
+
+    @Test
+    public void whenRemovalNeverApplied_thenDoNotReportSuccess() {
+        when(storageRepository.removeTags(anyString(), anySet())).thenReturn(Mono.just(UpdateOutcome.NOOP));
+        when(storageRepository.findById("id"))
+                .thenReturn(Mono.just(StoredFile.builder().id("id").tags(Set.of("a", "b")).build()));
+        assertThrows(TagsConcurrentlyModifiedException.class,
+                () -> storageService.deleteTagsFromFileById("id", Set.of("b"), null).block());
+        verify(storageRepository, times(3)).removeTags("id", Set.of("b"));
+    }
+
+    @Test
+    public void whenTotalNotNeeded_thenSkipCounting() {
+        when(storageRepository.search(any(FileQuery.class), any(), anyInt()))
+                .thenReturn(Mono.just(new FileSearchResult(null, true, List.of(), null)));
+        var request = new FileSearchRequestDTO();
+        request.setTotal(TotalHitsMode.NONE);
+        var response = storageService.filteredAndPagedSearch(request).block();
+        assertNull(response.getTotal());
+        verify(storageRepository).search(any(), any(), eq(FileSearchQueries.TRACK_TOTAL_HITS_DISABLED));
+    }
+
+    @Test
+    public void whenScrollRequested_thenFail() {
+        var request = new FileSearchRequestDTO();
+        request.setScroll(true);
+        assertThrows(CursorPagingNotSupportedException.class,
+                () -> storageService.filteredAndPagedSearch(request).block());
+    }
+
+    @Test
+    public void whenRefreshGiven_thenFailWithoutWriting() {
+        assertThrows(NotSupportedInReactiveModeException.class, () -> storageService
+                .uploadFile(new UploadFileRequestDTO("a.txt", 1L), RefreshMode.WAIT_FOR).block());
+        assertThrows(NotSupportedInReactiveModeException.class,
+                () -> storageService.assignTagsToFileById("id", Set.of("a"), RefreshMode.IMMEDIATE).block());
+        verifyNoInteractions(storageRepository);
+    }
+
+    @Test
+    public void whenEstimateRequested_thenFail() {
+        var request = new FileSearchRequestDTO();
+        request.setTotal(TotalHitsMode.ESTIMATE);
+        var error = assertThrows(NotSupportedInReactiveModeException.class,
+                () -> storageService.filteredAndPagedSearch(request).block());
+        assertEquals("total=estimate is not supported in reactive mode, use the default mode", error.getMessage());
+    }
+}
@@ -0,0 +1,75 @@
+package com.test.storage.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks {@link FileNames#isValid} against the pattern it replaced.
+ */
+public class FileNamesTest {
+
+    private static final Pattern NAME_PATTERN =
+            Pattern.compile("^(?:[\\wА-Яа-яі.]+[\\wА-Яа-яі|\\s-]*)?(?:\\.[A-Za-z0-9]+)?$");
+
+    // a representative of every class of characters the pattern distinguishes
+    private static final char[] ALPHABET = {'a', 'Z', '7', '_', 'Ж', 'я', 'і', '.', '|', '-', ' ', '\t', 'ї', 'é', '/', '?'};
+
+    @Test
+    public void whenCommonNames_thenValidateAsPattern() {
+        String[] names = {
+                "", "song.mp3", ".gitignore", "report", "photo.final.png", "Звіт за квартал.docx", "my file - copy.txt",
+                "a|b", "-name", " name", "name.", "name..txt", "a b.c.txt", "a.b c.txt", "a b.tar.gz", "файл.тхт",
+                "name.ext_", "name.EXT9", "..", ".", "a-.b", "a.b-c", "тест і", "bad/name.txt", "tab\tname.txt"
+        };
+        for (String name : names) {
+            assertEquals(NAME_PATTERN.matcher(name).matches(), FileNames.isValid(name), name);
+        }
+    }
+
+    @Test
+    public void whenAllShortNames_thenValidateAsPattern() {
+        // every name of up to 4 characters of the alphabet
+        int[] counts = new int[5];
+        for (int length = 0; length <= 4; length++) {
+            char[] name = new char[length];
+            int combinations = (int) Math.pow(ALPHABET.length, length);
+            for (int n = 0; n < combinations; n++) {
+                int rest = n;
+                for (int i = 0; i < length; i++) {
+                    name[i] = ALPHABET[rest % ALPHABET.length];
+                    rest /= ALPHABET.length;
+                }
+                String value = new String(name);
+                assertEquals(NAME_PATTERN.matcher(value).matches(), FileNames.isValid(value), value);
+                counts[length]++;
+            }
+        }
+        assertEquals(65536, counts[4]);
+    }
+
+    @Test
+    public void whenRandomLongNames_thenValidateAsPattern() {
+        var random = new Random(42);
+        // mostly valid characters, so that long names are not all rejected by their first invalid character
+        char[] alphabet = {'a', 'b', 'Я', '.', '.', '-', ' ', '|', '_', '1', 'X'};
+        for (int n = 0; n < 100_000; n++) {
+            char[] name = new char[5 + random.nextInt(30)];
+            for (int i = 0; i < name.length; i++) {
+                name[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String value = new String(name);
+            assertEquals(NAME_PATTERN.matcher(value).matches(), FileNames.isValid(value), value);
+        }
+    }
+
+    @Test
+    public void whenNameHasDots_thenExtensionStartsAfterLastOne() {
+        assertEquals(9, FileNames.extensionStart("aaa.test.png"));
+        assertEquals(1, FileNames.extensionStart(".gitignore"));
+        assertEquals(-1, FileNames.extensionStart("report"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.test.storage.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Optional;
+
+public class FileTypeDetectorTest {
+
+    private FileTypeDetector fileTypeDetector;
+
+    @BeforeEach
+    void setUp() {
+        this.fileTypeDetector = new FileTypeDetector(16);
+    }
+
+    @Test
+    void whenAudioFileName_thenReturnOptionalAudio() {
+        var fileName = "test.mp3";
+        var expectedType = "audio";
+        String actualType = fileTypeDetector.getTypeOfFileByName(fileName).get();
+        assertEquals(expectedType, actualType);
+    }
+
+    @Test
+    void whenTextFileName_thenReturnOptionalText() {
+        var fileName = "test.txt";
+        var expectedType = "text";
+        String actualType = fileTypeDetector.getTypeOfFileByName(fileName).get();
+        assertEquals(expectedType, actualType);
+    }
+
+    @Test
+    void whenImageFileName_thenReturnOptionalImage() {
+        var fileName = "aaa.test.png";
+        var expectedType = "image";
+        String actualType = fileTypeDetector.getTypeOfFileByName(fileName).get();
+        assertEquals(expectedType, actualType);
+    }
+
+    @Test
+    void whenVideoFileName_thenReturnOptionalVideo() {
+        var fileName = "aaa.test.avi";
+        var expectedType = "video";
+        String actualType = fileTypeDetector.getTypeOfFileByName(fileName).get();
+        assertEquals(expectedType, actualType);
+    }
+
+    @Test
+    void whenNoExtensionFileName_thenReturnOptionalEmpty() {
+        var fileName = "mp3";
+        Optional<String> actualType = fileTypeDetector.getTypeOfFileByName(fileName);
+        assertTrue(actualType.isEmpty());
+    }
+
+    @Test
+    void whenUnknownExtension_thenReturnOptionalEmpty() {
+        var fileName = "test.kkk";
+        Optional<String> actualType = fileTypeDetector.getTypeOfFileByName(fileName);
+        assertTrue(actualType.isEmpty());
+    }
+
+    @Test
+    void whenUpperCaseExtension_thenReturnSameTypeAsLowerCase() {
+        assertEquals("image", fileTypeDetector.getTypeOfFileByName("TEST.PNG").get());
+    }
+
+    @Test
+    void whenSameExtensionDetectedTwice_thenSecondIsCacheHit() {
+        fileTypeDetector.getTypeOfFileByName("first.mp3");
+        fileTypeDetector.getTypeOfFileByName("second.mp3");
+        assertEquals(1, fileTypeDetector.getCacheMisses());
+        assertEquals(1, fileTypeDetector.getCacheHits());
+    }
+
+    @Test
+    void whenTypesDetected_thenCountOutcomes() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var detector = new FileTypeDetector(16, meterRegistry);
+        detector.getTypeOfFileByName("first.mp3");
+        detector.getTypeOfFileByName("second.mp3");
+        detector.getTypeOfFileByName("test.kkk");
+        detector.getTypeOfFileByName("mp3");
+        assertEquals(2, meterRegistry.get("storage.autotag").tag("outcome", "audio").counter().count());
+        assertEquals(1, meterRegistry.get("storage.autotag").tag("outcome", FileTypeDetector.UNKNOWN_TYPE).counter().count());
+        assertEquals(1, meterRegistry.get("storage.autotag").tag("outcome", FileTypeDetector.NO_EXTENSION).counter().count());
+    }
+
+}